@@ -1,14 +1,22 @@
 package com.dkriesel.snipe.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
-import com.dkriesel.snipe.training.ErrorMeasurement;
+import com.dkriesel.snipe.neuronbehavior.NeuronBehaviors;
+import com.dkriesel.snipe.neuronbehavior.StatefulNeuronBehavior;
 import com.dkriesel.snipe.training.TrainingSampleLesson;
 import com.dkriesel.snipe.util.MersenneTwisterFast;
+import com.dkriesel.snipe.util.ParallelExecution;
+import com.dkriesel.snipe.util.RandomStreams;
+import com.dkriesel.snipe.util.VectorKernels;
 
 /**
  * <b>Instantiated second using a NeuralNetworkDescriptor instance,</b> this
@@ -317,6 +325,69 @@ import com.dkriesel.snipe.util.MersenneTwisterFast;
  * removing a line and a column.
  * 
  * 
+ * <h2>Optional Compact Mirror for Propagation and Training</h2>
+ * 
+ * <p>
+ * The sub-arrays per neuron make topological changes cheap, but every one of
+ * them is a separate object somewhere in memory. Large networks whose
+ * topology rarely changes therefore spend a good part of their propagation
+ * time waiting for memory. If compact synapse storage is enabled in the
+ * descriptor, propagation and training work on a mirror of the data structure
+ * in compressed sparse row layout: The flat arrays "compactPredecessors" and
+ * "compactPredecessorWeights" hold the sub-arrays of all neurons one after
+ * another, ordered by ascending neuron index, and "compactPredecessorOffsets"
+ * holds the position where the part of each neuron N starts (the part ends
+ * where the part of neuron N+1 starts). The successor data is flattened the
+ * same way, with the difference that "compactSuccessorWeightIndices" directly
+ * holds the position of the weight in "compactPredecessorWeights". Shadows
+ * that are used in the hot loops of the training methods follow the same
+ * layout.
+ * 
+ * <p>
+ * The sub-arrays remain the primary data storage, so all topology and weight
+ * accessing methods work as described above. The mirror is built in
+ * O(SYNAPSES) the first time it is needed, and rebuilt lazily after
+ * topological changes. Weight changes made by the training methods are
+ * written back into the primary data storage when the training method
+ * returns.
+ * 
+ * <p>
+ * Per synapse data of learning rules, like the learning rates of Resilient
+ * Backpropagation, is stored in shadows of the same layout as
+ * "predecessorWeights". The shadows are managed by a SynapseShadows registry,
+ * which addresses them by integer slots, allocates them the first time they
+ * are needed and adapts them to topological changes along with the weights.
+ * 
+ * <p>
+ * If every non-input layer is connected exactly to all neurons of the layer
+ * before (and, optionally, to the bias neuron), the compact rows of one layer
+ * form a row-major weight matrix. This is detected whenever the mirror is
+ * built, and then fastprop propagation and the gradient descent methods use
+ * dense layer kernels without index lookups, processing several neurons at
+ * once. If the topology becomes irregular, the sparse path is used again. The
+ * dense kernels can be switched off in the descriptor.
+ * 
+ * <p>
+ * If single precision weights are enabled in the descriptor as well, the
+ * compact mirror holds the weights as float in place of
+ * "compactPredecessorWeights", which are only recreated while a training
+ * method runs. The float weights are refreshed lazily like the mirror itself.
+ * Net inputs are still summed up in double precision, and the training
+ * methods keep working on the double precision weights.
+ * 
+ * <h2>Propagation from Several Threads at Once</h2>
+ * 
+ * <p>
+ * The net inputs and activations used by the plain propagate methods belong
+ * to the network instance, so only one thread can use them at a time. For
+ * inference from several threads, each thread creates its own
+ * PropagationContext using createPropagationContext() and passes it to the
+ * propagate methods taking a context. They keep the whole propagation state
+ * in the context and only read the synaptic weights, so one network can serve
+ * any number of threads without locks or clones, as long as it is not changed
+ * meanwhile.
+ * 
+ * 
  * 
  * 
  * <h1>Built-In Gradient-Descent Strategies for Synaptic Weight Modification.</h1>
@@ -331,12 +402,24 @@ import com.dkriesel.snipe.util.MersenneTwisterFast;
  * order.
  * 
  * <p>
+ * <b>Mini-Batch Backpropagation with Momentum:</b> Implemented in the
+ * trainBackpropagationOfErrorMiniBatch() method. It averages the gradients of a
+ * random mini-batch of samples and applies them using classical or Nesterov
+ * momentum, whose velocities are stored in a shadow.
+ * 
+ * <p>
  * <b>Resilient Backpropagation [RB94]:</b> Implemented in the
  * trainResilientBackpropagation() method. Trains, of course, offline for it
  * needs stable gradients. Aditionally, you may decide whether to use the
  * improvements of ResilientPropagation published in [Igel2003], which will
  * increase the iteration time but may (not: must) yield better results. Thanks
- * go to Martin Westhoven for bugfixing Rprop!
+ * go to Martin Westhoven for bugfixing Rprop! The gradients of large lessons can
+ * be computed by several threads in parallel.
+ * 
+ * <p>
+ * All of these methods compute the derivatives of neuron behaviors implementing
+ * DerivativeFromActivation from the activations of the just propagated
+ * sample, which saves evaluating the activation function a second time.
  * 
  * 
  * 
@@ -484,14 +567,37 @@ public class NeuralNetwork implements Serializable {
 	protected int[][] successors;
 	protected int[][] successorWeightIndexInPendantPredecessorArray;
 
+	// optional compact mirror of the main data storage in compressed sparse
+	// row layout (see class documentation). Used for propagation and training
+	// if enabled in the descriptor, rebuilt lazily once invalidated.
+	protected int[] compactPredecessorOffsets;
+	protected int[] compactPredecessors;
+	protected double[] compactPredecessorWeights;
+	protected int[] compactSuccessorOffsets;
+	protected int[] compactSuccessors;
+	protected int[] compactSuccessorWeightIndices;
+	protected boolean compactStructureValid = false;
+	protected boolean compactWeightsValid = false;
+	// incremented on every topological change, see NeuralNetworkSnapshot
+	protected int topologyVersion = 0;
+	// single precision compact weights used for propagation in place of
+	// compactPredecessorWeights, which is null then unless training
+	protected float[] compactPredecessorWeightsSingle;
+	protected boolean compactSingleWeightsValid = false;
+	// dense layer-to-layer structure detected in the compact mirror
+	protected boolean compactDenseLayers = false;
+	protected boolean[] compactDenseLayerBias;
+
 	// additional data storage for learning rules (initialized once used, can be
-	// deleted with clearAllCaches()
-	protected TreeMap<String, double[][]> shadows = new TreeMap<String, double[][]>();
-	protected static final String SHADOWKEY_resilientBackpropagationGradients = "resilientBackpropagationGradients";
-	protected static final String SHADOWKEY_resilientBackpropagationLearningRates = "resilientBackpropagationLearningRates";
-	protected static final String SHADOWKEY_resilientBackpropagationLastWeightUpdates = "resilientBackpropagationLastWeightUpdates";
-	protected static final String SHADOWKEY_gaussianMutationAdaptivePertubationVector = "gaussianMutationAdaptivePertubationVector";
-	protected static final String USERSHADOWPREFIX = "USER_";
+	// deleted with clearAllCaches(). Learning rules address their shadows by
+	// the reserved slots below, user shadows get the slots behind them.
+	protected static final int SHADOWSLOT_resilientBackpropagationGradients = 0;
+	protected static final int SHADOWSLOT_resilientBackpropagationLearningRates = 1;
+	protected static final int SHADOWSLOT_resilientBackpropagationLastWeightUpdates = 2;
+	protected static final int SHADOWSLOT_gaussianMutationAdaptivePertubationVector = 3;
+	protected static final int SHADOWSLOT_momentumVelocities = 4;
+	protected static final int SHADOWSLOTS_RESERVED = 5;
+	protected SynapseShadows shadows = new SynapseShadows(SHADOWSLOTS_RESERVED);
 
 	// layer organisation
 	protected int[] layerStartingNeurons;
@@ -516,8 +622,12 @@ public class NeuralNetwork implements Serializable {
 	protected final static String dataDelimiter = "###NEURALNETDATADELIMITER###";
 
 	// other
-	protected MersenneTwisterFast random = new MersenneTwisterFast();
+	protected MersenneTwisterFast random = RandomStreams.createIndependentStream();
+
+	// reusable temporary arrays, see NeuralNetworkWorkspace
+	protected transient NeuralNetworkWorkspace workspace;
 	protected static final double EPSILON = 0.000001;
+	protected static final int PROPAGATION_BLOCK_SIZE = 64;
 
 	/**
 	 * Creates a neural network defined by the input and output layer neuron
@@ -544,6 +654,47 @@ public class NeuralNetwork implements Serializable {
 		}
 	}
 
+	/**
+	 * Creates a neural network with the given number of neurons per layer and
+	 * without any synapses, regardless of the descriptor settings, e.g. in
+	 * order to fill in a stored topology.
+	 * 
+	 * @param descriptor
+	 *            the descriptor defining some constraints on the NeuralNetwork.
+	 * @param layers
+	 *            the number of neurons of each layer
+	 */
+	protected NeuralNetwork(NeuralNetworkDescriptor descriptor, int[] layers) {
+		initialize(descriptor, layers);
+	}
+
+	/**
+	 * @return the random number generator used for initialization, mutation
+	 *         and sample selection of this network.
+	 */
+	public MersenneTwisterFast getRandom() {
+		return random;
+	}
+
+	/**
+	 * Sets the random number generator used for initialization, mutation and
+	 * sample selection of this network, e.g. a stream of RandomStreams, so
+	 * that several networks trained by different threads draw independent but
+	 * reproducible random numbers. Each network is created and cloned with a
+	 * generator of its own. MersenneTwisterFast is not synchronized, so a
+	 * generator must not be shared by networks used by different threads.
+	 * 
+	 * @param random
+	 *            the random number generator, not null
+	 */
+	public void setRandom(MersenneTwisterFast random) {
+		if (random == null) {
+			throw new IllegalArgumentException(
+					"Random number generator must not be null.");
+		}
+		this.random = random;
+	}
+
 	/**
 	 * GA-Style mutation of a single random weight. Uniform-Randomly chooses a
 	 * single synaptic weight (if at least one synapse exists) and
@@ -554,7 +705,7 @@ public class NeuralNetwork implements Serializable {
 		int[] weight = getSynapseRandomExistent();
 		if (weight != null) {
 			double originalWeight = getWeight(weight[0], weight[1]);
-			if (Math.random() > 0.5) {
+			if (random.nextBoolean()) {
 				setSynapse(
 						weight[0],
 						weight[1],
@@ -589,6 +740,7 @@ public class NeuralNetwork implements Serializable {
 						* random.nextGaussian();
 			}
 		}
+		invalidateCompactWeights();
 	}
 
 	/**
@@ -618,7 +770,7 @@ public class NeuralNetwork implements Serializable {
 						* globalStandardDeviation * random.nextGaussian();
 			}
 		}
-
+		invalidateCompactWeights();
 	}
 
 	/**
@@ -638,8 +790,8 @@ public class NeuralNetwork implements Serializable {
 		double globalGaussian = random.nextGaussian();
 
 		// initialize perturbation vector if neccessary
-		if (shadows.get(SHADOWKEY_gaussianMutationAdaptivePertubationVector) == null) {
-			double[][] perturbationVectorToInit = createShadow(SHADOWKEY_gaussianMutationAdaptivePertubationVector);
+		if (shadows.get(SHADOWSLOT_gaussianMutationAdaptivePertubationVector) == null) {
+			double[][] perturbationVectorToInit = createShadow(SHADOWSLOT_gaussianMutationAdaptivePertubationVector);
 			for (int i = 0; i < perturbationVectorToInit.length; i++) {
 				for (int j = 0; j < perturbationVectorToInit[i].length; j++) {
 					perturbationVectorToInit[i][j] = gaussianMutationAdaptivePertubationInit;
@@ -648,10 +800,10 @@ public class NeuralNetwork implements Serializable {
 		}
 
 		// from this point on it is made sure that the shadow exists and has
-		// been initialized. it can therefore be retrieved from the treemap and
+		// been initialized. it can therefore be retrieved from its slot and
 		// used.
 		double[][] perturbationVector = shadows
-				.get(SHADOWKEY_gaussianMutationAdaptivePertubationVector);
+				.get(SHADOWSLOT_gaussianMutationAdaptivePertubationVector);
 
 		// mutate perturbation vector
 		for (int i = 0; i < predecessorWeights.length; i++) {
@@ -669,6 +821,7 @@ public class NeuralNetwork implements Serializable {
 						* random.nextGaussian();
 			}
 		}
+		invalidateCompactWeights();
 	}
 
 	protected void initialize(NeuralNetworkDescriptor descriptor, int[] layers) {
@@ -708,6 +861,7 @@ public class NeuralNetwork implements Serializable {
 			successors[i] = new int[0];
 			successorWeightIndexInPendantPredecessorArray[i] = new int[0];
 		}
+		invalidateCompactStructure();
 
 		// initializing activations, netinputs and activationfunctions
 		activations = new double[countNeurons() + 1];
@@ -793,7 +947,7 @@ public class NeuralNetwork implements Serializable {
 				}
 			}
 		}
-
+		invalidateCompactStructure();
 	}
 
 	/**
@@ -809,9 +963,16 @@ public class NeuralNetwork implements Serializable {
 	 * 
 	 */
 	public void clearCacheResilientBackpropagation() {
-		removeShadow(SHADOWKEY_resilientBackpropagationGradients);
-		removeShadow(SHADOWKEY_resilientBackpropagationLearningRates);
-		removeShadow(SHADOWKEY_resilientBackpropagationLastWeightUpdates);
+		removeShadow(SHADOWSLOT_resilientBackpropagationGradients);
+		removeShadow(SHADOWSLOT_resilientBackpropagationLearningRates);
+		removeShadow(SHADOWSLOT_resilientBackpropagationLastWeightUpdates);
+	}
+
+	/**
+	 * Clears the velocity cache of mini-batch backpropagation with momentum.
+	 */
+	public void clearCacheMomentum() {
+		removeShadow(SHADOWSLOT_momentumVelocities);
 	}
 
 	/**
@@ -819,7 +980,7 @@ public class NeuralNetwork implements Serializable {
 	 * mutateWeightsGaussianAdaptivePertubationVectorDriven method.
 	 */
 	public void clearCacheGaussianMutationAdaptivePertubation() {
-		removeShadow(SHADOWKEY_gaussianMutationAdaptivePertubationVector);
+		removeShadow(SHADOWSLOT_gaussianMutationAdaptivePertubationVector);
 	}
 
 	/**
@@ -879,6 +1040,9 @@ public class NeuralNetwork implements Serializable {
 			}
 
 		}
+		if (workspace != null) {
+			workspace.dropChunks();
+		}
 	}
 
 	/**
@@ -940,6 +1104,14 @@ public class NeuralNetwork implements Serializable {
 	 * network. In such cases, fastprop saves a lot of time.
 	 * 
 	 * <p>
+	 * In normal mode, the new activations are written into a second buffer
+	 * while the net inputs are computed from the former ones, and the buffers
+	 * are swapped after each step instead of copied. As soon as no activation
+	 * changes by more than the recurrent tolerance of the descriptor, the
+	 * remaining steps are skipped (see
+	 * NeuralNetworkDescriptor.setRecurrentTolerance).
+	 * 
+	 * <p>
 	 * In the fastprop mode (which is denoted by frequency 0) activations are
 	 * directly updated, along with the net inputs which causes the activation
 	 * order of the neurons to be relevant. Any neuron whose activation is
@@ -950,31 +1122,170 @@ public class NeuralNetwork implements Serializable {
 	 * allowed, this propagation mode will throw exceptions.
 	 * 
 	 * <p>
-	 * Computational Effort: O(SYNAPSES) per single propagation.
+	 * If compact synapse storage is enabled in the descriptor, the compact
+	 * mirror of the data structure is used, which yields the same results.
+	 * 
+	 * <p>
+	 * Computational Effort: O(SYNAPSES) per single propagation step.
 	 * 
 	 * @param input
 	 * @return the output @ if the lenght the input is wrong.
 	 */
 	public double[] propagate(double[] input) {
+		return propagate(input, new double[descriptor.countOutputNeurons()]);
+	}
+
+	/**
+	 * Does the same as propagate(input), but writes the output into the given
+	 * array instead of allocating a new one, so that repeated propagations do
+	 * not produce any garbage. Input values that are NaN are treated as zero;
+	 * the given input array is not changed.
+	 * 
+	 * @param input
+	 *            the input to propagate
+	 * @param output
+	 *            array of length countOutputNeurons() to write the output into
+	 * @return the given output array
+	 */
+	public double[] propagate(double[] input, double[] output) {
+		if (input.length != descriptor.countInputNeurons()) {
+			throw new IllegalArgumentException("Wrong number of inputs.");
+		}
+		if (output.length != descriptor.countOutputNeurons()) {
+			throw new IllegalArgumentException("Wrong number of outputs.");
+		}
+
+		boolean compact = descriptor.isCompactSynapseStorage();
+		if (compact) {
+			ensureCompactStorageForPropagation();
+		}
+		return propagateUsing(input, output, netInputs, activations,
+				neuronBehaviors, null, compact);
+	}
+
+	/**
+	 * Does the same as propagate(input, output), but uses the propagation
+	 * state of the given context instead of the state of the network, which is
+	 * left untouched. As this method only reads the data
+	 * structure of the network, any number of threads can call it at the same
+	 * time, given that every thread uses its own context and no thread changes
+	 * the network meanwhile.
+	 * 
+	 * <p>
+	 * If compact synapse storage is enabled, the compact mirror is used if it
+	 * is up to date. It is not rebuilt by this method, as this would not be
+	 * thread-safe; createPropagationContext brings it up to date.
+	 * 
+	 * @param context
+	 *            the propagation context of the calling thread, created by
+	 *            createPropagationContext()
+	 * @param input
+	 *            the input to propagate
+	 * @param output
+	 *            array of length countOutputNeurons() to write the output into
+	 * @return the given output array
+	 */
+	public double[] propagate(PropagationContext context, double[] input,
+			double[] output) {
+		checkPropagationContext(context);
 		if (input.length != descriptor.countInputNeurons()) {
 			throw new IllegalArgumentException("Wrong number of inputs.");
 		}
+		if (output.length != descriptor.countOutputNeurons()) {
+			throw new IllegalArgumentException("Wrong number of outputs.");
+		}
+		return propagateUsing(input, output, context.netInputs,
+				context.activations, context.neuronBehaviors,
+				context.getRecurrentActivations(), isCompactStorageUpToDate());
+	}
+
+	/**
+	 * Creates a new propagation context for this network, holding its own net
+	 * inputs and activations, so that several threads can propagate data
+	 * through this network at the same time, each one using its own context.
+	 * If compact synapse storage is enabled, the compact mirror of the data
+	 * structure is brought up to date here, so this method should be called
+	 * before handing the network to other threads.
+	 * 
+	 * @return the new context
+	 */
+	public PropagationContext createPropagationContext() {
+		if (descriptor.isCompactSynapseStorage()) {
+			ensureCompactStorageForPropagation();
+		}
+		return new PropagationContext(this);
+	}
+
+	/**
+	 * Makes sure the given propagation context was created by this network and
+	 * fits its current topology.
+	 * 
+	 * @param context
+	 */
+	protected void checkPropagationContext(PropagationContext context) {
+		if (context.net != this) {
+			throw new IllegalArgumentException(
+					"Propagation context belongs to another network.");
+		}
+		if (context.activations.length != countNeurons() + 1) {
+			throw new IllegalArgumentException(
+					"Propagation context does not fit the network topology.");
+		}
+	}
 
-		double[] output = new double[descriptor.countOutputNeurons()];
+	/**
+	 * @return true, if compact synapse storage is enabled and the compact
+	 *         mirror is up to date, so it can be used for propagation without
+	 *         rebuilding it. With single precision weights, only those have to
+	 *         be up to date.
+	 */
+	protected boolean isCompactStorageUpToDate() {
+		return descriptor.isCompactSynapseStorage() && compactStructureValid
+				&& (compactWeightsValid || isSinglePrecisionUsable());
+	}
 
+	/**
+	 * Propagates the given input using the given state arrays and neuron
+	 * behaviors, which are either the ones of the network or the ones of a
+	 * propagation context. The compact mirror must be up to date if it shall
+	 * be used.
+	 * 
+	 * @param input
+	 *            the input to propagate
+	 * @param output
+	 *            array to write the output into
+	 * @param netInputs
+	 *            the net inputs to work on
+	 * @param activations
+	 *            the activations to work on
+	 * @param neuronBehaviors
+	 *            the neuron behaviors to use
+	 * @param recurrentActivations
+	 *            the second activation buffer for normal mode, or null to use
+	 *            the one of the workspace
+	 * @param compact
+	 *            whether the compact mirror is used
+	 * @return the given output array
+	 */
+	protected double[] propagateUsing(double[] input, double[] output,
+			double[] netInputs, double[] activations,
+			NeuronBehavior[] neuronBehaviors, double[] recurrentActivations,
+			boolean compact) {
 		// Propagate bias neuron -------------------------------
 		netInputs[0] = 0;
 		activations[0] = 1;
 
 		// Propagate input layer -------------------------------
 		for (int i = 1; i < getNeuronFirstInLayer(1); i++) {
-			if (Double.isNaN(input[i - 1])) {
+			double value = input[i - 1];
+			if (Double.isNaN(value)) {
 				System.err.println("Neural Net Input " + (i - 1)
 						+ " was NaN and was set zero before propagation.");
-				input[i - 1] = 0;
+				value = 0;
 			}
-			netInputs[i] = input[i - 1];
-			activations[i] = neuronBehaviors[i].computeActivation(netInputs[i]);
+			netInputs[i] = value;
+			activations[i] = NeuronBehaviors.computeActivation(
+					neuronBehaviors[i], value, activations[i]);
 		}
 
 		// Fast propagation mode of remaining neurons ----------
@@ -988,36 +1299,35 @@ public class NeuralNetwork implements Serializable {
 			}
 
 			// calculate net input and activations directly together
-			for (int i = getNeuronFirstInLayer(1); i < (countNeurons() + 1); i++) {
-				netInputs[i] = 0;
-				for (int j = 0; j < predecessors[i].length; j++) {
-					netInputs[i] += activations[predecessors[i][j]]
-							* predecessorWeights[i][j];
+			if (compact && isDenseLayerPathUsable()) {
+				propagateDenseLayers(netInputs, activations, neuronBehaviors);
+			} else if (compact) {
+				for (int i = getNeuronFirstInLayer(1); i < (countNeurons() + 1); i++) {
+					double netInput = computeNetInputCompact(i, activations);
+					netInputs[i] = netInput;
+					activations[i] = NeuronBehaviors.computeActivation(
+							neuronBehaviors[i], netInput, activations[i]);
 				}
-				activations[i] = neuronBehaviors[i]
-						.computeActivation(netInputs[i]);
-			}
-		}
-
-		// Normal propagation mode of remaining Neurons --------
-		if (descriptor.getFrequency() > 0) {
-			for (int frequency = 0; frequency < descriptor.getFrequency(); frequency++) {
-				// calculate net inputs
+			} else {
 				for (int i = getNeuronFirstInLayer(1); i < (countNeurons() + 1); i++) {
 					netInputs[i] = 0;
 					for (int j = 0; j < predecessors[i].length; j++) {
 						netInputs[i] += activations[predecessors[i][j]]
 								* predecessorWeights[i][j];
 					}
-				}
-
-				// calculate activations
-				for (int i = getNeuronFirstInLayer(1); i < (countNeurons() + 1); i++) {
-					activations[i] = neuronBehaviors[i]
-							.computeActivation(netInputs[i]);
+					activations[i] = NeuronBehaviors.computeActivation(
+							neuronBehaviors[i], netInputs[i], activations[i]);
 				}
 			}
+		}
 
+		// Normal propagation mode of remaining Neurons --------
+		if (descriptor.getFrequency() > 0) {
+			if (recurrentActivations == null) {
+				recurrentActivations = getWorkspace().getRecurrentActivations();
+			}
+			propagateRecurrent(netInputs, activations, recurrentActivations,
+					neuronBehaviors, compact);
 		}
 		// write output
 		for (int i = countNeurons(); i >= getNeuronFirstInLayer(countLayers() - 1); i--) {
@@ -1028,113 +1338,915 @@ public class NeuralNetwork implements Serializable {
 	}
 
 	/**
-	 * Wraps setSynapse for your convenience - to get more information, read the
-	 * setSynapse documentation.
+	 * Propagates the neurons behind the input layer in normal mode, that is,
+	 * with synchronous updates, for at most frequency steps. Each step
+	 * computes the net inputs out of the current activation buffer and writes
+	 * the new activations into the other one, then the buffers are swapped.
+	 * Propagation stops early once no activation changed by more than the
+	 * recurrent tolerance of the descriptor. Afterwards, the given
+	 * activations hold the final activations, which costs one copy at most.
 	 * 
-	 * @param i
-	 * @param j
-	 * @param newWeight
+	 * @param netInputs
+	 *            the net inputs to work on
+	 * @param activations
+	 *            the activations to work on, with bias and input neurons
+	 *            already propagated
+	 * @param recurrentActivations
+	 *            the second activation buffer
+	 * @param neuronBehaviors
+	 *            the neuron behaviors to use
+	 * @param compact
+	 *            whether the compact mirror is used
+	 * @return the number of steps taken
 	 */
-	public void createSynapse(int i, int j, double newWeight) {
-		setSynapse(i, j, newWeight);
+	protected int propagateRecurrent(double[] netInputs, double[] activations,
+			double[] recurrentActivations, NeuronBehavior[] neuronBehaviors,
+			boolean compact) {
+		int first = getNeuronFirstInLayer(1);
+		int end = countNeurons() + 1;
+		int frequency = descriptor.getFrequency();
+		double tolerance = descriptor.getRecurrentTolerance();
+
+		double[] current = activations;
+		double[] next = recurrentActivations;
+		// bias and input neurons do not change during the steps
+		System.arraycopy(current, 0, next, 0, first);
+
+		int step = 0;
+		while (step < frequency) {
+			double change = 0;
+			for (int i = first; i < end; i++) {
+				double netInput;
+				if (compact) {
+					netInput = computeNetInputCompact(i, current);
+				} else {
+					netInput = 0;
+					int[] predecessorsOfNeuron = predecessors[i];
+					double[] weightsOfNeuron = predecessorWeights[i];
+					for (int j = 0; j < predecessorsOfNeuron.length; j++) {
+						netInput += current[predecessorsOfNeuron[j]]
+								* weightsOfNeuron[j];
+					}
+				}
+				netInputs[i] = netInput;
+				double activation = NeuronBehaviors.computeActivation(
+						neuronBehaviors[i], netInput, current[i]);
+				next[i] = activation;
+
+				// NaN changes are kept, so they never count as settled
+				double difference = Math.abs(activation - current[i]);
+				if (difference > change || difference != difference) {
+					change = difference;
+				}
+			}
+			double[] swap = current;
+			current = next;
+			next = swap;
+			step++;
+			if (change <= tolerance) {
+				break;
+			}
+		}
+
+		if (current != activations) {
+			System.arraycopy(current, first, activations, first, end - first);
+		}
+		return step;
 	}
 
 	/**
-	 * Updates or randomly chooses the synaptic weight value from the neuron i
-	 * to neuron j (computational effort: O(log(MIN(I_out,J_in))))) - If the
-	 * synapse doesn't exist, it is added, if it is allowed (worst case
-	 * computational effort: O(NEURONS*log(NEURONS))).
+	 * Calculates the output values of the neural net for a whole set of inputs
+	 * at once and writes them into the given output array. The result is the
+	 * same as calling propagate for every single input in the given order,
+	 * including the state of the network afterwards, which is the one of the
+	 * last input propagated.
+	 * 
 	 * <p>
-	 * If newWeight is assigned the value Double.NaN, the synapse will be
-	 * assigned a random value dependent on the synapseInitialRange defined in
-	 * the descriptor.
+	 * In fastprop mode (frequency 0), the samples are propagated in blocks of
+	 * PROPAGATION_BLOCK_SIZE samples that pass through the neurons together:
+	 * Every synaptic weight is read once per block instead of once per sample,
+	 * so it stays in cache while being applied to all samples of the block. In
+	 * normal mode, and if a neuron behavior implements StatefulNeuronBehavior,
+	 * the propagation of one input depends on the network state left by the
+	 * former one, so the inputs are propagated one by one.
 	 * 
-	 * @param i
-	 *            the start neuron of the synapse
-	 * @param j
-	 *            the end neuron of the synapse
-	 * @param newWeight
-	 *            If assigned the value Double.NaN, the synapse will be assigned
-	 *            a random value dependent on the synapseInitialRange defined in
-	 *            the descriptor.
+	 * <p>
+	 * Computational Effort: O(SYNAPSES*SAMPLES).
 	 * 
+	 * @param inputs
+	 *            the inputs to propagate, one row per sample
+	 * @param outputs
+	 *            array the outputs are written into, one row per sample, each
+	 *            row being of length countOutputNeurons()
 	 */
-	public void setSynapse(int i, int j, double newWeight) {
-		if (i < 0 || i > countNeurons()) {
-			throw new IllegalArgumentException("Illegal Synapse.");
+	public void propagateBatch(double[][] inputs, double[][] outputs) {
+		checkBatchDimensions(inputs, outputs);
+		boolean compact = descriptor.isCompactSynapseStorage();
+		if (compact) {
+			ensureCompactStorageForPropagation();
+		}
+		propagateBatchUsing(inputs, outputs, netInputs, activations,
+				neuronBehaviors, getWorkspace().getBlockNetInputs(),
+				getWorkspace().getBlockActivations(), null, compact);
+	}
+
+	/**
+	 * Does the same as propagateBatch(inputs, outputs), but uses the
+	 * propagation state of the given context instead of the state of the
+	 * network, which is left untouched. Read the documentation of
+	 * propagate(context, input, output) on thread-safety.
+	 * 
+	 * @param context
+	 *            the propagation context of the calling thread, created by
+	 *            createPropagationContext()
+	 * @param inputs
+	 *            the inputs to propagate, one row per sample
+	 * @param outputs
+	 *            array the outputs are written into, one row per sample, each
+	 *            row being of length countOutputNeurons()
+	 */
+	public void propagateBatch(PropagationContext context, double[][] inputs,
+			double[][] outputs) {
+		checkPropagationContext(context);
+		checkBatchDimensions(inputs, outputs);
+		propagateBatchUsing(inputs, outputs, context.netInputs,
+				context.activations, context.neuronBehaviors,
+				context.getBlockNetInputs(), context.getBlockActivations(),
+				context.getRecurrentActivations(), isCompactStorageUpToDate());
+	}
+
+	/**
+	 * Makes sure the given input and output arrays fit the network.
+	 * 
+	 * @param inputs
+	 * @param outputs
+	 */
+	protected void checkBatchDimensions(double[][] inputs, double[][] outputs) {
+		if (outputs.length != inputs.length) {
+			throw new IllegalArgumentException(
+					"Wrong number of output rows.");
 		}
-		if (j < 0 || j > countNeurons()) {
-			throw new IllegalArgumentException("Illegal Synapse.");
+		for (int s = 0; s < inputs.length; s++) {
+			if (inputs[s].length != descriptor.countInputNeurons()) {
+				throw new IllegalArgumentException("Wrong number of inputs.");
+			}
+			if (outputs[s].length != descriptor.countOutputNeurons()) {
+				throw new IllegalArgumentException("Wrong number of outputs.");
+			}
 		}
+	}
 
-		// compute synapse value if necessary
-		double weightToAssign = newWeight;
-		if (Double.isNaN(newWeight)) {
-			weightToAssign = getRandomDoubleBetweenIncluding(
-					-descriptor.getSynapseInitialRange(),
-					descriptor.getSynapseInitialRange());
+	/**
+	 * Propagates the given inputs using the given state and block arrays and
+	 * neuron behaviors, which are either the ones of the network or the ones
+	 * of a propagation context. The compact mirror must be up to date if it
+	 * shall be used.
+	 * 
+	 * @param inputs
+	 * @param outputs
+	 * @param netInputs
+	 * @param activations
+	 * @param neuronBehaviors
+	 * @param blockNetInputs
+	 * @param blockActivations
+	 * @param recurrentActivations
+	 *            the second activation buffer for normal mode, or null to use
+	 *            the one of the workspace
+	 * @param compact
+	 */
+	protected void propagateBatchUsing(double[][] inputs, double[][] outputs,
+			double[] netInputs, double[] activations,
+			NeuronBehavior[] neuronBehaviors, double[] blockNetInputs,
+			double[] blockActivations, double[] recurrentActivations,
+			boolean compact) {
+		if (inputs.length == 0) {
+			return;
+		}
+
+		// Normal propagation mode or stateful neurons, samples depend on
+		// each other ----------
+		if (!isBlockPropagationUsable(neuronBehaviors)) {
+			for (int s = 0; s < inputs.length; s++) {
+				propagateUsing(inputs[s], outputs[s], netInputs, activations,
+						neuronBehaviors, recurrentActivations, compact);
+			}
+			return;
+		}
+
+		// Fast propagation mode in blocks of samples ----------
+		int blockSize = PROPAGATION_BLOCK_SIZE;
+		int count = 0;
+		for (int from = 0; from < inputs.length; from += blockSize) {
+			count = Math.min(blockSize, inputs.length - from);
+			propagateBlockUsing(inputs, from, count, blockSize,
+					blockNetInputs, blockActivations, neuronBehaviors, compact);
+			// write output
+			for (int i = countNeurons(); i >= getNeuronFirstInLayer(countLayers() - 1); i--) {
+				int outputNumber = mapOutputNeuronToOutputNumber(i);
+				int base = i * blockSize;
+				for (int s = 0; s < count; s++) {
+					outputs[from + s][outputNumber] = blockActivations[base + s];
+				}
+			}
 		}
 
-		// search for synaptic weight. if the synapse doesn't exist, it is
-		// added. Otherwise, it's weight value is altered.
-		int predIdx = Arrays.binarySearch(predecessors[j], i);
-		if (predIdx >= 0) {
-			// synapse exists and just has to be altered.
-			predecessorWeights[j][predIdx] = weightToAssign;
-		} else {
-			if (isSynapseAllowed(i, j)) {
+		// leave the state of the last sample
+		setStateFromBlock(blockNetInputs, blockActivations, blockSize,
+				count - 1, netInputs, activations);
+	}
 
-				// synapse does not exist, so it has to be added. the succIdx
-				// and precIdx contain the addition position that is used in
-				// order to keep the arrays sorted by adjacent neuron indices.
-				int succIdx = Arrays.binarySearch(successors[i], j);
-				predIdx = -(predIdx + 1);
-				succIdx = -(succIdx + 1);
+	/**
+	 * Sets the given net inputs and activations of all neurons to the values of
+	 * the s-th sample of the given block arrays, as filled by propagateBlock.
+	 * 
+	 * @param blockNetInputs
+	 * @param blockActivations
+	 * @param stride
+	 * @param s
+	 * @param netInputs
+	 * @param activations
+	 */
+	protected void setStateFromBlock(double[] blockNetInputs,
+			double[] blockActivations, int stride, int s, double[] netInputs,
+			double[] activations) {
+		for (int i = 0; i < countNeurons() + 1; i++) {
+			netInputs[i] = blockNetInputs[i * stride + s];
+			activations[i] = blockActivations[i * stride + s];
+		}
+	}
 
-				// Before adding, update the successor arrays of all neurons
-				// with index >= I that have J as an successor (all predecessors
-				// from J), because J's predecessor array, that stores the
-				// regarding weights, is shifted left from position I on.
-				// of this: O(J_in) times searching in the regarding predecessor
-				// index arrays.
-				for (int predOfJIdx = predIdx; predOfJIdx < predecessors[j].length; predOfJIdx++) {
-					int predOfJ = predecessors[j][predOfJIdx];
-					int idxToIncrease = Arrays.binarySearch(
-							successors[predOfJ], j);
-					successorWeightIndexInPendantPredecessorArray[predOfJ][idxToIncrease]++;
-				}
+	/**
+	 * Calculates the sum of absolute errors over all samples of the given
+	 * lesson just like ErrorMeasurement.getErrorAbsoluteSum, but uses the
+	 * workspace of this network instead of allocating output arrays.
+	 * 
+	 * @param lesson
+	 * @param compact
+	 *            whether the compact mirror shall be used, no matter if
+	 *            compact synapse storage is enabled. This is needed by
+	 *            training methods that work on the mirror.
+	 * @return calculated error
+	 */
+	protected double getErrorAbsoluteSumInPlace(TrainingSampleLesson lesson,
+			boolean compact) {
+		double[][] inputs = lesson.getInputs();
+		double[][] desiredOutputs = lesson.getDesiredOutputs();
+		double error = 0.0;
+		if (inputs.length == 0) {
+			return error;
+		}
+		if (compact) {
+			ensureCompactStorageForPropagation();
+		}
 
-				// adding successor entry for i
-				int[] newSuccessors = new int[successors[i].length + 1];
-				int[] newSuccessorWeightIndexInPendantPredecessorArray = new int[successorWeightIndexInPendantPredecessorArray[i].length + 1];
-				for (int idx = 0; idx < newSuccessorWeightIndexInPendantPredecessorArray.length; idx++) {
-					if (idx < succIdx) {
-						// just copy old content
-						newSuccessors[idx] = successors[i][idx];
-						newSuccessorWeightIndexInPendantPredecessorArray[idx] = successorWeightIndexInPendantPredecessorArray[i][idx];
-					}
-					if (idx == succIdx) {
-						// add synapse here
-						newSuccessors[idx] = j;
-						newSuccessorWeightIndexInPendantPredecessorArray[idx] = predIdx;
-					}
-					if (idx > succIdx) {
-						// shift content to the ascending direction by one cell
-						newSuccessors[idx] = successors[i][idx - 1];
-						newSuccessorWeightIndexInPendantPredecessorArray[idx] = successorWeightIndexInPendantPredecessorArray[i][idx - 1];
-					}
+		if (!isBlockPropagationUsable(neuronBehaviors)) {
+			double[] outputs = getWorkspace().getOutput();
+			for (int i = 0; i < inputs.length; i++) {
+				propagateUsing(inputs[i], outputs, netInputs, activations,
+						neuronBehaviors, null, compact);
+				for (int j = 0; j < outputs.length; j++) {
+					error += Math.abs(desiredOutputs[i][j] - outputs[j]);
+				}
+			}
+			return error;
+		}
+
+		int blockSize = PROPAGATION_BLOCK_SIZE;
+		double[] blockNetInputs = getWorkspace().getBlockNetInputs();
+		double[] blockActivations = getWorkspace().getBlockActivations();
+		int firstOutputNeuron = mapOutputNumberToOutputNeuron(0);
+		int count = 0;
+		for (int from = 0; from < inputs.length; from += blockSize) {
+			count = Math.min(blockSize, inputs.length - from);
+			propagateBlockUsing(inputs, from, count, blockSize,
+					blockNetInputs, blockActivations, neuronBehaviors, compact);
+			for (int s = 0; s < count; s++) {
+				double[] desiredOutput = desiredOutputs[from + s];
+				for (int j = 0; j < desiredOutput.length; j++) {
+					error += Math.abs(desiredOutput[j]
+							- blockActivations[(firstOutputNeuron + j)
+									* blockSize + s]);
 				}
+			}
+		}
+		setStateFromBlock(blockNetInputs, blockActivations, blockSize,
+				count - 1, netInputs, activations);
+		return error;
+	}
 
-				// adding predecessor entry for j
+	/**
+	 * Returns the workspace of this network, creating it if necessary.
+	 * 
+	 * @return the workspace
+	 */
+	protected NeuralNetworkWorkspace getWorkspace() {
+		if (workspace == null) {
+			workspace = new NeuralNetworkWorkspace(this);
+		}
+		return workspace;
+	}
 
-				// create new arrays that will be replacing old ones
-				int[] newPredecessors = new int[predecessors[j].length + 1];
-				double[] newPredecessorWeights = new double[predecessorWeights[j].length + 1];
+	/**
+	 * Propagates count samples starting at sample number from through the
+	 * network in fastprop mode, all at once. Net inputs and activations are
+	 * not written to the network state, but into the given block arrays,
+	 * which are organized neuron by neuron: The value of neuron i for the s-th
+	 * sample of the block is found at index i*stride+s. Each neuron sums up
+	 * its net input in the same order as propagate does, so the results are
+	 * the same. Neuron behaviors implementing StatefulNeuronBehavior are not
+	 * supported, see isBlockPropagationUsable().
+	 * 
+	 * @param inputs
+	 *            the inputs, one row per sample
+	 * @param from
+	 *            the first sample of the block
+	 * @param count
+	 *            the number of samples in the block, at most stride
+	 * @param stride
+	 *            the distance of the entries of two neurons in the block
+	 *            arrays
+	 * @param blockNetInputs
+	 *            array of length at least (countNeurons()+1)*stride to write
+	 *            the net inputs into
+	 * @param blockActivations
+	 *            array of length at least (countNeurons()+1)*stride to write
+	 *            the activations into
+	 */
+	protected void propagateBlock(double[][] inputs, int from, int count,
+			int stride, double[] blockNetInputs, double[] blockActivations) {
+		boolean compact = descriptor.isCompactSynapseStorage();
+		if (compact) {
+			ensureCompactStorageForPropagation();
+		}
+		propagateBlockUsing(inputs, from, count, stride, blockNetInputs,
+				blockActivations, neuronBehaviors, compact);
+	}
 
-				// go through each of the arrays
-				for (int idx = 0; idx < newPredecessorWeights.length; idx++) {
-					if (idx < predIdx) {
-						// just copy old content
+	/**
+	 * Does the same as propagateBlock, but uses the given neuron behaviors.
+	 * The compact mirror must be up to date if it shall be used.
+	 * 
+	 * @param inputs
+	 * @param from
+	 * @param count
+	 * @param stride
+	 * @param blockNetInputs
+	 * @param blockActivations
+	 * @param neuronBehaviors
+	 * @param compact
+	 */
+	protected void propagateBlockUsing(double[][] inputs, int from,
+			int count, int stride, double[] blockNetInputs,
+			double[] blockActivations, NeuronBehavior[] neuronBehaviors,
+			boolean compact) {
+		if (descriptor.isAllowBackwardSynapses()
+				|| descriptor.isAllowBackwardShortcutSynapses()
+				|| descriptor.isAllowLateralSynapses()
+				|| descriptor.isAllowSelfSynapses()) {
+			throw new IllegalArgumentException(
+					"Can't fastprop. Only forward and forward shortcut Synapses are allowed.");
+		}
+		if (!isBlockPropagationUsable(neuronBehaviors)) {
+			throw new IllegalArgumentException(
+					"Can't propagate in blocks. Stateful neurons need the samples one by one.");
+		}
+
+		// Propagate bias neuron -------------------------------
+		for (int s = 0; s < count; s++) {
+			blockNetInputs[s] = 0;
+			blockActivations[s] = 1;
+		}
+
+		// Propagate input layer -------------------------------
+		for (int i = 1; i < getNeuronFirstInLayer(1); i++) {
+			int base = i * stride;
+			for (int s = 0; s < count; s++) {
+				double value = inputs[from + s][i - 1];
+				if (Double.isNaN(value)) {
+					System.err.println("Neural Net Input " + (i - 1)
+							+ " was NaN and was set zero before propagation.");
+					value = 0;
+				}
+				blockNetInputs[base + s] = value;
+			}
+			NeuronBehaviors.computeActivations(neuronBehaviors[i],
+					blockNetInputs, blockActivations, base, base + count);
+		}
+
+		if (compact && isDenseLayerPathUsable()) {
+			propagateBlockDenseLayers(count, stride, blockNetInputs,
+					blockActivations, neuronBehaviors);
+			return;
+		}
+		double[] weights = null;
+		float[] singleWeights = null;
+		if (compact) {
+			singleWeights = getCompactWeightsSingle();
+			weights = singleWeights == null ? compactPredecessorWeights : null;
+		}
+
+		// Propagate remaining neurons, one weight for all samples
+		for (int i = getNeuronFirstInLayer(1); i < (countNeurons() + 1); i++) {
+			int base = i * stride;
+			for (int s = 0; s < count; s++) {
+				blockNetInputs[base + s] = 0;
+			}
+			if (compact) {
+				int end = compactPredecessorOffsets[i + 1];
+				for (int k = compactPredecessorOffsets[i]; k < end; k++) {
+					double weight = compactWeight(weights, singleWeights, k);
+					int predecessorBase = compactPredecessors[k] * stride;
+					for (int s = 0; s < count; s++) {
+						blockNetInputs[base + s] += blockActivations[predecessorBase
+								+ s]
+								* weight;
+					}
+				}
+			} else {
+				for (int j = 0; j < predecessors[i].length; j++) {
+					double weight = predecessorWeights[i][j];
+					int predecessorBase = predecessors[i][j] * stride;
+					for (int s = 0; s < count; s++) {
+						blockNetInputs[base + s] += blockActivations[predecessorBase
+								+ s]
+								* weight;
+					}
+				}
+			}
+			NeuronBehaviors.computeActivations(neuronBehaviors[i],
+					blockNetInputs, blockActivations, base, base + count);
+		}
+	}
+
+	/**
+	 * Computes the net input of neuron i from the given activations using the
+	 * compact mirror, which must be up to date. If single precision weights
+	 * are enabled and up to date, they are used, but the sum is still built in
+	 * double precision.
+	 * 
+	 * @param i
+	 *            the neuron
+	 * @param activations
+	 *            the activations to read
+	 * @return the net input of the neuron
+	 */
+	protected double computeNetInputCompact(int i, double[] activations) {
+		float[] singleWeights = getCompactWeightsSingle();
+		double[] weights = singleWeights == null ? compactPredecessorWeights
+				: null;
+		double netInput = 0;
+		int end = compactPredecessorOffsets[i + 1];
+		for (int k = compactPredecessorOffsets[i]; k < end; k++) {
+			netInput += activations[compactPredecessors[k]]
+					* compactWeight(weights, singleWeights, k);
+		}
+		return netInput;
+	}
+
+	/**
+	 * @return true, if single precision weights are enabled in the descriptor
+	 *         and they are up to date.
+	 */
+	protected boolean isSinglePrecisionUsable() {
+		return compactSingleWeightsValid
+				&& descriptor.isSinglePrecisionWeights();
+	}
+
+	/**
+	 * @return the single precision weights of the compact mirror if they are
+	 *         usable, or null if the propagation methods shall read the double
+	 *         precision weights.
+	 */
+	protected float[] getCompactWeightsSingle() {
+		return isSinglePrecisionUsable() ? compactPredecessorWeightsSingle
+				: null;
+	}
+
+	/**
+	 * Reads weight k of the compact mirror in the precision used for
+	 * propagation. Exactly one of the arrays is not null, and as this does not
+	 * change within a propagation, the JIT compiler moves the check out of the
+	 * loops, so the propagation kernels need not be written twice.
+	 * 
+	 * @param weights
+	 *            the double precision compact weights, or null
+	 * @param singleWeights
+	 *            the single precision compact weights, or null
+	 * @param k
+	 *            the index of the weight
+	 * @return the weight
+	 */
+	protected static double compactWeight(double[] weights,
+			float[] singleWeights, int k) {
+		return singleWeights != null ? singleWeights[k] : weights[k];
+	}
+
+	/**
+	 * @return true, if the compact mirror has a dense layer-to-layer structure
+	 *         and the descriptor allows using dense layer kernels. The compact
+	 *         mirror must be up to date.
+	 */
+	protected boolean isDenseLayerPathUsable() {
+		return compactDenseLayers && descriptor.isDenseLayerKernels();
+	}
+
+	/**
+	 * Returns whether several samples may be propagated in blocks, or in
+	 * chunks at the same time. This is the case in fastprop mode, unless a
+	 * neuron behavior implements StatefulNeuronBehavior: The activation of
+	 * such a neuron depends on the one of the sample before, so the samples
+	 * have to be propagated one by one, like in normal mode.
+	 * 
+	 * @return true, if samples may be propagated in blocks
+	 */
+	public boolean isBlockPropagationUsable() {
+		return isBlockPropagationUsable(neuronBehaviors);
+	}
+
+	/**
+	 * Does the same as isBlockPropagationUsable(), but checks the given
+	 * neuron behaviors.
+	 * 
+	 * @param neuronBehaviors
+	 * @return true, if samples may be propagated in blocks
+	 */
+	protected boolean isBlockPropagationUsable(NeuronBehavior[] neuronBehaviors) {
+		if (descriptor.getFrequency() > 0) {
+			return false;
+		}
+		for (int i = 0; i < neuronBehaviors.length; i++) {
+			if (neuronBehaviors[i] instanceof StatefulNeuronBehavior) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether every neuron of every non-input layer is connected
+	 * exactly to all neurons of the layer before, and either to the bias
+	 * neuron or not, the same for all neurons of a layer. If so, the rows of
+	 * the compact weight array belonging to one layer form a row-major weight
+	 * matrix with one row per neuron, whose first column holds the bias
+	 * weights if the layer is connected to the bias neuron. Computational
+	 * effort is O(SYNAPSES).
+	 * 
+	 * @return true, if the network has a dense layer-to-layer structure
+	 */
+	protected boolean detectDenseLayers() {
+		compactDenseLayerBias = new boolean[countLayers()];
+		for (int layer = 0; layer < countLayers(); layer++) {
+			if (countNeuronsInLayer(layer) == 0) {
+				return false;
+			}
+		}
+		for (int layer = 1; layer < countLayers(); layer++) {
+			int previousFirst = getNeuronFirstInLayer(layer - 1);
+			int columns = countNeuronsInLayer(layer - 1);
+			int first = getNeuronFirstInLayer(layer);
+			boolean bias = predecessors[first].length > 0
+					&& predecessors[first][0] == 0;
+			compactDenseLayerBias[layer] = bias;
+			int offset = bias ? 1 : 0;
+			for (int i = first; i <= getNeuronLastInLayer(layer); i++) {
+				if (predecessors[i].length != columns + offset) {
+					return false;
+				}
+				if (bias && predecessors[i][0] != 0) {
+					return false;
+				}
+				for (int c = 0; c < columns; c++) {
+					if (predecessors[i][offset + c] != previousFirst + c) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Propagates the current input through a network with dense layer-to-layer
+	 * structure in fastprop mode, layer by layer, using the compact weight
+	 * rows as row-major weight matrices. Four rows are processed at once, so
+	 * that every activation of the layer before is read once for four
+	 * neurons. Every neuron sums up its net input in the same order as in the
+	 * sparse path, so the results are the same. Single precision weights are
+	 * read if usable. The activations of bias and input neurons must already
+	 * be set.
+	 * 
+	 * @param netInputs
+	 *            the net inputs to work on
+	 * @param activations
+	 *            the activations to work on
+	 * @param neuronBehaviors
+	 *            the neuron behaviors to use
+	 */
+	protected void propagateDenseLayers(double[] netInputs,
+			double[] activations, NeuronBehavior[] neuronBehaviors) {
+		float[] singleWeights = getCompactWeightsSingle();
+		double[] weights = singleWeights == null ? compactPredecessorWeights
+				: null;
+		int[] offsets = compactPredecessorOffsets;
+		for (int layer = 1; layer < countLayers(); layer++) {
+			int previousFirst = getNeuronFirstInLayer(layer - 1);
+			int columns = countNeuronsInLayer(layer - 1);
+			boolean bias = compactDenseLayerBias[layer];
+			int columnOffset = bias ? 1 : 0;
+			int last = getNeuronLastInLayer(layer);
+			int i = getNeuronFirstInLayer(layer);
+			for (; i + 3 <= last; i += 4) {
+				int row0 = offsets[i];
+				int row1 = offsets[i + 1];
+				int row2 = offsets[i + 2];
+				int row3 = offsets[i + 3];
+				double net0 = 0;
+				double net1 = 0;
+				double net2 = 0;
+				double net3 = 0;
+				if (bias) {
+					net0 += activations[0]
+							* compactWeight(weights, singleWeights, row0);
+					net1 += activations[0]
+							* compactWeight(weights, singleWeights, row1);
+					net2 += activations[0]
+							* compactWeight(weights, singleWeights, row2);
+					net3 += activations[0]
+							* compactWeight(weights, singleWeights, row3);
+				}
+				row0 += columnOffset;
+				row1 += columnOffset;
+				row2 += columnOffset;
+				row3 += columnOffset;
+				for (int c = 0; c < columns; c++) {
+					double activation = activations[previousFirst + c];
+					net0 += activation
+							* compactWeight(weights, singleWeights, row0 + c);
+					net1 += activation
+							* compactWeight(weights, singleWeights, row1 + c);
+					net2 += activation
+							* compactWeight(weights, singleWeights, row2 + c);
+					net3 += activation
+							* compactWeight(weights, singleWeights, row3 + c);
+				}
+				netInputs[i] = net0;
+				netInputs[i + 1] = net1;
+				netInputs[i + 2] = net2;
+				netInputs[i + 3] = net3;
+			}
+			for (; i <= last; i++) {
+				int row = offsets[i];
+				double net = 0;
+				if (bias) {
+					net += activations[0]
+							* compactWeight(weights, singleWeights, row);
+				}
+				row += columnOffset;
+				for (int c = 0; c < columns; c++) {
+					net += activations[previousFirst + c]
+							* compactWeight(weights, singleWeights, row + c);
+				}
+				netInputs[i] = net;
+			}
+			NeuronBehaviors.computeActivationsOfNeurons(neuronBehaviors,
+					netInputs, activations, getNeuronFirstInLayer(layer),
+					last + 1);
+		}
+	}
+
+	/**
+	 * Does the same as propagateDenseLayers, but for a block of samples
+	 * organized as described in propagateBlock: Four weight rows are applied
+	 * to all samples of the block at once, so that every activation of the
+	 * layer before is read once for four neurons and every weight once per
+	 * block. The activations of bias and input neurons must already be set.
+	 * 
+	 * @param count
+	 *            the number of samples in the block
+	 * @param stride
+	 *            the distance of the entries of two neurons in the block
+	 *            arrays
+	 * @param blockNetInputs
+	 *            block array of the net inputs
+	 * @param blockActivations
+	 *            block array of the activations
+	 * @param neuronBehaviors
+	 *            the neuron behaviors to use
+	 */
+	protected void propagateBlockDenseLayers(int count, int stride,
+			double[] blockNetInputs, double[] blockActivations,
+			NeuronBehavior[] neuronBehaviors) {
+		float[] singleWeights = getCompactWeightsSingle();
+		double[] weights = singleWeights == null ? compactPredecessorWeights
+				: null;
+		int[] offsets = compactPredecessorOffsets;
+		for (int layer = 1; layer < countLayers(); layer++) {
+			int previousFirst = getNeuronFirstInLayer(layer - 1);
+			int columns = countNeuronsInLayer(layer - 1);
+			boolean bias = compactDenseLayerBias[layer];
+			int columnOffset = bias ? 1 : 0;
+			int first = getNeuronFirstInLayer(layer);
+			int last = getNeuronLastInLayer(layer);
+			for (int i = first; i <= last; i++) {
+				Arrays.fill(blockNetInputs, i * stride, i * stride + count, 0);
+			}
+			int i = first;
+			for (; i + 3 <= last; i += 4) {
+				int row0 = offsets[i];
+				int row1 = offsets[i + 1];
+				int row2 = offsets[i + 2];
+				int row3 = offsets[i + 3];
+				int base0 = i * stride;
+				int base1 = base0 + stride;
+				int base2 = base1 + stride;
+				int base3 = base2 + stride;
+				if (bias) {
+					double weight0 = compactWeight(weights, singleWeights,
+							row0);
+					double weight1 = compactWeight(weights, singleWeights,
+							row1);
+					double weight2 = compactWeight(weights, singleWeights,
+							row2);
+					double weight3 = compactWeight(weights, singleWeights,
+							row3);
+					for (int s = 0; s < count; s++) {
+						double activation = blockActivations[s];
+						blockNetInputs[base0 + s] += activation * weight0;
+						blockNetInputs[base1 + s] += activation * weight1;
+						blockNetInputs[base2 + s] += activation * weight2;
+						blockNetInputs[base3 + s] += activation * weight3;
+					}
+				}
+				row0 += columnOffset;
+				row1 += columnOffset;
+				row2 += columnOffset;
+				row3 += columnOffset;
+				for (int c = 0; c < columns; c++) {
+					double weight0 = compactWeight(weights, singleWeights,
+							row0 + c);
+					double weight1 = compactWeight(weights, singleWeights,
+							row1 + c);
+					double weight2 = compactWeight(weights, singleWeights,
+							row2 + c);
+					double weight3 = compactWeight(weights, singleWeights,
+							row3 + c);
+					int predecessorBase = (previousFirst + c) * stride;
+					for (int s = 0; s < count; s++) {
+						double activation = blockActivations[predecessorBase
+								+ s];
+						blockNetInputs[base0 + s] += activation * weight0;
+						blockNetInputs[base1 + s] += activation * weight1;
+						blockNetInputs[base2 + s] += activation * weight2;
+						blockNetInputs[base3 + s] += activation * weight3;
+					}
+				}
+			}
+			for (; i <= last; i++) {
+				int row = offsets[i];
+				int base = i * stride;
+				if (bias) {
+					double weight = compactWeight(weights, singleWeights, row);
+					for (int s = 0; s < count; s++) {
+						blockNetInputs[base + s] += blockActivations[s]
+								* weight;
+					}
+				}
+				row += columnOffset;
+				for (int c = 0; c < columns; c++) {
+					double weight = compactWeight(weights, singleWeights,
+							row + c);
+					int predecessorBase = (previousFirst + c) * stride;
+					for (int s = 0; s < count; s++) {
+						blockNetInputs[base + s] += blockActivations[predecessorBase
+								+ s]
+								* weight;
+					}
+				}
+			}
+			for (i = first; i <= last; i++) {
+				NeuronBehaviors.computeActivations(neuronBehaviors[i],
+						blockNetInputs, blockActivations, i * stride, i
+								* stride + count);
+			}
+		}
+	}
+
+	/**
+	 * Wraps setSynapse for your convenience - to get more information, read the
+	 * setSynapse documentation.
+	 * 
+	 * @param i
+	 * @param j
+	 * @param newWeight
+	 */
+	public void createSynapse(int i, int j, double newWeight) {
+		setSynapse(i, j, newWeight);
+	}
+
+	/**
+	 * Updates or randomly chooses the synaptic weight value from the neuron i
+	 * to neuron j (computational effort: O(log(MIN(I_out,J_in))))) - If the
+	 * synapse doesn't exist, it is added, if it is allowed (worst case
+	 * computational effort: O(NEURONS*log(NEURONS))).
+	 * <p>
+	 * If newWeight is assigned the value Double.NaN, the synapse will be
+	 * assigned a random value dependent on the synapseInitialRange defined in
+	 * the descriptor.
+	 * 
+	 * @param i
+	 *            the start neuron of the synapse
+	 * @param j
+	 *            the end neuron of the synapse
+	 * @param newWeight
+	 *            If assigned the value Double.NaN, the synapse will be assigned
+	 *            a random value dependent on the synapseInitialRange defined in
+	 *            the descriptor.
+	 * 
+	 */
+	public void setSynapse(int i, int j, double newWeight) {
+		if (i < 0 || i > countNeurons()) {
+			throw new IllegalArgumentException("Illegal Synapse.");
+		}
+		if (j < 0 || j > countNeurons()) {
+			throw new IllegalArgumentException("Illegal Synapse.");
+		}
+
+		// compute synapse value if necessary
+		double weightToAssign = newWeight;
+		if (Double.isNaN(newWeight)) {
+			weightToAssign = getRandomDoubleBetweenIncluding(
+					-descriptor.getSynapseInitialRange(),
+					descriptor.getSynapseInitialRange());
+		}
+
+		// search for synaptic weight. if the synapse doesn't exist, it is
+		// added. Otherwise, it's weight value is altered.
+		int predIdx = Arrays.binarySearch(predecessors[j], i);
+		if (predIdx >= 0) {
+			// synapse exists and just has to be altered.
+			predecessorWeights[j][predIdx] = weightToAssign;
+			if (compactWeightsValid) {
+				compactPredecessorWeights[compactPredecessorOffsets[j]
+						+ predIdx] = weightToAssign;
+			}
+			if (compactSingleWeightsValid) {
+				compactPredecessorWeightsSingle[compactPredecessorOffsets[j]
+						+ predIdx] = (float) weightToAssign;
+			}
+		} else {
+			if (isSynapseAllowed(i, j)) {
+
+				// synapse does not exist, so it has to be added. the succIdx
+				// and precIdx contain the addition position that is used in
+				// order to keep the arrays sorted by adjacent neuron indices.
+				int succIdx = Arrays.binarySearch(successors[i], j);
+				predIdx = -(predIdx + 1);
+				succIdx = -(succIdx + 1);
+
+				// Before adding, update the successor arrays of all neurons
+				// with index >= I that have J as an successor (all predecessors
+				// from J), because J's predecessor array, that stores the
+				// regarding weights, is shifted left from position I on.
+				// of this: O(J_in) times searching in the regarding predecessor
+				// index arrays.
+				for (int predOfJIdx = predIdx; predOfJIdx < predecessors[j].length; predOfJIdx++) {
+					int predOfJ = predecessors[j][predOfJIdx];
+					int idxToIncrease = Arrays.binarySearch(
+							successors[predOfJ], j);
+					successorWeightIndexInPendantPredecessorArray[predOfJ][idxToIncrease]++;
+				}
+
+				// adding successor entry for i
+				int[] newSuccessors = new int[successors[i].length + 1];
+				int[] newSuccessorWeightIndexInPendantPredecessorArray = new int[successorWeightIndexInPendantPredecessorArray[i].length + 1];
+				for (int idx = 0; idx < newSuccessorWeightIndexInPendantPredecessorArray.length; idx++) {
+					if (idx < succIdx) {
+						// just copy old content
+						newSuccessors[idx] = successors[i][idx];
+						newSuccessorWeightIndexInPendantPredecessorArray[idx] = successorWeightIndexInPendantPredecessorArray[i][idx];
+					}
+					if (idx == succIdx) {
+						// add synapse here
+						newSuccessors[idx] = j;
+						newSuccessorWeightIndexInPendantPredecessorArray[idx] = predIdx;
+					}
+					if (idx > succIdx) {
+						// shift content to the ascending direction by one cell
+						newSuccessors[idx] = successors[i][idx - 1];
+						newSuccessorWeightIndexInPendantPredecessorArray[idx] = successorWeightIndexInPendantPredecessorArray[i][idx - 1];
+					}
+				}
+
+				// adding predecessor entry for j
+
+				// create new arrays that will be replacing old ones
+				int[] newPredecessors = new int[predecessors[j].length + 1];
+				double[] newPredecessorWeights = new double[predecessorWeights[j].length + 1];
+
+				// go through each of the arrays
+				for (int idx = 0; idx < newPredecessorWeights.length; idx++) {
+					if (idx < predIdx) {
+						// just copy old content
 						newPredecessors[idx] = predecessors[j][idx];
 						newPredecessorWeights[idx] = predecessorWeights[j][idx];
 					}
@@ -1157,36 +2269,8 @@ public class NeuralNetwork implements Serializable {
 				predecessorWeights[j] = newPredecessorWeights;
 
 				// update shadows analogue
-				for (Iterator<String> keyIterator = shadows.keySet().iterator(); keyIterator
-						.hasNext();) {
-					String key = keyIterator.next();
-
-					// get shadow
-					double[][] shadow = shadows.get(key);
-					// create new shadow part
-					double[] newShadowPart = new double[shadow[j].length + 1];
-
-					// fill shadow part
-					for (int idx = 0; idx < newPredecessorWeights.length; idx++) {
-						if (idx < predIdx) {
-							// just copy old content
-							newShadowPart[idx] = shadow[j][idx];
-						}
-						if (idx == predIdx) {
-							// add synapse here
-							newShadowPart[idx] = 0;
-						}
-						if (idx > predIdx) {
-							// shift content to the ascending direction by
-							// one cell
-							newShadowPart[idx] = shadow[j][idx - 1];
-						}
-						// assign to shadow (no need to rebuild shadows
-						// treemap for references of shadows do not change)
-
-					}
-					shadow[j] = newShadowPart;
-				}
+				shadows.insertSynapse(j, predIdx);
+				invalidateCompactStructure();
 
 			} else {
 				throw new IllegalArgumentException(
@@ -1195,6 +2279,223 @@ public class NeuralNetwork implements Serializable {
 		}
 	}
 
+	/**
+	 * Does the same as calling setSynapse(fromNeurons[k], toNeurons[k],
+	 * newWeights[k]) for every k in ascending order, but builds the data
+	 * structure in one pass instead of reallocating the arrays of both
+	 * endpoints and all shadows for every single new synapse. This makes it
+	 * the method of choice to add lots of synapses at once, for example when
+	 * building or loading a large network. Computational effort is
+	 * O(NEURONS+SYNAPSES+SYNAPSESTOSET), no matter how many synapses are new.
+	 * 
+	 * <p>
+	 * If a synapse is given several times, the last weight given wins. Weights
+	 * assigned the value Double.NaN are chosen at random within the
+	 * synapseInitialRange defined in the descriptor, drawing the random numbers
+	 * in the same order setSynapse would. Shadows are assigned the value 0 for
+	 * new synapses. If a synapse that does not exist yet is not allowed, an
+	 * IllegalArgumentException is thrown and the network is left untouched.
+	 * 
+	 * @param fromNeurons
+	 *            the start neurons of the synapses
+	 * @param toNeurons
+	 *            the end neurons of the synapses
+	 * @param newWeights
+	 *            the weights of the synapses, or Double.NaN for random ones
+	 */
+	public void setSynapses(int[] fromNeurons, int[] toNeurons,
+			double[] newWeights) {
+		if (fromNeurons.length != toNeurons.length
+				|| fromNeurons.length != newWeights.length) {
+			throw new IllegalArgumentException(
+					"Synapse arrays differ in length.");
+		}
+		int count = fromNeurons.length;
+		for (int k = 0; k < count; k++) {
+			int i = fromNeurons[k];
+			int j = toNeurons[k];
+			if (i < 0 || i > countNeurons() || j < 0 || j > countNeurons()) {
+				throw new IllegalArgumentException("Illegal Synapse.");
+			}
+			if (!isSynapseAllowed(i, j)
+					&& Arrays.binarySearch(predecessors[j], i) < 0) {
+				throw new IllegalArgumentException(
+						"Synapse not allowed to add.");
+			}
+		}
+
+		// compute synapse values where necessary, in the given order
+		double[] weightsToAssign = new double[count];
+		for (int k = 0; k < count; k++) {
+			weightsToAssign[k] = newWeights[k];
+			if (Double.isNaN(newWeights[k])) {
+				weightsToAssign[k] = getRandomDoubleBetweenIncluding(
+						-descriptor.getSynapseInitialRange(),
+						descriptor.getSynapseInitialRange());
+			}
+		}
+
+		// sort by end neuron and then by start neuron, keeping the given
+		// order of equal synapses
+		int[] order = new int[count];
+		for (int k = 0; k < count; k++) {
+			order[k] = k;
+		}
+		order = sortIndicesStable(fromNeurons, order, countNeurons() + 1);
+		order = sortIndicesStable(toNeurons, order, countNeurons() + 1);
+
+		// merge the synapses of each end neuron into its predecessor array
+		boolean structureChanged = false;
+		int start = 0;
+		while (start < count) {
+			int j = toNeurons[order[start]];
+			int end = start + 1;
+			while (end < count && toNeurons[order[end]] == j) {
+				end++;
+			}
+			if (mergePredecessors(j, fromNeurons, weightsToAssign, order,
+					start, end)) {
+				structureChanged = true;
+			}
+			start = end;
+		}
+
+		if (structureChanged) {
+			buildSuccessorsFromPredecessors();
+			invalidateCompactStructure();
+		} else {
+			invalidateCompactWeights();
+		}
+	}
+
+	/**
+	 * Merges the synapses order[start] to order[end-1] of the given arrays,
+	 * which all end in neuron j and are sorted by start neuron, into the
+	 * predecessor array of j, overwriting the weights of existing synapses.
+	 * If synapses are added, the shadow parts of j are rebuilt, with the value
+	 * 0 for the new synapses. The successor arrays are not touched.
+	 * Computational effort is O(J_in+end-start).
+	 * 
+	 * @param j
+	 *            the end neuron
+	 * @param fromNeurons
+	 *            the start neurons of the synapses
+	 * @param weights
+	 *            the weights of the synapses
+	 * @param order
+	 *            the synapse indices, sorted by start neuron
+	 * @param start
+	 *            first position in order to merge
+	 * @param end
+	 *            position in order after the last one to merge
+	 * @return true, if synapses were added
+	 */
+	protected boolean mergePredecessors(int j, int[] fromNeurons,
+			double[] weights, int[] order, int start, int end) {
+		int[] oldPredecessors = predecessors[j];
+		double[] oldWeights = predecessorWeights[j];
+		int[] mergedPredecessors = new int[oldPredecessors.length + end - start];
+		double[] mergedWeights = new double[mergedPredecessors.length];
+		// position of each merged synapse in the old arrays, -1 if new
+		int[] oldPositions = new int[mergedPredecessors.length];
+
+		int length = 0;
+		int old = 0;
+		int k = start;
+		while (old < oldPredecessors.length || k < end) {
+			if (k == end
+					|| (old < oldPredecessors.length && oldPredecessors[old] < fromNeurons[order[k]])) {
+				mergedPredecessors[length] = oldPredecessors[old];
+				mergedWeights[length] = oldWeights[old];
+				oldPositions[length] = old;
+				old++;
+			} else {
+				int i = fromNeurons[order[k]];
+				// of several equal synapses, the last one wins
+				while (k + 1 < end && fromNeurons[order[k + 1]] == i) {
+					k++;
+				}
+				mergedPredecessors[length] = i;
+				mergedWeights[length] = weights[order[k]];
+				oldPositions[length] = -1;
+				if (old < oldPredecessors.length && oldPredecessors[old] == i) {
+					oldPositions[length] = old;
+					old++;
+				}
+				k++;
+			}
+			length++;
+		}
+
+		if (length == oldPredecessors.length) {
+			// no synapse added, just alter the weights
+			System.arraycopy(mergedWeights, 0, oldWeights, 0, length);
+			return false;
+		}
+
+		predecessors[j] = Arrays.copyOf(mergedPredecessors, length);
+		predecessorWeights[j] = Arrays.copyOf(mergedWeights, length);
+		shadows.remapSynapses(j, oldPositions, length);
+		return true;
+	}
+
+	/**
+	 * Rebuilds the successor arrays and the successor weight indices of all
+	 * neurons out of the predecessor arrays with computational effort in
+	 * O(NEURONS+SYNAPSES). The successor arrays are sorted by ascending neuron
+	 * index afterwards.
+	 */
+	protected void buildSuccessorsFromPredecessors() {
+		int[] successorCounts = new int[countNeurons() + 1];
+		for (int j = 0; j < countNeurons() + 1; j++) {
+			for (int k = 0; k < predecessors[j].length; k++) {
+				successorCounts[predecessors[j][k]]++;
+			}
+		}
+		for (int i = 0; i < countNeurons() + 1; i++) {
+			successors[i] = new int[successorCounts[i]];
+			successorWeightIndexInPendantPredecessorArray[i] = new int[successorCounts[i]];
+		}
+		int[] successorsIdx = new int[countNeurons() + 1];
+		for (int j = 0; j < countNeurons() + 1; j++) {
+			for (int k = 0; k < predecessors[j].length; k++) {
+				int i = predecessors[j][k];
+				successors[i][successorsIdx[i]] = j;
+				successorWeightIndexInPendantPredecessorArray[i][successorsIdx[i]] = k;
+				successorsIdx[i]++;
+			}
+		}
+	}
+
+	/**
+	 * Sorts the given indices by keys[index] with a stable counting sort in
+	 * O(INDICES+NUMBEROFKEYS), so that indices with equal keys keep their
+	 * order.
+	 * 
+	 * @param keys
+	 *            the keys, between 0 (inclusive) and numberOfKeys (exclusive)
+	 * @param indices
+	 *            the indices to sort
+	 * @param numberOfKeys
+	 *            the number of possible keys
+	 * @return a new array containing the sorted indices
+	 */
+	protected static int[] sortIndicesStable(int[] keys, int[] indices,
+			int numberOfKeys) {
+		int[] positions = new int[numberOfKeys + 1];
+		for (int k = 0; k < indices.length; k++) {
+			positions[keys[indices[k]] + 1]++;
+		}
+		for (int key = 0; key < numberOfKeys; key++) {
+			positions[key + 1] += positions[key];
+		}
+		int[] result = new int[indices.length];
+		for (int k = 0; k < indices.length; k++) {
+			result[positions[keys[indices[k]]]++] = indices[k];
+		}
+		return result;
+	}
+
 	/**
 	 * Removes synapses, that exist in the network but are not allowed (this may
 	 * happen if a network is created and the allowed synapse types are changed
@@ -1269,8 +2570,8 @@ public class NeuralNetwork implements Serializable {
 					newSuccessors[idx] = successors[i][idx];
 					newSuccessorWeightIndexInPendantPredecessorArray[idx] = successorWeightIndexInPendantPredecessorArray[i][idx];
 				}
-				// if idx == succIdx, synapse is removed
-				if (idx > succIdx) {
+				// from idx == succIdx on, the removed synapse is skipped
+				if (idx >= succIdx) {
 					// shift content to the descending direction by one cell
 					newSuccessors[idx] = successors[i][idx + 1];
 					newSuccessorWeightIndexInPendantPredecessorArray[idx] = successorWeightIndexInPendantPredecessorArray[i][idx + 1];
@@ -1287,8 +2588,8 @@ public class NeuralNetwork implements Serializable {
 					newPredecessors[idx] = predecessors[j][idx];
 					newPredecessorWeights[idx] = predecessorWeights[j][idx];
 				}
-				// if idx == precIdx, synapse is removed
-				if (idx > predIdx) {
+				// from idx == predIdx on, the removed synapse is skipped
+				if (idx >= predIdx) {
 					// shift content to the descending direction by one cell
 					newPredecessors[idx] = predecessors[j][idx + 1];
 					newPredecessorWeights[idx] = predecessorWeights[j][idx + 1];
@@ -1315,32 +2616,85 @@ public class NeuralNetwork implements Serializable {
 			}
 
 			// for all shadows, do the same update
-			for (Iterator<String> keyIterator = shadows.keySet().iterator(); keyIterator
-					.hasNext();) {
-				String key = keyIterator.next();
+			shadows.removeSynapse(j, predIdx);
+			invalidateCompactStructure();
+		}
+	}
+
+	/**
+	 * Does the same as calling removeSynapse(fromNeurons[k], toNeurons[k])
+	 * for every k, but rebuilds the data structure in one pass instead of
+	 * shifting the arrays of both endpoints and all shadows for every single
+	 * synapse, which makes it the method of choice to remove lots of synapses
+	 * at once, for example when pruning a network. Computational effort is
+	 * O(NEURONS+SYNAPSES+SYNAPSESTOREMOVE). Synapses that do not exist are
+	 * ignored.
+	 * 
+	 * @param fromNeurons
+	 *            the start neurons of the synapses
+	 * @param toNeurons
+	 *            the end neurons of the synapses
+	 */
+	public void removeSynapses(int[] fromNeurons, int[] toNeurons) {
+		if (fromNeurons.length != toNeurons.length) {
+			throw new IllegalArgumentException(
+					"Synapse arrays differ in length.");
+		}
+		int count = fromNeurons.length;
+		for (int k = 0; k < count; k++) {
+			if (fromNeurons[k] < 0 || fromNeurons[k] > countNeurons()
+					|| toNeurons[k] < 0 || toNeurons[k] > countNeurons()) {
+				throw new IllegalArgumentException("Illegal Synapse.");
+			}
+		}
 
-				// get shadow
-				double[][] shadow = shadows.get(key);
-				// create new shadow part
-				double[] newShadowPart = new double[shadow[j].length - 1];
+		// sort by end neuron and then by start neuron
+		int[] order = new int[count];
+		for (int k = 0; k < count; k++) {
+			order[k] = k;
+		}
+		order = sortIndicesStable(fromNeurons, order, countNeurons() + 1);
+		order = sortIndicesStable(toNeurons, order, countNeurons() + 1);
 
-				// fill shadow part
-				for (int idx = 0; idx < newPredecessorWeights.length; idx++) {
-					if (idx < predIdx) {
-						// just copy old content
-						newShadowPart[idx] = shadow[j][idx];
-					}
-					// if idx == precIdx, synapse is removed
-					if (idx > predIdx) {
-						// shift content to the descending direction by one cell
-						newShadowPart[idx] = shadow[j][idx + 1];
-					}
-					// assign to shadow (no need to rebuild shadows
-					// treemap for references of shadows do not change)
+		// filter the predecessor array of each end neuron
+		boolean structureChanged = false;
+		int start = 0;
+		while (start < count) {
+			int j = toNeurons[order[start]];
+			int end = start + 1;
+			while (end < count && toNeurons[order[end]] == j) {
+				end++;
+			}
+			int[] oldPredecessors = predecessors[j];
+			int[] oldPositions = new int[oldPredecessors.length];
+			int length = 0;
+			int k = start;
+			for (int old = 0; old < oldPredecessors.length; old++) {
+				while (k < end && fromNeurons[order[k]] < oldPredecessors[old]) {
+					k++;
+				}
+				if (k == end || fromNeurons[order[k]] != oldPredecessors[old]) {
+					oldPositions[length++] = old;
 				}
-				shadow[j] = newShadowPart;
 			}
+			if (length < oldPredecessors.length) {
+				int[] newPredecessors = new int[length];
+				double[] newWeights = new double[length];
+				for (int idx = 0; idx < length; idx++) {
+					newPredecessors[idx] = oldPredecessors[oldPositions[idx]];
+					newWeights[idx] = predecessorWeights[j][oldPositions[idx]];
+				}
+				predecessors[j] = newPredecessors;
+				predecessorWeights[j] = newWeights;
+				shadows.remapSynapses(j, oldPositions, length);
+				structureChanged = true;
+			}
+			start = end;
+		}
 
+		if (structureChanged) {
+			buildSuccessorsFromPredecessors();
+			invalidateCompactStructure();
 		}
 	}
 
@@ -1416,10 +2770,300 @@ public class NeuralNetwork implements Serializable {
 
 	}
 
+	/**
+	 * Copies all synaptic weights into the given array with computational
+	 * effort in O(SYNAPSES). The weights are ordered by end neuron and then by
+	 * start neuron, which is the order of the compact mirror, so the array
+	 * stays valid as long as the topology is not changed. Along with
+	 * setWeightsFromArray, this allows to treat the weights as one flat
+	 * vector, like optimization methods working on weight vectors do.
+	 * 
+	 * @param weights
+	 *            the array to write the weights into, its length has to be
+	 *            countSynapses().
+	 * @return the given array
+	 */
+	public double[] copyWeightsToArray(double[] weights) {
+		if (weights.length != countSynapses()) {
+			throw new IllegalArgumentException(
+					"Weight array length does not match the number of synapses.");
+		}
+		copyShadowToCompact(predecessorWeights, weights);
+		return weights;
+	}
+
+	/**
+	 * Sets all synaptic weights to the values in the given array with
+	 * computational effort in O(SYNAPSES). The array has to be in the order
+	 * described in copyWeightsToArray.
+	 * 
+	 * @param weights
+	 *            the new weights, the length of the array has to be
+	 *            countSynapses().
+	 */
+	public void setWeightsFromArray(double[] weights) {
+		if (weights.length != countSynapses()) {
+			throw new IllegalArgumentException(
+					"Weight array length does not match the number of synapses.");
+		}
+		copyShadowFromCompact(weights, predecessorWeights);
+		invalidateCompactWeights();
+	}
+
+	/**
+	 * Checks whether the given network has the same topology as this one, that
+	 * is, the same numbers of neurons per layer and the same synapses, with
+	 * computational effort in O(NEURONS+SYNAPSES). This is the case for clones
+	 * of this network, as long as neither network has been changed
+	 * topologically since. Weights and neuron behaviors are not compared.
+	 * 
+	 * @param other
+	 *            the network to compare with
+	 * @return true, if both networks have the same topology.
+	 */
+	public boolean hasSameTopology(NeuralNetwork other) {
+		if (other == this) {
+			return true;
+		}
+		if (!Arrays.equals(neuronsPerLayer, other.neuronsPerLayer)
+				|| predecessors.length != other.predecessors.length) {
+			return false;
+		}
+		for (int i = 0; i < predecessors.length; i++) {
+			if (!Arrays.equals(predecessors[i], other.predecessors[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the synaptic weights of this network into the given network,
+	 * which must have the same topology (see hasSameTopology), e.g. because it
+	 * is a clone of this network. Nothing else is copied and no arrays are
+	 * allocated, so unlike clone, this costs just the copying of the weights
+	 * in O(NEURONS+SYNAPSES). This allows training loops to keep a working
+	 * copy of a network and refresh it instead of cloning the network again
+	 * and again. If the compact mirrors of both networks are up to date, the
+	 * mirror of the target is updated as well instead of being invalidated.
+	 * 
+	 * @param target
+	 *            the network to copy the weights into
+	 */
+	public void copyWeightsInto(NeuralNetwork target) {
+		copyWeightsInto(target, false);
+	}
+
+	/**
+	 * Does the same as copyWeightsInto(target), and copies the synapse shadows
+	 * of this network as well if desired, e.g. the gradients and step sizes of
+	 * Resilient Backpropagation, so the target can continue training where
+	 * this network stopped. Shadows of the target whose slots are empty in
+	 * this network are removed. Arrays of the target are reused wherever
+	 * possible. Computational effort is O(NEURONS+SYNAPSES) per shadow.
+	 * 
+	 * @param target
+	 *            the network to copy the weights into
+	 * @param includeShadows
+	 *            whether to copy the shadows as well. If false, the shadows
+	 *            of the target are left untouched.
+	 */
+	public void copyWeightsInto(NeuralNetwork target, boolean includeShadows) {
+		if (!hasSameTopology(target)) {
+			throw new IllegalArgumentException(
+					"Networks do not have the same topology.");
+		}
+		if (target == this) {
+			return;
+		}
+		for (int i = 0; i < predecessorWeights.length; i++) {
+			System.arraycopy(predecessorWeights[i], 0,
+					target.predecessorWeights[i], 0,
+					predecessorWeights[i].length);
+		}
+		if (compactStructureValid && compactWeightsValid
+				&& target.compactStructureValid
+				&& target.compactPredecessorWeights != null) {
+			// same topology, so both mirrors have the same layout
+			System.arraycopy(compactPredecessorWeights, 0,
+					target.compactPredecessorWeights, 0,
+					compactPredecessorWeights.length);
+			target.compactWeightsValid = true;
+			target.compactSingleWeightsValid = false;
+		} else {
+			target.invalidateCompactWeights();
+		}
+
+		if (includeShadows) {
+			shadows.copyInto(target.shadows);
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the synaptic weights of this network, and of its
+	 * synapse shadows if desired, which can be restored using
+	 * restoreSnapshot as long as the topology is not changed. Computational
+	 * effort is O(NEURONS+SYNAPSES) per shadow.
+	 * 
+	 * @param includeShadows
+	 *            whether to store the shadows as well, e.g. the step sizes of
+	 *            Resilient Backpropagation
+	 * @return the new snapshot
+	 */
+	public NeuralNetworkSnapshot createSnapshot(boolean includeShadows) {
+		NeuralNetworkSnapshot snapshot = new NeuralNetworkSnapshot(this,
+				includeShadows);
+		takeSnapshot(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Overwrites the given snapshot of this network with the current synaptic
+	 * weights, and shadows if the snapshot includes them. The arrays of the
+	 * snapshot are reused unless the number of synapses changed, so taking
+	 * snapshots repeatedly, e.g. whenever training found better weights, does
+	 * not produce any garbage. Computational effort is O(NEURONS+SYNAPSES) per
+	 * shadow.
+	 * 
+	 * @param snapshot
+	 *            a snapshot created by createSnapshot of this network
+	 */
+	public void takeSnapshot(NeuralNetworkSnapshot snapshot) {
+		if (snapshot.net != this) {
+			throw new IllegalArgumentException(
+					"Snapshot belongs to another network.");
+		}
+		int synapses = countSynapses();
+		if (snapshot.weights == null || snapshot.weights.length != synapses) {
+			snapshot.weights = new double[synapses];
+			snapshot.shadows = null;
+		}
+		copyShadowToCompact(predecessorWeights, snapshot.weights);
+
+		if (snapshot.includingShadows) {
+			double[][][] slots = shadows.slots;
+			if (snapshot.shadows == null
+					|| snapshot.shadows.length != slots.length) {
+				double[][] old = snapshot.shadows;
+				snapshot.shadows = new double[slots.length][];
+				if (old != null) {
+					System.arraycopy(old, 0, snapshot.shadows, 0,
+							Math.min(old.length, slots.length));
+				}
+			}
+			for (int slot = 0; slot < slots.length; slot++) {
+				if (slots[slot] == null) {
+					snapshot.shadows[slot] = null;
+				} else {
+					if (snapshot.shadows[slot] == null) {
+						snapshot.shadows[slot] = new double[synapses];
+					}
+					copyShadowToCompact(slots[slot], snapshot.shadows[slot]);
+				}
+			}
+			snapshot.userSlots.clear();
+			snapshot.userSlots.putAll(shadows.userSlots);
+		}
+		snapshot.topologyVersion = topologyVersion;
+	}
+
+	/**
+	 * Sets the synaptic weights, and the shadows if included, back to the
+	 * values stored in the given snapshot with computational effort in
+	 * O(NEURONS+SYNAPSES) per shadow. If the compact mirror is up to date, it
+	 * is updated as well instead of being invalidated. If the topology has
+	 * been changed since the snapshot was taken, an IllegalArgumentException
+	 * is thrown.
+	 * 
+	 * @param snapshot
+	 *            a snapshot taken of this network
+	 */
+	public void restoreSnapshot(NeuralNetworkSnapshot snapshot) {
+		if (snapshot.net != this) {
+			throw new IllegalArgumentException(
+					"Snapshot belongs to another network.");
+		}
+		if (!snapshot.isRestorable()) {
+			throw new IllegalArgumentException(
+					"Topology has changed since the snapshot was taken.");
+		}
+		copyShadowFromCompact(snapshot.weights, predecessorWeights);
+		if (compactStructureValid && compactPredecessorWeights != null) {
+			System.arraycopy(snapshot.weights, 0, compactPredecessorWeights,
+					0, snapshot.weights.length);
+			compactWeightsValid = true;
+			compactSingleWeightsValid = false;
+		} else {
+			invalidateCompactWeights();
+		}
+
+		if (snapshot.includingShadows) {
+			int slots = Math.max(shadows.slots.length, snapshot.shadows.length);
+			for (int slot = 0; slot < slots; slot++) {
+				double[] values = slot < snapshot.shadows.length ? snapshot.shadows[slot]
+						: null;
+				if (values == null) {
+					shadows.remove(slot);
+				} else {
+					double[][] shadow = shadows.get(slot);
+					if (shadow == null) {
+						shadow = createShadowUnmanaged();
+						shadows.put(slot, shadow);
+					}
+					copyShadowFromCompact(values, shadow);
+				}
+			}
+			shadows.userSlots.clear();
+			shadows.userSlots.putAll(snapshot.userSlots);
+		}
+	}
+
+	/**
+	 * Copies all synapses into the given arrays with computational effort in
+	 * O(SYNAPSES). Entry k of the arrays describes the synapse from neuron
+	 * fromNeurons[k] to neuron toNeurons[k] with weight weights[k]. The
+	 * synapses are ordered like in copyWeightsToArray. The arrays may be
+	 * longer than needed, so callers can reuse them while the topology
+	 * changes; entries behind the synapses are left untouched. Along with
+	 * setSynapses, this allows to read and write the whole topology at once.
+	 * 
+	 * @param fromNeurons
+	 *            the array to write the start neurons into, at least
+	 *            countSynapses() long
+	 * @param toNeurons
+	 *            the array to write the end neurons into, at least
+	 *            countSynapses() long
+	 * @param weights
+	 *            the array to write the weights into, at least
+	 *            countSynapses() long
+	 * @return the number of synapses copied, i.e. countSynapses()
+	 */
+	public int copySynapsesToArrays(int[] fromNeurons, int[] toNeurons,
+			double[] weights) {
+		int count = countSynapses();
+		if (fromNeurons.length < count || toNeurons.length < count
+				|| weights.length < count) {
+			throw new IllegalArgumentException(
+					"Synapse arrays are shorter than the number of synapses.");
+		}
+		int k = 0;
+		for (int j = 0; j < predecessors.length; j++) {
+			int[] pred = predecessors[j];
+			double[] predWeights = predecessorWeights[j];
+			for (int idx = 0; idx < pred.length; idx++) {
+				fromNeurons[k] = pred[idx];
+				toNeurons[k] = j;
+				weights[k] = predWeights[idx];
+				k++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Gets the value in user shadow that is shadowing the synapse from neuron i
 	 * to neuron j in shadow named key with computational effort in
-	 * O(log(NUMBEROFSHADOWS)+log(MIN(I_out,J_in)))).
+	 * O(log(NUMBEROFUSERSHADOWS)+log(MIN(I_out,J_in)))).
 	 * 
 	 * @param i
 	 *            the start neuron of the synapse that is shadowed
@@ -1438,7 +3082,7 @@ public class NeuralNetwork implements Serializable {
 			throw new IllegalArgumentException("Illegal Synapse." + i + "," + j
 					+ " NumberOfNeurons: " + countNeurons());
 		}
-		double[][] shadow = shadows.get(USERSHADOWPREFIX + key);
+		double[][] shadow = getUserShadow(key);
 		if (shadow == null) {
 			throw new IllegalArgumentException("User Shadow \"" + key
 					+ "\" does not exist.");
@@ -1468,7 +3112,7 @@ public class NeuralNetwork implements Serializable {
 	/**
 	 * Sets the value in user shadow that is shadowing the synapse from neuron i
 	 * to neuron j in shadow named key with computational effort in
-	 * O(log(NUMBEROFSHADOWS)+log(MIN(I_out,J_in)))).
+	 * O(log(NUMBEROFUSERSHADOWS)+log(MIN(I_out,J_in)))).
 	 * 
 	 * @param i
 	 *            the start neuron of the synapse that is shadowed
@@ -1487,7 +3131,7 @@ public class NeuralNetwork implements Serializable {
 			throw new IllegalArgumentException("Illegal Synapse." + i + "," + j
 					+ " NumberOfNeurons: " + countNeurons());
 		}
-		double[][] shadow = shadows.get(USERSHADOWPREFIX + key);
+		double[][] shadow = getUserShadow(key);
 		if (shadow == null) {
 			throw new IllegalArgumentException("User Shadow \"" + key
 					+ "\" does not exist.");
@@ -1579,21 +3223,31 @@ public class NeuralNetwork implements Serializable {
 					"Can't backprop. Only forward and forward shortcut Synapses are allowed.");
 		}
 
+		if (descriptor.isCompactSynapseStorage()) {
+			trainBackpropagationOfErrorCompact(inputs, desiredOutputs, runs,
+					eta);
+			return;
+		}
+
+		double[] delta = getWorkspace().getDelta();
+		double[] outputs = getWorkspace().getOutput();
 		for (int run = 0; run < runs; run++) {
 			// Choose Sample
 			int chosenSample = getRandomIntegerBetweenIncluding(0,
 					numberOfSamples - 1);
 
-			double[] delta = new double[countNeurons() + 1];
+			// Propagate Sample once, so that all derivatives are computed
+			// from the net inputs of the chosen sample
+			propagate(inputs[chosenSample], outputs);
+
 			for (int i = countNeurons(); i >= getNeuronFirstInLayer(1); i--) {
 				delta[i] = 0;
 				// first part of delta
-				delta[i] = neuronBehaviors[i].computeDerivative(netInputs[i]);
+				delta[i] = NeuronBehaviors.computeDerivative(neuronBehaviors[i],
+						netInputs[i], activations[i]);
 				
 				// second part of delta depending on kind of neuron
 				if (isNeuronOutput(i)) {
-					// Propagate Sample
-					double[] outputs = propagate(inputs[chosenSample]);
 					delta[i] *= (desiredOutputs[chosenSample][mapOutputNeuronToOutputNumber(i)] 
 							- outputs[mapOutputNeuronToOutputNumber(i)]);
 					
@@ -1622,7 +3276,272 @@ public class NeuralNetwork implements Serializable {
 				}
 			}
 		}
+		invalidateCompactWeights();
+	}
+
+	/**
+	 * Does the same as trainBackpropagationOfError, but on the compact mirror
+	 * of the data structure. The weights are written back into the main data
+	 * storage once training is done.
+	 * 
+	 * @param inputs
+	 *            the inputs of the training lesson
+	 * @param desiredOutputs
+	 *            the desired outputs of the training lesson
+	 * @param runs
+	 *            The number of random patterns to train.
+	 * @param eta
+	 *            The learning rate.
+	 */
+	protected void trainBackpropagationOfErrorCompact(double[][] inputs,
+			double[][] desiredOutputs, int runs, double eta) {
+		ensureCompactStorage();
+		// the weights change from now on, training runs in double precision
+		compactSingleWeightsValid = false;
+
+		int numberOfSamples = inputs.length;
+		int[] predecessorOffsets = compactPredecessorOffsets;
+		int[] predecessorIndices = compactPredecessors;
+		double[] weights = compactPredecessorWeights;
+		int[] successorOffsets = compactSuccessorOffsets;
+		int[] successorIndices = compactSuccessors;
+		int[] successorWeightIndices = compactSuccessorWeightIndices;
+
+		double[] delta = getWorkspace().getDelta();
+		double[] outputs = getWorkspace().getOutput();
+		try {
+			for (int run = 0; run < runs; run++) {
+				// Choose Sample
+				int chosenSample = getRandomIntegerBetweenIncluding(0,
+						numberOfSamples - 1);
+
+				// Propagate Sample once
+				propagateUsing(inputs[chosenSample], outputs, netInputs,
+						activations, neuronBehaviors, null, true);
+
+				if (isDenseLayerPathUsable()) {
+					trainBackpropagationOfErrorDenseLayers(
+							desiredOutputs[chosenSample], outputs, eta, delta);
+					continue;
+				}
+
+				for (int i = countNeurons(); i >= getNeuronFirstInLayer(1); i--) {
+					// first part of delta
+					delta[i] = NeuronBehaviors.computeDerivative(
+							neuronBehaviors[i], netInputs[i], activations[i]);
+
+					// second part of delta depending on kind of neuron
+					if (isNeuronOutput(i)) {
+						delta[i] *= (desiredOutputs[chosenSample][mapOutputNeuronToOutputNumber(i)] - outputs[mapOutputNeuronToOutputNumber(i)]);
+						delta[i] *= eta;
+					} else {
+						double temp = 0;
+						// collect delta from connected neuron
+						for (int k = successorOffsets[i]; k < successorOffsets[i + 1]; k++) {
+							temp += weights[successorWeightIndices[k]]
+									* delta[successorIndices[k]];
+						}
+						delta[i] *= temp;
+					}
+				}
+
+				// alter weights
+				for (int i = 0; i < countNeurons() + 1; i++) {
+					for (int k = predecessorOffsets[i]; k < predecessorOffsets[i + 1]; k++) {
+						weights[k] += activations[predecessorIndices[k]]
+								* delta[i];
+					}
+				}
+			}
+		} finally {
+			writeBackCompactWeights();
+		}
+	}
+
+	/**
+	 * Performs one step of trainBackpropagationOfErrorCompact for the sample
+	 * just propagated, in a network with dense layer-to-layer structure, layer
+	 * by layer using the compact weight rows as row-major weight matrices. All
+	 * sums are built in the same order as in the sparse path, so the results
+	 * are the same.
+	 * 
+	 * @param desiredOutput
+	 *            the desired output of the sample
+	 * @param outputs
+	 *            the output of the network for the sample
+	 * @param eta
+	 *            The learning rate.
+	 * @param delta
+	 *            array of length NEURONS+1 used for the deltas
+	 */
+	protected void trainBackpropagationOfErrorDenseLayers(
+			double[] desiredOutput, double[] outputs, double eta,
+			double[] delta) {
+		double[] weights = compactPredecessorWeights;
+		int[] offsets = compactPredecessorOffsets;
+		double[] derivatives = getWorkspace().getDerivatives();
+		int outputLayer = countLayers() - 1;
+
+		// compute deltas layer by layer
+		for (int layer = outputLayer; layer >= 1; layer--) {
+			int first = getNeuronFirstInLayer(layer);
+			int last = getNeuronLastInLayer(layer);
+			NeuronBehaviors.computeDerivativesOfNeurons(neuronBehaviors,
+					netInputs, activations, derivatives, first, last + 1);
+			for (int i = first; i <= last; i++) {
+				if (layer == outputLayer) {
+					delta[i] = derivatives[i];
+					delta[i] *= (desiredOutput[mapOutputNeuronToOutputNumber(i)] - outputs[mapOutputNeuronToOutputNumber(i)]);
+					delta[i] *= eta;
+				} else {
+					// delta[i] holds the collected deltas of the layer above
+					delta[i] = derivatives[i] * delta[i];
+				}
+			}
+			if (layer > 1) {
+				int previousFirst = getNeuronFirstInLayer(layer - 1);
+				int columns = countNeuronsInLayer(layer - 1);
+				int columnOffset = compactDenseLayerBias[layer] ? 1 : 0;
+				Arrays.fill(delta, previousFirst, previousFirst + columns, 0);
+				for (int i = first; i <= last; i++) {
+					int row = offsets[i] + columnOffset;
+					VectorKernels.axpy(delta[i], weights, row, delta,
+							previousFirst, columns);
+				}
+			}
+		}
+
+		// alter weights
+		for (int layer = 1; layer <= outputLayer; layer++) {
+			int previousFirst = getNeuronFirstInLayer(layer - 1);
+			int columns = countNeuronsInLayer(layer - 1);
+			boolean bias = compactDenseLayerBias[layer];
+			int columnOffset = bias ? 1 : 0;
+			for (int i = getNeuronFirstInLayer(layer); i <= getNeuronLastInLayer(layer); i++) {
+				int row = offsets[i];
+				double neuronDelta = delta[i];
+				if (bias) {
+					weights[row] += activations[0] * neuronDelta;
+				}
+				row += columnOffset;
+				VectorKernels.axpy(neuronDelta, activations, previousFirst,
+						weights, row, columns);
+			}
+		}
+	}
+
+	/**
+	 * Trains the Neural Network with mini-batch Backpropagation of Error and
+	 * momentum. In each run, batchSize samples are chosen at random, each of
+	 * them is propagated once, and the gradients of all of them are averaged.
+	 * The average gradient is then applied using momentum: Every synapse keeps
+	 * a velocity, which is multiplied by the momentum and increased by eta
+	 * times the gradient in every run. With classical momentum, the velocity is
+	 * added to the weight. With Nesterov momentum, the weight is changed by
+	 * the momentum times the new velocity plus eta times the gradient, which
+	 * is the usual reformulation of Nesterov's accelerated gradient that gets
+	 * along without an extra propagation. The velocities are stored in a
+	 * shadow, so they survive topological changes and are kept between calls;
+	 * they can be discarded via clearCacheMomentum(). A momentum of 0 and a
+	 * batch size of 1 yield plain online backpropagation.
+	 * 
+	 * <p>
+	 * This method always works on the compact mirror of the data structure;
+	 * in fastprop mode, the samples of a mini-batch are propagated in blocks.
+	 * If other connections than forward and forward shortcuts are allowed, an
+	 * exception will be thrown.
+	 * 
+	 * @param lesson
+	 *            the training lesson to learn
+	 * @param runs
+	 *            The number of mini-batches to train.
+	 * @param batchSize
+	 *            The number of samples per mini-batch.
+	 * @param eta
+	 *            The learning rate.
+	 * @param momentum
+	 *            The momentum, usually between 0 and 1.
+	 * @param nesterov
+	 *            whether to use Nesterov momentum instead of classical
+	 *            momentum
+	 */
+	public void trainBackpropagationOfErrorMiniBatch(
+			TrainingSampleLesson lesson, int runs, int batchSize, double eta,
+			double momentum, boolean nesterov) {
+		if (descriptor.isAllowBackwardSynapses()
+				|| descriptor.isAllowBackwardShortcutSynapses()
+				|| descriptor.isAllowLateralSynapses()
+				|| descriptor.isAllowSelfSynapses()) {
+			throw new IllegalArgumentException(
+					"Can't backprop. Only forward and forward shortcut Synapses are allowed.");
+		}
+		if (batchSize < 1) {
+			throw new IllegalArgumentException(
+					"Mini-batch size must be at least 1.");
+		}
 
+		double[][] inputs = lesson.getInputs();
+		double[][] desiredOutputs = lesson.getDesiredOutputs();
+		int numberOfSamples = inputs.length;
+
+		double[][] velocitiesShadow = shadows.get(SHADOWSLOT_momentumVelocities);
+		if (velocitiesShadow == null) {
+			velocitiesShadow = createShadow(SHADOWSLOT_momentumVelocities);
+		}
+
+		ensureCompactStorage();
+		compactSingleWeightsValid = false;
+		double[] weights = compactPredecessorWeights;
+		double[] velocities = getWorkspace().getCompactVelocities();
+		copyShadowToCompact(velocitiesShadow, velocities);
+
+		boolean batched = isBlockPropagationUsable();
+		double[][] batchInputs = getWorkspace().getBatchInputs(batchSize);
+		double[][] batchDesiredOutputs = getWorkspace()
+				.getBatchDesiredOutputs(batchSize);
+		double[] delta = getWorkspace().getDelta();
+		double averaging = 1.0 / batchSize;
+
+		try {
+			for (int run = 0; run < runs; run++) {
+				// Choose Samples
+				for (int s = 0; s < batchSize; s++) {
+					int chosenSample = getRandomIntegerBetweenIncluding(0,
+							numberOfSamples - 1);
+					batchInputs[s] = inputs[chosenSample];
+					batchDesiredOutputs[s] = desiredOutputs[chosenSample];
+				}
+
+				// compute gradients, which point uphill in error
+				double[] gradients = getWorkspace()
+						.getCompactGradientsCleared();
+				if (batched) {
+					accumulateGradientsCompact(batchInputs,
+							batchDesiredOutputs, 0, batchSize, gradients,
+							null, delta, getWorkspace().getBlockNetInputs(),
+							getWorkspace().getBlockActivations(),
+							neuronBehaviors);
+				} else {
+					accumulateGradientsCompact(batchInputs,
+							batchDesiredOutputs, 0, batchSize, gradients,
+							null, delta, null, null, neuronBehaviors);
+				}
+
+				// alter weights
+				for (int k = 0; k < weights.length; k++) {
+					double step = -eta * gradients[k] * averaging;
+					velocities[k] = momentum * velocities[k] + step;
+					if (nesterov) {
+						weights[k] += momentum * velocities[k] + step;
+					} else {
+						weights[k] += velocities[k];
+					}
+				}
+			}
+		} finally {
+			writeBackCompactWeights();
+			copyShadowFromCompact(velocities, velocitiesShadow);
+		}
 	}
 
 	/**
@@ -1636,24 +3555,38 @@ public class NeuralNetwork implements Serializable {
 		return rnd;
 	}
 
-	protected double[][] createShadow(String key) {
-		if (shadows.containsKey(key)) {
-			// impossible to accidently overwrite shadows
-			throw new IllegalArgumentException("Synapse shadow key \"" + key
-					+ "\" already exists.");
-		}
-
+	/**
+	 * Creates a shadow in the given slot that is automatically adapted if
+	 * network topology changes in time O(SYNAPSES). If the slot is already
+	 * occupied, an IllegalArgumentException is thrown.
+	 * 
+	 * @param slot
+	 *            the slot to create the shadow in.
+	 * @return the new shadow.
+	 */
+	protected double[][] createShadow(int slot) {
 		// create new unmanaged shadow
 		double[][] newShadow = createShadowUnmanaged();
-		// manage it by adding it to the list of shadows
-
-		shadows.put(key, newShadow);
+		// manage it by putting it into its slot (impossible to accidently
+		// overwrite shadows)
+		shadows.put(slot, newShadow);
 		return newShadow;
 	}
 
+	/**
+	 * Returns the shadow in the given slot in O(1). No clone but the original
+	 * reference is returned.
+	 * 
+	 * @param slot
+	 * @return the shadow, or null if there is none in the slot
+	 */
+	protected double[][] getShadow(int slot) {
+		return shadows.get(slot);
+	}
+
 	/**
 	 * Creates a user shadow that is automatically adapted if network topology
-	 * changes in time O(log(NUMBEROFSHADOWS)+log(SYNAPSES)). If the key entered
+	 * changes in time O(log(NUMBEROFUSERSHADOWS)+SYNAPSES). If the key entered
 	 * is already occupied, an IllegalArgumentException is thrown. <b>Be aware
 	 * of the fact that if synapses are added to the network, the corresponding
 	 * new shadow fields are initialized with 0!</b> If this behavior has
@@ -1666,18 +3599,8 @@ public class NeuralNetwork implements Serializable {
 	 * @return the new user shadow.
 	 */
 	protected double[][] createUserShadow(String key) {
-		if (shadows.containsKey(USERSHADOWPREFIX + key)) {
-			// impossible to accidently overwrite shadows
-			throw new IllegalArgumentException("User Synapse shadow key \""
-					+ key + "\" already exists.");
-		}
-
-		// create new unmanaged shadow
-		double[][] newShadow = createShadowUnmanaged();
-		// manage it by adding it to the list of shadows
-
-		shadows.put(USERSHADOWPREFIX + key, newShadow);
-		return newShadow;
+		// impossible to accidently overwrite shadows
+		return createShadow(shadows.addUserSlot(key));
 	}
 
 	/**
@@ -1694,25 +3617,207 @@ public class NeuralNetwork implements Serializable {
 		return newShadow;
 	}
 
-	protected void removeShadow(String key) {
-		shadows.remove(key);
+	/**
+	 * @return a shadow for local use in the layout of the compact mirror,
+	 *         which is <i>not</i> automatically adapted if network topology
+	 *         changes, in time O(SYNAPSES). Index k of the shadow shadows the
+	 *         synapse whose weight is stored at index k of
+	 *         compactPredecessorWeights.
+	 */
+	protected double[] createShadowCompactUnmanaged() {
+		return new double[countSynapses()];
+	}
+
+	/**
+	 * Copies the values of a shadow into a shadow in the layout of the compact
+	 * mirror in O(SYNAPSES).
+	 *
+	 * @param shadow
+	 *            the shadow to read
+	 * @param compactShadow
+	 *            the compact shadow to write, created using
+	 *            createShadowCompactUnmanaged
+	 */
+	protected void copyShadowToCompact(double[][] shadow, double[] compactShadow) {
+		int position = 0;
+		for (int i = 0; i < shadow.length; i++) {
+			System.arraycopy(shadow[i], 0, compactShadow, position,
+					shadow[i].length);
+			position += shadow[i].length;
+		}
+	}
+
+	/**
+	 * Copies the values of a shadow in the layout of the compact mirror back
+	 * into a shadow in O(SYNAPSES).
+	 *
+	 * @param compactShadow
+	 *            the compact shadow to read
+	 * @param shadow
+	 *            the shadow to write
+	 */
+	protected void copyShadowFromCompact(double[] compactShadow,
+			double[][] shadow) {
+		int position = 0;
+		for (int i = 0; i < shadow.length; i++) {
+			System.arraycopy(compactShadow, position, shadow[i], 0,
+					shadow[i].length);
+			position += shadow[i].length;
+		}
+	}
+
+	/**
+	 * Marks the compact mirror of the data structure as outdated after
+	 * topological changes. It will be rebuilt the next time it is needed. The
+	 * workspace, whose arrays are sized by the topology, is dropped as well,
+	 * and snapshots taken before can no longer be restored.
+	 */
+	protected void invalidateCompactStructure() {
+		topologyVersion++;
+		compactStructureValid = false;
+		compactWeightsValid = false;
+		compactSingleWeightsValid = false;
+		workspace = null;
+	}
+
+	/**
+	 * Marks the weights in the compact mirror of the data structure as
+	 * outdated after synaptic weights were changed in the main data storage.
+	 * They will be copied the next time the mirror is needed.
+	 */
+	protected void invalidateCompactWeights() {
+		compactWeightsValid = false;
+		compactSingleWeightsValid = false;
+	}
+
+	/**
+	 * Makes sure the compact mirror of the data structure is up to date.
+	 * Rebuilds it in O(SYNAPSES) after topological changes, and copies the
+	 * weights in O(SYNAPSES) after weight changes. Does nothing if the mirror
+	 * is up to date.
+	 */
+	protected void ensureCompactStorage() {
+		if (!compactStructureValid) {
+			buildCompactStorage();
+		} else if (!compactWeightsValid) {
+			if (compactPredecessorWeights == null) {
+				// released in favour of single precision weights
+				compactPredecessorWeights = new double[compactPredecessorOffsets[predecessors.length]];
+			}
+			copyShadowToCompact(predecessorWeights, compactPredecessorWeights);
+			compactWeightsValid = true;
+		}
+	}
+
+	/**
+	 * Does the same as ensureCompactStorage for the propagation entry points.
+	 * If single precision weights are enabled in the descriptor, the compact
+	 * mirror holds them in place of the double precision weights instead: They
+	 * are copied from the main data storage if outdated, and the double
+	 * precision compact weights are released, as only training methods need
+	 * them (which call ensureCompactStorage and thus recreate them). Outside
+	 * of training methods, the main data storage is always up to date.
+	 */
+	protected void ensureCompactStorageForPropagation() {
+		if (!descriptor.isSinglePrecisionWeights()) {
+			ensureCompactStorage();
+			return;
+		}
+		if (!compactStructureValid) {
+			buildCompactStorage();
+		}
+		if (!compactSingleWeightsValid) {
+			int length = compactPredecessorOffsets[predecessors.length];
+			if (compactPredecessorWeightsSingle == null
+					|| compactPredecessorWeightsSingle.length != length) {
+				compactPredecessorWeightsSingle = new float[length];
+			}
+			int position = 0;
+			for (int i = 0; i < predecessorWeights.length; i++) {
+				double[] row = predecessorWeights[i];
+				for (int j = 0; j < row.length; j++) {
+					compactPredecessorWeightsSingle[position++] = (float) row[j];
+				}
+			}
+			compactSingleWeightsValid = true;
+		}
+		compactPredecessorWeights = null;
+		compactWeightsValid = false;
+	}
+
+	/**
+	 * Builds the compact mirror of the data structure out of the main data
+	 * storage in O(SYNAPSES).
+	 */
+	protected void buildCompactStorage() {
+		int numberOfNeurons = predecessors.length;
+		compactPredecessorOffsets = new int[numberOfNeurons + 1];
+		compactSuccessorOffsets = new int[numberOfNeurons + 1];
+		for (int i = 0; i < numberOfNeurons; i++) {
+			compactPredecessorOffsets[i + 1] = compactPredecessorOffsets[i]
+					+ predecessors[i].length;
+			compactSuccessorOffsets[i + 1] = compactSuccessorOffsets[i]
+					+ successors[i].length;
+		}
+
+		compactPredecessors = new int[compactPredecessorOffsets[numberOfNeurons]];
+		compactPredecessorWeights = new double[compactPredecessorOffsets[numberOfNeurons]];
+		compactSuccessors = new int[compactSuccessorOffsets[numberOfNeurons]];
+		compactSuccessorWeightIndices = new int[compactSuccessorOffsets[numberOfNeurons]];
+
+		for (int i = 0; i < numberOfNeurons; i++) {
+			System.arraycopy(predecessors[i], 0, compactPredecessors,
+					compactPredecessorOffsets[i], predecessors[i].length);
+			System.arraycopy(predecessorWeights[i], 0,
+					compactPredecessorWeights, compactPredecessorOffsets[i],
+					predecessorWeights[i].length);
+			for (int j = 0; j < successors[i].length; j++) {
+				// resolve the weight index of the pendant predecessor array
+				// to an index in the flat weight array right away
+				compactSuccessors[compactSuccessorOffsets[i] + j] = successors[i][j];
+				compactSuccessorWeightIndices[compactSuccessorOffsets[i] + j] = compactPredecessorOffsets[successors[i][j]]
+						+ successorWeightIndexInPendantPredecessorArray[i][j];
+			}
+		}
+
+		compactDenseLayers = detectDenseLayers();
+		compactStructureValid = true;
+		compactWeightsValid = true;
+	}
+
+	/**
+	 * Writes the weights of the compact mirror back into the main data storage
+	 * in O(SYNAPSES). Used by training methods that change the weights in the
+	 * compact mirror only.
+	 */
+	protected void writeBackCompactWeights() {
+		copyShadowFromCompact(compactPredecessorWeights, predecessorWeights);
+	}
+
+	/**
+	 * Removes the shadow in the given slot, if existent, in time O(1).
+	 * 
+	 * @param slot
+	 */
+	protected void removeShadow(int slot) {
+		shadows.remove(slot);
 	}
 
 	/**
 	 * Removes a managed user shadow with the given key, if existent, in time
-	 * O(log(NUMBEROFSHADOWS)). This shadow is no longer maintained if topology
+	 * O(log(NUMBEROFUSERSHADOWS)). This shadow is no longer maintained if topology
 	 * changes and will be subject to deletion by garbage collection if not
 	 * referenced elsewhere.
 	 * 
 	 * @param key
 	 */
 	protected void removeUserShadow(String key) {
-		shadows.remove(USERSHADOWPREFIX + key);
+		shadows.removeUserSlot(key);
 	}
 
 	/**
 	 * Returns a managed user shadow with the given key, if existent, or null,
-	 * of not. Takes time O(log(NUMBEROFSHADOWS)). No clone but the original
+	 * of not. Takes time O(log(NUMBEROFUSERSHADOWS)). No clone but the original
 	 * reference stored in the shadow data structure is returned, so if
 	 * something within the shadow is changed, the changes will be accessible
 	 * via getUserShadow later on.
@@ -1721,18 +3826,34 @@ public class NeuralNetwork implements Serializable {
 	 * @return the user shadow
 	 */
 	protected double[][] getUserShadow(String key) {
-		return shadows.get(USERSHADOWPREFIX + key);
+		int slot = shadows.getUserSlot(key);
+		if (slot < 0) {
+			return null;
+		}
+		return shadows.get(slot);
+	}
+
+	/**
+	 * Returns the slot of the managed user shadow with the given key in time
+	 * O(log(NUMBEROFUSERSHADOWS)). Code accessing a user shadow frequently can
+	 * look up its slot once and use getShadow afterwards.
+	 * 
+	 * @param key
+	 * @return the slot of the user shadow, or -1 if it does not exist.
+	 */
+	protected int getUserShadowSlot(String key) {
+		return shadows.getUserSlot(key);
 	}
 
 	/**
 	 * Checks whether or not a managed user shadow with the given key exists in
-	 * time O(log(NUMBEROFSHADOWS)).
+	 * time O(log(NUMBEROFUSERSHADOWS)).
 	 * 
 	 * @param key
 	 * @return whether or not a managed user shadow with the given key exists.
 	 */
 	protected boolean existsUserShadow(String key) {
-		return shadows.containsKey(USERSHADOWPREFIX + key);
+		return shadows.getUserSlot(key) >= 0;
 	}
 
 	/**
@@ -1758,17 +3879,48 @@ public class NeuralNetwork implements Serializable {
 	 *            The number of iterations.
 	 * @param improvedRprop
 	 *            If improved Rprop after [Igel2003] shall be used
-	 * 
+	 * 
+	 */
+	public void trainResilientBackpropagation(TrainingSampleLesson lesson,
+			int runs, boolean improvedRprop) {
+		trainResilientBackpropagation(lesson, runs, improvedRprop, 1);
+	}
+
+	/**
+	 * Does the same as trainResilientBackpropagation(lesson, runs,
+	 * improvedRprop), but splits the lesson into the given number of
+	 * contiguous chunks whose gradients are computed in parallel, using the
+	 * shared thread pool of ParallelExecution. The chunk gradients are summed
+	 * up in chunk order before the weights are updated, so the result does
+	 * not depend on thread timing, only on the number of chunks. Parallel
+	 * training always works on the compact mirror of the data structure, as
+	 * if compact synapse storage were enabled. As the samples of one chunk
+	 * have to be independent of each other, parallel training is only done in
+	 * fastprop mode (frequency 0), otherwise one chunk is used.
+	 * 
+	 * @param lesson
+	 *            the training lesson to learn.
+	 * @param runs
+	 *            The number of iterations.
+	 * @param improvedRprop
+	 *            If improved Rprop after [Igel2003] shall be used
+	 * @param chunks
+	 *            the number of chunks, for example
+	 *            ParallelExecution.countProcessors()
 	 */
 	public void trainResilientBackpropagation(TrainingSampleLesson lesson,
-			int runs, boolean improvedRprop) {
+			int runs, boolean improvedRprop, int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException(
+					"At least one chunk is needed.");
+		}
 
 		double[][] inputs = lesson.getInputs();
 		double[][] desiredOutputs = lesson.getDesiredOutputs();
 
 		// initialize caches if necessary
-		if (shadows.get(SHADOWKEY_resilientBackpropagationLearningRates) == null) {
-			double[][] learningRatesToInit = createShadow(SHADOWKEY_resilientBackpropagationLearningRates);
+		if (shadows.get(SHADOWSLOT_resilientBackpropagationLearningRates) == null) {
+			double[][] learningRatesToInit = createShadow(SHADOWSLOT_resilientBackpropagationLearningRates);
 			for (int i = 0; i < learningRatesToInit.length; i++) {
 				for (int j = 0; j < learningRatesToInit[i].length; j++) {
 					learningRatesToInit[i][j] = resilientBackpropagationDeltaZero;
@@ -1778,24 +3930,24 @@ public class NeuralNetwork implements Serializable {
 
 		boolean initialRun = false;
 		// initialize gradients if neccessary
-		if (shadows.get(SHADOWKEY_resilientBackpropagationGradients) == null) {
-			createShadow(SHADOWKEY_resilientBackpropagationGradients);
+		if (shadows.get(SHADOWSLOT_resilientBackpropagationGradients) == null) {
+			createShadow(SHADOWSLOT_resilientBackpropagationGradients);
 			initialRun = true;
 		}
 
-		if (shadows.get(SHADOWKEY_resilientBackpropagationLastWeightUpdates) == null) {
-			createShadow(SHADOWKEY_resilientBackpropagationLastWeightUpdates);
+		if (shadows.get(SHADOWSLOT_resilientBackpropagationLastWeightUpdates) == null) {
+			createShadow(SHADOWSLOT_resilientBackpropagationLastWeightUpdates);
 		}
 
 		// from this point on it is made sure that the shadows exist and have
-		// been initialized. it can therefore be retrieved from the treemap and
-		// used.
+		// been initialized. they can therefore be retrieved from their slots
+		// and used.
 		double[][] learningRates = shadows
-				.get(SHADOWKEY_resilientBackpropagationLearningRates);
+				.get(SHADOWSLOT_resilientBackpropagationLearningRates);
 		double[][] gradients = shadows
-				.get(SHADOWKEY_resilientBackpropagationGradients);
+				.get(SHADOWSLOT_resilientBackpropagationGradients);
 		double[][] lastUpdates = shadows
-				.get(SHADOWKEY_resilientBackpropagationLastWeightUpdates);
+				.get(SHADOWSLOT_resilientBackpropagationLastWeightUpdates);
 
 		if (descriptor.isAllowBackwardSynapses()
 				|| descriptor.isAllowBackwardShortcutSynapses()
@@ -1805,25 +3957,39 @@ public class NeuralNetwork implements Serializable {
 					"Can't rprop. Only forward and forward shortcut Synapses are allowed.");
 		}
 
-		// Error Measurement for Improved Rprop, comment out or delete for clean
-		// rprop
-		double lastErr = 0;
-		double err = 0;
-		if (improvedRprop) {
-			lastErr = ErrorMeasurement.getErrorAbsoluteSum(this, lesson);
+		if (descriptor.isCompactSynapseStorage() || chunks > 1) {
+			trainResilientBackpropagationCompact(lesson, runs, improvedRprop,
+					learningRates, gradients, lastUpdates, initialRun, chunks);
+			return;
 		}
 
+		// Error Measurement for Improved Rprop. The error of the current
+		// weights is summed up during the gradient pass, which propagates the
+		// lesson with the very same weights anyway, so no extra pass is
+		// needed. The first run never reverts, as if lastErr had been measured
+		// with the same weights.
+		double lastErr = Double.POSITIVE_INFINITY;
+		double err = 0;
+
+		double[] delta = getWorkspace().getDelta();
+		double[] outputs = getWorkspace().getOutput();
 		for (int run = 0; run < runs; run++) {
-			double[][] newGradients = createShadowUnmanaged();
+			double[][] newGradients = getWorkspace().getGradientsCleared();
 			if (run > 0 && initialRun) // Check if we still need an
 										// initialisation of the
 										// ResilientBackpropagationGradients
 				initialRun = false;
+			err = 0;
 			// calculate Deltas
-			double[] delta = new double[countNeurons() + 1];
 			for (int chosenSample = 0; chosenSample < lesson.countSamples(); chosenSample++) {
 				// Propagate Sample
-				double[] outputs = propagate(inputs[chosenSample]);
+				propagate(inputs[chosenSample], outputs);
+				if (improvedRprop) {
+					for (int j = 0; j < outputs.length; j++) {
+						err += Math.abs(desiredOutputs[chosenSample][j]
+								- outputs[j]);
+					}
+				}
 				for (int i = countNeurons(); i >= getNeuronFirstInLayer(1); i--) {
 					// second part of delta depending on kind of neuron
 					if (isNeuronOutput(i)) {
@@ -1836,8 +4002,8 @@ public class NeuralNetwork implements Serializable {
 						}
 					}
 					// first part of delta
-					delta[i] *= neuronBehaviors[i]
-							.computeDerivative(netInputs[i]);
+					delta[i] *= NeuronBehaviors.computeDerivative(
+							neuronBehaviors[i], netInputs[i], activations[i]);
 					// all deltas collected, compute gradient
 					for (int j = 0; j < predecessors[i].length; j++)
 						// Fehler nach gewicht(predecessors[i][j],i) abgeleitet
@@ -1849,67 +4015,35 @@ public class NeuralNetwork implements Serializable {
 				}
 			}
 			if (initialRun) {
-				gradients = newGradients;
-			}
-			if (improvedRprop) {
-				// get an up to date error
-				err = ErrorMeasurement.getErrorAbsoluteSum(this, lesson);
+				// the gradients of the initial run are kept apart from the
+				// reused gradient array
+				gradients = getWorkspace().getInitialGradients();
+				for (int i = 0; i < gradients.length; i++) {
+					System.arraycopy(newGradients[i], 0, gradients[i], 0,
+							gradients[i].length);
+				}
 			}
 			// alter weights
+			boolean revertOnSignChange = (improvedRprop && err > lastErr)
+					|| !improvedRprop;
 			for (int i = 0; i < countNeurons() + 1; i++) {
-				for (int j = 0; j < predecessors[i].length; j++) {
-					// behandelt wird synapse predecessors[i][j]-->i
-					double decisionValue = newGradients[i][j] * gradients[i][j];
-					boolean done = false;
-					if (Math.abs(decisionValue) < EPSILON) {
-						// gradient "zero"
-						done = true;
-						gradients[i][j] = newGradients[i][j];
-						lastUpdates[i][j] = -(Math.signum(gradients[i][j]))
-								* learningRates[i][j];
-						predecessorWeights[i][j] += lastUpdates[i][j];
-					}
-					if (decisionValue > 0.0 && !done) {
-						// gradient did not change signum
-						gradients[i][j] = newGradients[i][j];
-						learningRates[i][j] = learningRates[i][j]
-								* resilientBackpropagationEtaPlus;
-						if (learningRates[i][j] > resilientBackpropagationDeltaMax) {
-							learningRates[i][j] = resilientBackpropagationDeltaMax;
-						}
-						lastUpdates[i][j] = -(Math.signum(gradients[i][j]))
-								* learningRates[i][j];
-						predecessorWeights[i][j] += lastUpdates[i][j];
-					}
-					if (decisionValue < 0.0 && !done) {
-						// gradient changed signum
-						learningRates[i][j] = learningRates[i][j]
-								* resilientBackpropagationEtaMinus;
-						if (learningRates[i][j] > resilientBackpropagationDeltaMin) {
-							learningRates[i][j] = resilientBackpropagationDeltaMin;
-						}
-						// if normal rprop, step is always executed. If
-						// improved, it is only executed with err > lastErr.
-						if ((improvedRprop && err > lastErr) || !improvedRprop) {
-							// reverse last update step
-							predecessorWeights[i][j] -= lastUpdates[i][j];
-						}
-						// for normal rprop
-						gradients[i][j] = 0.0;
-					}
-				}
+				updateWeightsResilientBackpropagation(predecessorWeights[i],
+						gradients[i], newGradients[i], learningRates[i],
+						lastUpdates[i], 0, predecessors[i].length,
+						revertOnSignChange);
 			}
 			lastErr = err;// copy err to lastErr for reference in the next step
 		}
+		invalidateCompactWeights();
 
 		// double[][] inputs = lesson.getInputs();
 		// double[][] desiredOutputs = lesson.getDesiredOutputs();
 		//
 		// // initialize learning rates if necessary
-		// if (shadows.get(SHADOWKEY_resilientBackpropagationLearningRates) ==
+		// if (shadows.get(SHADOWSLOT_resilientBackpropagationLearningRates) ==
 		// null) {
 		// double[][] learningRatesToInit =
-		// createShadow(SHADOWKEY_resilientBackpropagationLearningRates);
+		// createShadow(SHADOWSLOT_resilientBackpropagationLearningRates);
 		// for (int i = 0; i < learningRatesToInit.length; i++) {
 		// for (int j = 0; j < learningRatesToInit[i].length; j++) {
 		// learningRatesToInit[i][j] = resilientBackpropagationDeltaZero;
@@ -1917,9 +4051,9 @@ public class NeuralNetwork implements Serializable {
 		// }
 		// }
 		// // initialize gradients if neccessary
-		// if (shadows.get(SHADOWKEY_resilientBackpropagationGradients) == null)
+		// if (shadows.get(SHADOWSLOT_resilientBackpropagationGradients) == null)
 		// {
-		// createShadow(SHADOWKEY_resilientBackpropagationGradients);
+		// createShadow(SHADOWSLOT_resilientBackpropagationGradients);
 		// }
 		//
 		// // from this point on it is made sure that the shadow exists and has
@@ -1927,9 +4061,9 @@ public class NeuralNetwork implements Serializable {
 		// and
 		// // used.
 		// double[][] learningRates = shadows
-		// .get(SHADOWKEY_resilientBackpropagationLearningRates);
+		// .get(SHADOWSLOT_resilientBackpropagationLearningRates);
 		// double[][] gradients = shadows
-		// .get(SHADOWKEY_resilientBackpropagationGradients);
+		// .get(SHADOWSLOT_resilientBackpropagationGradients);
 		//
 		// if (descriptor.isAllowBackwardSynapses()
 		// || descriptor.isAllowBackwardShortcutSynapses()
@@ -2014,6 +4148,475 @@ public class NeuralNetwork implements Serializable {
 		// }
 	}
 
+	/**
+	 * Does the same as trainResilientBackpropagation, but on the compact
+	 * mirror of the data structure. The Rprop caches are copied into the
+	 * compact layout before training and copied back afterwards, just as the
+	 * weights are written back into the main data storage. In fastprop mode,
+	 * the samples are propagated in blocks just like in propagateBatch, and
+	 * the gradients are computed in parallel if more than one chunk is given.
+	 * 
+	 * @param lesson
+	 *            the training lesson to learn.
+	 * @param runs
+	 *            The number of iterations.
+	 * @param improvedRprop
+	 *            If improved Rprop after [Igel2003] shall be used
+	 * @param learningRatesShadow
+	 *            the learning rate cache
+	 * @param gradientsShadow
+	 *            the gradient cache
+	 * @param lastUpdatesShadow
+	 *            the last weight update cache
+	 * @param initialRun
+	 *            whether the gradient cache has just been created
+	 * @param chunks
+	 *            the number of chunks the lesson is split into in order to
+	 *            compute the gradients in parallel
+	 */
+	protected void trainResilientBackpropagationCompact(
+			TrainingSampleLesson lesson, int runs, boolean improvedRprop,
+			double[][] learningRatesShadow, double[][] gradientsShadow,
+			double[][] lastUpdatesShadow, boolean initialRun, int chunks) {
+		ensureCompactStorage();
+		compactSingleWeightsValid = false;
+
+		double[][] inputs = lesson.getInputs();
+		double[][] desiredOutputs = lesson.getDesiredOutputs();
+
+		double[] weights = compactPredecessorWeights;
+
+		double[] learningRates = getWorkspace().getCompactLearningRates();
+		double[] storedGradients = getWorkspace().getCompactStoredGradients();
+		double[] lastUpdates = getWorkspace().getCompactLastUpdates();
+		copyShadowToCompact(learningRatesShadow, learningRates);
+		copyShadowToCompact(gradientsShadow, storedGradients);
+		copyShadowToCompact(lastUpdatesShadow, lastUpdates);
+		double[] gradients = storedGradients;
+
+		try {
+			// the error of the current weights is summed up by the gradient
+			// pass, see trainResilientBackpropagation
+			double lastErr = Double.POSITIVE_INFINITY;
+			double err = 0;
+
+			// in fastprop mode without stateful neurons, samples are
+			// propagated in blocks and may be split into chunks that are
+			// processed in parallel
+			boolean batched = isBlockPropagationUsable();
+			if (!batched) {
+				chunks = 1;
+			}
+			chunks = Math.max(1, Math.min(chunks, lesson.countSamples()));
+
+			for (int run = 0; run < runs; run++) {
+				double[] newGradients = getWorkspace()
+						.getCompactGradientsCleared();
+				if (run > 0 && initialRun) {
+					initialRun = false;
+				}
+				// calculate Deltas
+				if (chunks > 1) {
+					err = accumulateGradientsCompactParallel(inputs,
+							desiredOutputs, chunks, newGradients, null);
+				} else if (batched) {
+					err = accumulateGradientsCompact(inputs, desiredOutputs,
+							0, inputs.length, newGradients, null,
+							getWorkspace().getDelta(), getWorkspace()
+									.getBlockNetInputs(), getWorkspace()
+									.getBlockActivations(), neuronBehaviors);
+				} else {
+					err = accumulateGradientsCompact(inputs, desiredOutputs,
+							0, inputs.length, newGradients, null,
+							getWorkspace().getDelta(), null, null,
+							neuronBehaviors);
+				}
+				if (initialRun) {
+					// the gradients of the initial run are kept apart from
+					// the reused gradient array
+					gradients = getWorkspace().getCompactInitialGradients();
+					System.arraycopy(newGradients, 0, gradients, 0,
+							gradients.length);
+				}
+				// alter weights
+				updateWeightsResilientBackpropagation(weights, gradients,
+						newGradients, learningRates, lastUpdates, 0,
+						weights.length, (improvedRprop && err > lastErr)
+								|| !improvedRprop);
+				lastErr = err;
+			}
+		} finally {
+			writeBackCompactWeights();
+			copyShadowFromCompact(learningRates, learningRatesShadow);
+			copyShadowFromCompact(storedGradients, gradientsShadow);
+			copyShadowFromCompact(lastUpdates, lastUpdatesShadow);
+		}
+	}
+
+	/**
+	 * Adds the error gradients of the samples from index from (inclusive) to
+	 * index to (exclusive) to the given compact gradient array, using the
+	 * compact mirror of the data structure, which must be up to date. If block
+	 * arrays are given, the samples are propagated in blocks in fastprop mode
+	 * without touching the network state, using the given neuron behaviors, so
+	 * that several threads can compute the gradients of different samples at
+	 * the same time. If not, each sample is propagated using the network
+	 * state. The derivatives of the neuron behaviors are computed right after
+	 * propagation, a whole block at once, and in batched mode they overwrite
+	 * the net inputs in the block arrays, which are not needed anymore then.
+	 * 
+	 * @param inputs
+	 *            the inputs of the training lesson
+	 * @param desiredOutputs
+	 *            the desired outputs of the training lesson
+	 * @param from
+	 *            the first sample
+	 * @param to
+	 *            the sample after the last one
+	 * @param gradients
+	 *            compact array to add the gradients to
+	 * @param squaredGradients
+	 *            compact array to add the squares of the gradients of the
+	 *            single samples to, or null
+	 * @param delta
+	 *            array of length NEURONS+1 used for the deltas
+	 * @param blockNetInputs
+	 *            block array for the net inputs, or null
+	 * @param blockActivations
+	 *            block array for the activations, or null
+	 * @param neuronBehaviors
+	 *            the neuron behaviors to use
+	 * @return the sum of absolute errors of the samples, summed up in the same
+	 *         order as getErrorAbsoluteSumInPlace does
+	 */
+	protected double accumulateGradientsCompact(double[][] inputs,
+			double[][] desiredOutputs, int from, int to, double[] gradients,
+			double[] squaredGradients, double[] delta, double[] blockNetInputs,
+			double[] blockActivations, NeuronBehavior[] neuronBehaviors) {
+		int[] predecessorOffsets = compactPredecessorOffsets;
+		int[] predecessorIndices = compactPredecessors;
+		double[] weights = compactPredecessorWeights;
+		int[] successorOffsets = compactSuccessorOffsets;
+		int[] successorIndices = compactSuccessors;
+		int[] successorWeightIndices = compactSuccessorWeightIndices;
+
+		boolean batched = blockNetInputs != null;
+		int blockSize = batched ? PROPAGATION_BLOCK_SIZE : 1;
+		int firstOutputNeuron = mapOutputNumberToOutputNeuron(0);
+		double error = 0;
+		for (int blockStart = from; blockStart < to; blockStart += blockSize) {
+			int count = Math.min(blockSize, to - blockStart);
+			// Propagate Samples and compute derivatives
+			double[] sampleDerivatives;
+			double[] sampleActivations;
+			int stride;
+			if (batched) {
+				propagateBlockUsing(inputs, blockStart, count, blockSize,
+						blockNetInputs, blockActivations, neuronBehaviors, true);
+				for (int i = getNeuronFirstInLayer(1); i < (countNeurons() + 1); i++) {
+					NeuronBehaviors.computeDerivatives(neuronBehaviors[i],
+							blockNetInputs, blockActivations, blockNetInputs, i
+									* blockSize, i * blockSize + count);
+				}
+				sampleDerivatives = blockNetInputs;
+				sampleActivations = blockActivations;
+				stride = blockSize;
+			} else {
+				propagateUsing(inputs[blockStart], getWorkspace().getOutput(),
+						netInputs, activations, neuronBehaviors, null, true);
+				sampleDerivatives = getWorkspace().getDerivatives();
+				NeuronBehaviors.computeDerivativesOfNeurons(neuronBehaviors,
+						netInputs, activations, sampleDerivatives,
+						getNeuronFirstInLayer(1), countNeurons() + 1);
+				sampleActivations = activations;
+				stride = 1;
+			}
+			for (int s = 0; s < count; s++) {
+				double[] desiredOutput = desiredOutputs[blockStart + s];
+				for (int j = 0; j < desiredOutput.length; j++) {
+					error += Math.abs(desiredOutput[j]
+							- sampleActivations[(firstOutputNeuron + j)
+									* stride + s]);
+				}
+			}
+			if (isDenseLayerPathUsable()) {
+				for (int s = 0; s < count; s++) {
+					accumulateGradientsDenseLayers(desiredOutputs[blockStart
+							+ s], sampleDerivatives, sampleActivations, stride,
+							s, gradients, squaredGradients, delta);
+				}
+				continue;
+			}
+			for (int s = 0; s < count; s++) {
+				int chosenSample = blockStart + s;
+				for (int i = countNeurons(); i >= getNeuronFirstInLayer(1); i--) {
+					// second part of delta depending on kind of neuron
+					if (isNeuronOutput(i)) {
+						delta[i] = (desiredOutputs[chosenSample][mapOutputNeuronToOutputNumber(i)] - sampleActivations[i
+								* stride + s]);
+					} else {
+						double temp = 0;
+						// collect delta from connected neuron
+						for (int k = successorOffsets[i]; k < successorOffsets[i + 1]; k++) {
+							temp += weights[successorWeightIndices[k]]
+									* delta[successorIndices[k]];
+						}
+						delta[i] = temp;
+					}
+					// first part of delta
+					delta[i] *= sampleDerivatives[i * stride + s];
+					// all deltas collected, compute gradient
+					for (int k = predecessorOffsets[i]; k < predecessorOffsets[i + 1]; k++) {
+						double gradient = -delta[i]
+								* sampleActivations[predecessorIndices[k]
+										* stride + s];
+						gradients[k] += gradient;
+						if (squaredGradients != null) {
+							squaredGradients[k] += gradient * gradient;
+						}
+					}
+				}
+			}
+		}
+		return error;
+	}
+
+	/**
+	 * Does the same as accumulateGradientsCompact for one already propagated
+	 * sample of a network with dense layer-to-layer structure, layer by layer
+	 * using the compact weight rows as row-major weight matrices. The deltas
+	 * of a layer are collected by running along the weight rows of the layer
+	 * above, and all sums are built in the same order as in the sparse path,
+	 * so the results are the same.
+	 * 
+	 * @param desiredOutput
+	 *            the desired output of the sample
+	 * @param sampleDerivatives
+	 *            derivatives of the neuron behaviors at the net inputs of the
+	 *            sample, organized as block array
+	 * @param sampleActivations
+	 *            activations of the sample, organized as block array
+	 * @param stride
+	 *            the stride of the block arrays
+	 * @param s
+	 *            the number of the sample within the block arrays
+	 * @param gradients
+	 *            compact array to add the gradients to
+	 * @param squaredGradients
+	 *            compact array to add the squared gradients to, or null
+	 * @param delta
+	 *            array of length NEURONS+1 used for the deltas
+	 */
+	protected void accumulateGradientsDenseLayers(double[] desiredOutput,
+			double[] sampleDerivatives, double[] sampleActivations, int stride,
+			int s, double[] gradients, double[] squaredGradients,
+			double[] delta) {
+		double[] weights = compactPredecessorWeights;
+		int[] offsets = compactPredecessorOffsets;
+		int outputLayer = countLayers() - 1;
+		for (int layer = outputLayer; layer >= 1; layer--) {
+			int first = getNeuronFirstInLayer(layer);
+			int last = getNeuronLastInLayer(layer);
+			int previousFirst = getNeuronFirstInLayer(layer - 1);
+			int columns = countNeuronsInLayer(layer - 1);
+			boolean bias = compactDenseLayerBias[layer];
+			int columnOffset = bias ? 1 : 0;
+
+			// complete deltas of this layer
+			for (int i = first; i <= last; i++) {
+				if (layer == outputLayer) {
+					delta[i] = (desiredOutput[mapOutputNeuronToOutputNumber(i)] - sampleActivations[i
+							* stride + s]);
+				}
+				delta[i] *= sampleDerivatives[i * stride + s];
+			}
+
+			// collect deltas of the layer below, unless it is the input
+			// layer
+			if (layer > 1) {
+				Arrays.fill(delta, previousFirst, previousFirst + columns, 0);
+				for (int i = first; i <= last; i++) {
+					int row = offsets[i] + columnOffset;
+					VectorKernels.axpy(delta[i], weights, row, delta,
+							previousFirst, columns);
+				}
+			}
+
+			// compute gradients
+			for (int i = first; i <= last; i++) {
+				int row = offsets[i];
+				double negativeDelta = -delta[i];
+				if (bias) {
+					gradients[row] += negativeDelta * sampleActivations[s];
+					if (squaredGradients != null) {
+						double gradient = negativeDelta * sampleActivations[s];
+						squaredGradients[row] += gradient * gradient;
+					}
+				}
+				row += columnOffset;
+				for (int c = 0; c < columns; c++) {
+					gradients[row + c] += negativeDelta
+							* sampleActivations[(previousFirst + c) * stride
+									+ s];
+				}
+				if (squaredGradients != null) {
+					for (int c = 0; c < columns; c++) {
+						double gradient = negativeDelta
+								* sampleActivations[(previousFirst + c)
+										* stride + s];
+						squaredGradients[row + c] += gradient * gradient;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits the given samples into the given number of contiguous chunks,
+	 * computes the gradients of each chunk in parallel using the shared SNIPE
+	 * thread pool, and adds them to the given compact gradient array in chunk
+	 * order, so that the result only depends on the number of chunks. Each
+	 * chunk uses its own propagation context, deltas and gradients from the
+	 * workspace.
+	 * 
+	 * @param inputs
+	 *            the inputs of the training lesson
+	 * @param desiredOutputs
+	 *            the desired outputs of the training lesson
+	 * @param chunks
+	 *            the number of chunks
+	 * @param gradients
+	 *            compact array to add the gradients to
+	 * @param squaredGradients
+	 *            compact array to add the squares of the gradients of the
+	 *            single samples to, or null
+	 * @return the sum of absolute errors of the samples, summed up in chunk
+	 *         order as well
+	 */
+	protected double accumulateGradientsCompactParallel(final double[][] inputs,
+			final double[][] desiredOutputs, int chunks, double[] gradients,
+			double[] squaredGradients) {
+		final NeuralNetworkWorkspace workspace = getWorkspace();
+		workspace.ensureChunks(chunks);
+		final boolean squared = squaredGradients != null;
+		if (squared) {
+			workspace.ensureChunkSquaredGradients();
+		}
+		int chunkSize = (inputs.length + chunks - 1) / chunks;
+
+		List<Future<Double>> futures = new ArrayList<Future<Double>>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			final int chunk = c;
+			final int from = Math.min(inputs.length, c * chunkSize);
+			final int to = Math.min(inputs.length, from + chunkSize);
+			futures.add(ParallelExecution.submit(
+					new Callable<Double>() {
+						@Override
+						public Double call() {
+							double[] chunkGradients = workspace.chunkGradients[chunk];
+							Arrays.fill(chunkGradients, 0);
+							double[] chunkSquaredGradients = null;
+							if (squared) {
+								chunkSquaredGradients = workspace.chunkSquaredGradients[chunk];
+								Arrays.fill(chunkSquaredGradients, 0);
+							}
+							PropagationContext context = workspace.chunkContexts[chunk];
+							return accumulateGradientsCompact(inputs,
+									desiredOutputs, from, to, chunkGradients,
+									chunkSquaredGradients,
+									workspace.chunkDeltas[chunk],
+									context.getBlockNetInputs(),
+									context.getBlockActivations(),
+									context.neuronBehaviors);
+						}
+					}));
+		}
+		double error = 0;
+		for (int c = 0; c < chunks; c++) {
+			error += ParallelExecution.await(futures.get(c));
+		}
+
+		// reduce in chunk order
+		for (int c = 0; c < chunks; c++) {
+			VectorKernels.add(workspace.chunkGradients[c], 0, gradients, 0,
+					gradients.length);
+			if (squared) {
+				VectorKernels.add(workspace.chunkSquaredGradients[c], 0,
+						squaredGradients, 0, squaredGradients.length);
+			}
+		}
+		return error;
+	}
+
+	/**
+	 * Performs the Rprop weight update step for the synapses stored from index
+	 * from (inclusive) to index to (exclusive) of the given arrays, which all
+	 * have to follow the same layout, with computational effort in
+	 * O(to-from).
+	 * 
+	 * @param weights
+	 *            the synaptic weights to update
+	 * @param gradients
+	 *            the gradients of the last update step
+	 * @param newGradients
+	 *            the gradients of the current update step
+	 * @param learningRates
+	 *            the learning rates per synapse
+	 * @param lastUpdates
+	 *            the last weight updates per synapse
+	 * @param from
+	 *            first index to update
+	 * @param to
+	 *            index after the last one to update
+	 * @param revertOnSignChange
+	 *            whether the last update step is reversed for synapses whose
+	 *            gradient changed signum
+	 */
+	protected void updateWeightsResilientBackpropagation(double[] weights,
+			double[] gradients, double[] newGradients, double[] learningRates,
+			double[] lastUpdates, int from, int to, boolean revertOnSignChange) {
+		for (int k = from; k < to; k++) {
+			double decisionValue = newGradients[k] * gradients[k];
+			boolean done = false;
+			if (Math.abs(decisionValue) < EPSILON) {
+				// gradient "zero"
+				done = true;
+				gradients[k] = newGradients[k];
+				lastUpdates[k] = -(Math.signum(gradients[k]))
+						* learningRates[k];
+				weights[k] += lastUpdates[k];
+			}
+			if (decisionValue > 0.0 && !done) {
+				// gradient did not change signum
+				gradients[k] = newGradients[k];
+				learningRates[k] = learningRates[k]
+						* resilientBackpropagationEtaPlus;
+				if (learningRates[k] > resilientBackpropagationDeltaMax) {
+					learningRates[k] = resilientBackpropagationDeltaMax;
+				}
+				lastUpdates[k] = -(Math.signum(gradients[k]))
+						* learningRates[k];
+				weights[k] += lastUpdates[k];
+			}
+			if (decisionValue < 0.0 && !done) {
+				// gradient changed signum
+				learningRates[k] = learningRates[k]
+						* resilientBackpropagationEtaMinus;
+				if (learningRates[k] < resilientBackpropagationDeltaMin) {
+					learningRates[k] = resilientBackpropagationDeltaMin;
+				}
+				// if normal rprop, step is always executed. If
+				// improved, it is only executed with err > lastErr.
+				if (revertOnSignChange) {
+					// reverse last update step
+					weights[k] -= lastUpdates[k];
+				}
+				// for normal rprop
+				gradients[k] = 0.0;
+			}
+		}
+	}
+
 	/**
 	 * Checks whether the given neuron is an output neuron with computational
 	 * effort in O(1).
@@ -2114,9 +4717,104 @@ public class NeuralNetwork implements Serializable {
 		return result;
 	}
 
+	/**
+	 * Computes the importance of all existing synapses at once, using the
+	 * nonconvergent method of Finnoff 1993: For each synapse, the test value
+	 * |SUM_p (w - eta*g_p)| / (eta * sqrt(SUM_p (g_p - g_mean)^2)) is
+	 * computed, where g_p is the error gradient of the synapse for sample p.
+	 * Synapses whose weights are small compared to the fluctuation of their
+	 * gradients get small values and can be removed first. Weights with
+	 * neither weight nor fluctuation get the importance 0, fluctuation free
+	 * weights get Double.POSITIVE_INFINITY.
+	 * 
+	 * <p>
+	 * All gradients are computed in one pass over the lesson on the compact
+	 * mirror of the data structure, split into the given number of chunks
+	 * which are computed in parallel like in trainResilientBackpropagation,
+	 * with computational effort in O(SAMPLES*SYNAPSES). Only forward and
+	 * forward shortcut synapses are allowed. The importance values are written
+	 * in the order of copyWeightsToArray.
+	 * 
+	 * @param lesson
+	 *            the lesson to measure
+	 * @param learningRate
+	 *            the learning rate eta of the test value, which is the one
+	 *            the network is trained with in Finnoff's method
+	 * @param importance
+	 *            the array to write the importance values into, its length
+	 *            has to be countSynapses().
+	 * @param chunks
+	 *            the number of chunks, for example
+	 *            ParallelExecution.countProcessors()
+	 * @return the given array
+	 */
+	public double[] computeSynapseImportanceNonConvergentMethod(
+			TrainingSampleLesson lesson, double learningRate,
+			double[] importance, int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException(
+					"At least one chunk is needed.");
+		}
+		if (importance.length != countSynapses()) {
+			throw new IllegalArgumentException(
+					"Importance array length does not match the number of synapses.");
+		}
+		if (descriptor.isAllowBackwardSynapses()
+				|| descriptor.isAllowBackwardShortcutSynapses()
+				|| descriptor.isAllowLateralSynapses()
+				|| descriptor.isAllowSelfSynapses()) {
+			throw new IllegalArgumentException(
+					"Can't use nonconvergent method. Only forward and forward shortcut Synapses are allowed.");
+		}
+
+		ensureCompactStorage();
+		double[][] inputs = lesson.getInputs();
+		double[][] desiredOutputs = lesson.getDesiredOutputs();
+		double[] gradients = getWorkspace().getCompactGradientsCleared();
+		double[] squaredGradients = getWorkspace()
+				.getCompactSquaredGradientsCleared();
+
+		boolean batched = isBlockPropagationUsable();
+		if (!batched) {
+			chunks = 1;
+		}
+		chunks = Math.max(1, Math.min(chunks, lesson.countSamples()));
+		if (chunks > 1) {
+			accumulateGradientsCompactParallel(inputs, desiredOutputs, chunks,
+					gradients, squaredGradients);
+		} else if (batched) {
+			accumulateGradientsCompact(inputs, desiredOutputs, 0,
+					inputs.length, gradients, squaredGradients, getWorkspace()
+							.getDelta(), getWorkspace().getBlockNetInputs(),
+					getWorkspace().getBlockActivations(), neuronBehaviors);
+		} else {
+			accumulateGradientsCompact(inputs, desiredOutputs, 0,
+					inputs.length, gradients, squaredGradients, getWorkspace()
+							.getDelta(), null, null, neuronBehaviors);
+		}
+
+		double[] weights = compactPredecessorWeights;
+		int samples = lesson.countSamples();
+		for (int k = 0; k < importance.length; k++) {
+			double numerator = Math.abs(samples * weights[k] - learningRate
+					* gradients[k]);
+			double variance = squaredGradients[k] - gradients[k]
+					* gradients[k] / samples;
+			double denominator = learningRate * Math.sqrt(Math.max(0, variance));
+			if (denominator > 0) {
+				importance[k] = numerator / denominator;
+			} else {
+				importance[k] = numerator == 0 ? 0 : Double.POSITIVE_INFINITY;
+			}
+		}
+		return importance;
+	}
+
 	/**
 	 * Searches the least important of all existing feed forward synapses, using
-	 * the nonconvergent method of Finnoff 1993.
+	 * the nonconvergent method of Finnoff 1993. To remove many synapses, use
+	 * computeSynapseImportanceNonConvergentMethod instead, which rates all
+	 * synapses in one parallel pass.
 	 * 
 	 * @param lesson
 	 *            the lesson to measure
@@ -2206,9 +4904,8 @@ public class NeuralNetwork implements Serializable {
 	/**
 	 * Creates a synapse from every neuron in the source layer to every neuron
 	 * in the target layer, which may be the same, with computational effort
-	 * O(SYNAPSESTOCREATE * SYNAPSECREATIONCOST) (look in the setSynapse
-	 * documentation to learn about the latter). Synapses that are not allowed
-	 * will not be created. Existing synapses will be overwritten. Synapses will
+	 * O(NEURONS+SYNAPSES+SYNAPSESTOCREATE) (see setSynapses). Synapses that are
+	 * not allowed will not be created. Existing synapses will be overwritten. Synapses will
 	 * be assigned a random value dependent on the synapseInitialRange defined
 	 * in the descriptor.
 	 * 
@@ -2226,21 +4923,32 @@ public class NeuralNetwork implements Serializable {
 			throw new IllegalArgumentException("Input layer can't be a target.");
 		}
 
+		int maximumCount = countNeuronsInLayer(sourceLayer)
+				* countNeuronsInLayer(targetLayer);
+		int[] sources = new int[maximumCount];
+		int[] targets = new int[maximumCount];
+		double[] weights = new double[maximumCount];
+		int count = 0;
 		for (int source = getNeuronFirstInLayer(sourceLayer); source <= getNeuronLastInLayer(sourceLayer); source++) {
 			for (int target = getNeuronFirstInLayer(targetLayer); target <= getNeuronLastInLayer(targetLayer); target++) {
 				if (isSynapseAllowed(source, target)) {
-					setSynapse(source, target, Double.NaN);
+					sources[count] = source;
+					targets[count] = target;
+					weights[count] = Double.NaN;
+					count++;
 				}
 			}
 		}
+		setSynapses(Arrays.copyOf(sources, count),
+				Arrays.copyOf(targets, count), Arrays.copyOf(weights, count));
 	}
 
 	/**
 	 * Creates a synapse from every neuron in the source layer to every neuron
 	 * in the target layer (which may be the same) -- but only with a given
-	 * probability and with computational effort O(SYNAPSESTOCREATE *
-	 * SYNAPSECREATIONCOST) (look in the setSynapse documentation to learn about
-	 * the latter). Synapses that are not allowed will not be created. Existing
+	 * probability and with computational effort
+	 * O(NEURONS+SYNAPSES+SYNAPSESTOCREATE) (see setSynapses). Synapses that are
+	 * not allowed will not be created. Existing
 	 * synapses from sourceLayer to targetLayer are not deleted prior to this.
 	 * If you want to do so, use the removeSynapsesFromLayerToLayer method.
 	 * However, existing synapses may be overwritten by new ones. New synapses
@@ -2272,15 +4980,30 @@ public class NeuralNetwork implements Serializable {
 			throw new IllegalArgumentException("Probability out of range.");
 		}
 
+		int maximumCount = countNeuronsInLayer(sourceLayer)
+				* countNeuronsInLayer(targetLayer);
+		int[] sources = new int[maximumCount];
+		int[] targets = new int[maximumCount];
+		double[] weights = new double[maximumCount];
+		int count = 0;
 		for (int source = getNeuronFirstInLayer(sourceLayer); source <= getNeuronLastInLayer(sourceLayer); source++) {
 			for (int target = getNeuronFirstInLayer(targetLayer); target <= getNeuronLastInLayer(targetLayer); target++) {
 				if (isSynapseAllowed(source, target)) {
 					if (random.nextBoolean(probability)) {
-						setSynapse(source, target, Double.NaN);
+						// draw the weight right away in order to keep the
+						// sequence of random numbers
+						sources[count] = source;
+						targets[count] = target;
+						weights[count] = getRandomDoubleBetweenIncluding(
+								-descriptor.getSynapseInitialRange(),
+								descriptor.getSynapseInitialRange());
+						count++;
 					}
 				}
 			}
 		}
+		setSynapses(Arrays.copyOf(sources, count),
+				Arrays.copyOf(targets, count), Arrays.copyOf(weights, count));
 	}
 
 	/**
@@ -2446,6 +5169,9 @@ public class NeuralNetwork implements Serializable {
 					"Illegal Neuron to set behavior.");
 		}
 		neuronBehaviors[neuron] = behavior;
+		if (workspace != null) {
+			workspace.dropChunks();
+		}
 	}
 
 	/**
@@ -2491,44 +5217,63 @@ public class NeuralNetwork implements Serializable {
 			// target neuron is either bias neuron or input neuron
 			return false;
 		}
+
+		// self Synapses
+		if (fromNeuron == toNeuron) {
+			return descriptor.isAllowSelfSynapses();
+		}
+
+		return isSynapseAllowedBetweenLayers(getLayerOfNeuron(fromNeuron),
+				getLayerOfNeuron(toNeuron));
+	}
+
+	/**
+	 * Checks whether synapses from neurons of one layer to other neurons of
+	 * another layer are allowed with computational effort in O(1). Layer -1
+	 * stands for the bias neuron. Unlike isSynapseAllowed, this also works
+	 * for layers that contain no neurons yet, e.g. to check in advance whether
+	 * a neuron to be created could be connected.
+	 * 
+	 * @param fromLayer
+	 *            the layer of the start neurons
+	 * @param toLayer
+	 *            the layer of the end neurons
+	 * @return if synapses from neurons of the one layer to other neurons of
+	 *         the other layer are allowed.
+	 */
+	public boolean isSynapseAllowedBetweenLayers(int fromLayer, int toLayer) {
+
+		// synapse to input layer or bias
+		if (toLayer < 1) {
+			return false;
+		}
 		// synapses from bias
-		if ((fromNeuron == 0) && (toNeuron >= getNeuronFirstInLayer(1))) {
-			// target neuron is either bias neuron or input neuron
+		if (fromLayer == -1) {
 			return true;
 		}
 
 		// backward Synapses
-		if ((getLayerOfNeuron(fromNeuron) - 1) == getLayerOfNeuron(toNeuron)) {
+		if ((fromLayer - 1) == toLayer) {
 			return descriptor.isAllowBackwardSynapses();
 		}
 
 		// backward ShortcutSynapses
-		if ((getLayerOfNeuron(fromNeuron) - 1) > getLayerOfNeuron(toNeuron)) {
+		if ((fromLayer - 1) > toLayer) {
 			return descriptor.isAllowBackwardShortcutSynapses();
 		}
 
 		// forward Synapses
-		if ((getLayerOfNeuron(fromNeuron) + 1) == getLayerOfNeuron(toNeuron)) {
+		if ((fromLayer + 1) == toLayer) {
 			return descriptor.isAllowForwardSynapses();
 		}
 
 		// forward ShortcutSynapses
-		if ((getLayerOfNeuron(fromNeuron) + 1) < getLayerOfNeuron(toNeuron)) {
+		if ((fromLayer + 1) < toLayer) {
 			return descriptor.isAllowForwardShortcutSynapses();
 		}
 
 		// lateral Synapses
-		if (!(fromNeuron == toNeuron)
-				&& getLayerOfNeuron(fromNeuron) == getLayerOfNeuron(toNeuron)) {
-			return descriptor.isAllowLateralSynapses();
-		}
-
-		// self Synapses
-		if (fromNeuron == toNeuron) {
-			return descriptor.isAllowSelfSynapses();
-		}
-
-		return false;
+		return descriptor.isAllowLateralSynapses();
 	}
 
 	/**
@@ -2630,6 +5375,14 @@ public class NeuralNetwork implements Serializable {
 
 		int j = createNeuronInLayer(targetLayer);
 
+		// indices behind the new neuron have been shifted by one
+		if (i >= j) {
+			i++;
+		}
+		if (k >= j) {
+			k++;
+		}
+
 		double weight = getWeight(i, k);
 		removeSynapse(i, k);
 		setSynapse(i, j, 1);
@@ -2666,11 +5419,27 @@ public class NeuralNetwork implements Serializable {
 	 * @return the index of the neuron that was created.
 	 */
 	public int mutateTopologySplitNeuron(int neuron) {
+		return mutateTopologySplitNeuron(neuron, random.nextDouble());
+	}
+
+	/**
+	 * Splits an inner Neuron like mutateTopologySplitNeuron(neuron) does, but
+	 * uses the given alpha instead of a random one. This allows callers that
+	 * manage random numbers on their own, like parallel evolutionary methods,
+	 * to get reproducible results.
+	 * 
+	 * @param neuron
+	 *            the neuron to split.
+	 * @param alpha
+	 *            the factor the outgoing weights are split by, between 0 and
+	 *            1.
+	 * @return the index of the neuron that was created.
+	 */
+	public int mutateTopologySplitNeuron(int neuron, double alpha) {
 		if (!isNeuronHidden(neuron)) {
 			throw new IllegalArgumentException(
 					"No input, output or bias neuron can be split.");
 		}
-		double alpha = random.nextDouble();
 
 		// add neuron
 		int newNeuron = createNeuronInLayer(getLayerOfNeuron(neuron));
@@ -2709,6 +5478,7 @@ public class NeuralNetwork implements Serializable {
 		for (int i = 0; i < successors[newNeuron].length; i++) {
 			predecessorWeights[successors[newNeuron][i]][successorWeightIndexInPendantPredecessorArray[newNeuron][i]] *= (1 + alpha);
 		}
+		invalidateCompactWeights();
 
 		return newNeuron;
 	}
@@ -2851,37 +5621,8 @@ public class NeuralNetwork implements Serializable {
 		successorWeightIndexInPendantPredecessorArray = newSuccessorWeightIndexInPendantPredecessorArray;
 
 		// update shadows the same way
-		for (Iterator<String> keyIterator = shadows.keySet().iterator(); keyIterator
-				.hasNext();) {
-			String key = keyIterator.next();
-
-			// get shadow
-			double[][] shadow = shadows.get(key);
-
-			// create new shadow
-			double[][] newShadow = new double[countNeurons() + 2][];
-
-			// fill new shadow
-			for (int i = 0; i < countNeurons() + 2; i++) {
-				// smaller indices than positionOfNewNeuron are just copied.
-				if (i < positionOfNewNeuron) {
-					newShadow[i] = shadow[i];
-				}
-
-				// greater ones smaller indices than positionOfNewNeuron are
-				// just
-				// copied.
-				if (i > positionOfNewNeuron) {
-					newShadow[i] = shadow[i - 1];
-				}
-			}
-			// create storage for new neuron in shadow
-			newShadow[positionOfNewNeuron] = new double[0];
-
-			// overwrite old shadow with key
-			shadows.put(key, newShadow);
-
-		}
+		shadows.insertNeuron(positionOfNewNeuron);
+		invalidateCompactStructure();
 
 		return positionOfNewNeuron;
 	}
@@ -3009,36 +5750,8 @@ public class NeuralNetwork implements Serializable {
 		successorWeightIndexInPendantPredecessorArray = newSuccessorWeightIndexInPendantPredecessorArray;
 
 		// update shadows the same way
-		for (Iterator<String> keyIterator = shadows.keySet().iterator(); keyIterator
-				.hasNext();) {
-			String key = keyIterator.next();
-
-			// get shadow
-			double[][] shadow = shadows.get(key);
-
-			// create new shadow
-			double[][] newShadow = new double[countNeurons()][];
-
-			// fill new shadow
-			for (int i = 0; i < countNeurons() + 1; i++) {
-				// smaller indices than positionOfNewNeuron are just copied.
-				if (i < neuronToRemove) {
-					newShadow[i] = shadow[i];
-				}
-
-				// greater ones smaller indices than positionOfNewNeuron are
-				// just
-				// copied and shifted
-				if (i > neuronToRemove) {
-					newShadow[i - 1] = shadow[i];
-				}
-			}
-
-			// overwrite old shadow with key
-			shadows.put(key, newShadow);
-
-		}
-
+		shadows.removeNeuron(neuronToRemove);
+		invalidateCompactStructure();
 	}
 
 	/**
@@ -3123,8 +5836,8 @@ public class NeuralNetwork implements Serializable {
 	 * discarded.
 	 * 
 	 * <p>
-	 * NOTE: This function includes several SetSynapse calls and thus is not
-	 * optimal in calculating complexity, even though it is not too slow either.
+	 * All synapses are added at once using setSynapses, so the computational
+	 * effort is O(NEURONS+SYNAPSES) plus the effort of parsing the string.
 	 * 
 	 * <p>
 	 * IMPORTANT: Synapses that are not allowed from the neural network
@@ -3178,6 +5891,10 @@ public class NeuralNetwork implements Serializable {
 
 		// parse weights of existing synapse and apply them
 		String[] parsedWeights = weightString.split(";");
+		int[] sources = new int[parsedWeights.length];
+		int[] targets = new int[parsedWeights.length];
+		double[] weights = new double[parsedWeights.length];
+		int count = 0;
 
 		for (int singleParsedWeight = 0; singleParsedWeight < parsedWeights.length; singleParsedWeight++) {
 			String[] furtherParsed = parsedWeights[singleParsedWeight]
@@ -3186,9 +5903,14 @@ public class NeuralNetwork implements Serializable {
 			int j = Integer.parseInt(furtherParsed[1]);
 			double weightValue = Double.parseDouble(furtherParsed[2]);
 			if (isSynapseAllowed(i, j)) {
-				setSynapse(i, j, weightValue);
+				sources[count] = i;
+				targets[count] = j;
+				weights[count] = weightValue;
+				count++;
 			}
 		}
+		setSynapses(Arrays.copyOf(sources, count),
+				Arrays.copyOf(targets, count), Arrays.copyOf(weights, count));
 
 	}
 
@@ -3435,6 +6157,47 @@ public class NeuralNetwork implements Serializable {
 
 	}
 
+	/**
+	 * Writes this neural network into the given file in a versioned binary
+	 * format that can be read by the importFromBinaryFile method much faster
+	 * than the string format of exportToString can be parsed (see
+	 * NeuralNetworkBinaryFormat). Topology, synaptic weights, neuron
+	 * behaviors, the descriptor and the Resilient Backpropagation parameters
+	 * are saved. Computational effort is O(NEURONS+SYNAPSES).
+	 * 
+	 * @param file
+	 *            the file to write, overwritten if existent
+	 * @param includeShadows
+	 *            whether to save the synapse shadows as well, e.g. the step
+	 *            sizes of Resilient Backpropagation, so training can be
+	 *            continued after loading
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	public void exportToBinaryFile(File file, boolean includeShadows)
+			throws IOException {
+		NeuralNetworkBinaryFormat.write(this, file, includeShadows);
+	}
+
+	/**
+	 * Reads a neural network written by the exportToBinaryFile method. The
+	 * file is mapped into memory and the synapses are copied in bulk instead of
+	 * being parsed and added one by one, so the computational effort is
+	 * O(NEURONS+SYNAPSES) with small constants. The returned network uses the
+	 * descriptor stored in the file and is ready to propagate.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @return the neural network stored in the file
+	 * @throws IOException
+	 *             if the file can not be read or is no valid neural network
+	 *             file
+	 */
+	public static NeuralNetwork importFromBinaryFile(File file)
+			throws IOException {
+		return NeuralNetworkBinaryFormat.read(file);
+	}
+
 	/**
 	 * Returns the number of neurons in a given layer with computational effort
 	 * in O(1).
@@ -3461,6 +6224,28 @@ public class NeuralNetwork implements Serializable {
 		return result;
 	}
 
+	/**
+	 * Counts the synapses ending in the given neuron with computational effort
+	 * in O(1).
+	 * 
+	 * @param neuron
+	 * @return the number of incoming synapses
+	 */
+	public int countSynapsesIncoming(int neuron) {
+		return predecessors[neuron].length;
+	}
+
+	/**
+	 * Counts the synapses starting at the given neuron with computational
+	 * effort in O(1).
+	 * 
+	 * @param neuron
+	 * @return the number of outgoing synapses
+	 */
+	public int countSynapsesOutgoing(int neuron) {
+		return successors[neuron].length;
+	}
+
 	/**
 	 * Uniformly selects a random inner neuron with computational effort in
 	 * O(1).
@@ -3551,21 +6336,8 @@ public class NeuralNetwork implements Serializable {
 					.clone();
 		}
 
-		// clone shadows, store them in new shadowTreeMap, use new local fields
-		// of the new neural network as keys.
-		TreeMap<String, double[][]> synapseShadowsClone = new TreeMap<String, double[][]>();
-
-		for (Iterator<String> keyIterator = shadows.keySet().iterator(); keyIterator
-				.hasNext();) {
-			String key = keyIterator.next();
-			double[][] shadow = shadows.get(key);
-			double[][] clone = shadow.clone();
-			for (int i = 0; i < clone.length; i++) {
-				clone[i] = shadow[i].clone();
-			}
-			synapseShadowsClone.put(new String(key), clone);
-
-		}
+		// clone shadows including their slots
+		SynapseShadows synapseShadowsClone = shadows.copy();
 
 		// 1dim arrays are cloned automatically
 		int[] layerStartingNeuronsClone = layerStartingNeurons.clone();
@@ -3600,11 +6372,112 @@ public class NeuralNetwork implements Serializable {
 		clonedNeuralNet.activations = activationsClone;
 		clonedNeuralNet.netInputs = netInputsClone;
 		clonedNeuralNet.neuronBehaviors = neuronBehaviorsClone;
+		clonedNeuralNet.invalidateCompactStructure();
 
 		return clonedNeuralNet;
 
 	}
 
+	/**
+	 * Overwrites topology, synaptic weights and neuron behaviors of this
+	 * network with those of the given network, which has to use the same
+	 * descriptor object, e.g. because it is a clone of this network. Unlike
+	 * clone, no new network is created and the arrays of this network are
+	 * reused wherever their lengths match, so a pool of networks can be
+	 * recycled without creating garbage, e.g. by evolutionary methods that
+	 * replace each generation by mutated copies of the previous one.
+	 * Computational effort is in O(NEURONS+SYNAPSES).
+	 * 
+	 * <p>
+	 * Caches and shadows of this network are cleared, the learning parameters
+	 * are taken over from the given network.
+	 * 
+	 * @param source
+	 *            the network to copy
+	 */
+	public void copyFrom(NeuralNetwork source) {
+		if (source.descriptor != descriptor) {
+			throw new IllegalArgumentException(
+					"Networks do not share their descriptor.");
+		}
+		if (source == this) {
+			return;
+		}
+
+		int length = source.predecessors.length;
+		if (predecessors.length != length) {
+			predecessors = Arrays.copyOf(predecessors, length);
+			predecessorWeights = Arrays.copyOf(predecessorWeights, length);
+			successors = Arrays.copyOf(successors, length);
+			successorWeightIndexInPendantPredecessorArray = Arrays.copyOf(
+					successorWeightIndexInPendantPredecessorArray, length);
+		}
+		for (int i = 0; i < length; i++) {
+			predecessors[i] = copyReusing(source.predecessors[i],
+					predecessors[i]);
+			predecessorWeights[i] = copyReusing(source.predecessorWeights[i],
+					predecessorWeights[i]);
+			successors[i] = copyReusing(source.successors[i], successors[i]);
+			successorWeightIndexInPendantPredecessorArray[i] = copyReusing(
+					source.successorWeightIndexInPendantPredecessorArray[i],
+					successorWeightIndexInPendantPredecessorArray[i]);
+		}
+
+		layerStartingNeurons = copyReusing(source.layerStartingNeurons,
+				layerStartingNeurons);
+		neuronsPerLayer = copyReusing(source.neuronsPerLayer, neuronsPerLayer);
+		activations = copyReusing(source.activations, activations);
+		netInputs = copyReusing(source.netInputs, netInputs);
+
+		if (neuronBehaviors.length != length) {
+			neuronBehaviors = new NeuronBehavior[length];
+		}
+		for (int i = 0; i < length; i++) {
+			NeuronBehavior behavior = source.neuronBehaviors[i];
+			if (behavior != null && behavior.needsDedicatedInstancePerNeuron()) {
+				behavior = behavior.getDedicatedInstance();
+			}
+			neuronBehaviors[i] = behavior;
+		}
+
+		resilientBackpropagationDeltaZero = source.resilientBackpropagationDeltaZero;
+		resilientBackpropagationDeltaMax = source.resilientBackpropagationDeltaMax;
+		resilientBackpropagationDeltaMin = source.resilientBackpropagationDeltaMin;
+		resilientBackpropagationEtaMinus = source.resilientBackpropagationEtaMinus;
+		resilientBackpropagationEtaPlus = source.resilientBackpropagationEtaPlus;
+
+		shadows.clear();
+		invalidateCompactStructure();
+	}
+
+	/**
+	 * Copies the source array into the target array if their lengths match,
+	 * otherwise into a new array.
+	 * 
+	 * @return the array copied into
+	 */
+	protected static int[] copyReusing(int[] source, int[] target) {
+		if (target == null || target.length != source.length) {
+			return source.clone();
+		}
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+
+	/**
+	 * Copies the source array into the target array if their lengths match,
+	 * otherwise into a new array.
+	 * 
+	 * @return the array copied into
+	 */
+	protected static double[] copyReusing(double[] source, double[] target) {
+		if (target == null || target.length != source.length) {
+			return source.clone();
+		}
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+
 	/**
 	 * Checks if this object equals another. If the other is a neural network
 	 * too, it is checked if the four primary data storage arrays equal each
@@ -0,0 +1,452 @@
+package com.dkriesel.snipe.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
+
+/**
+ * Reads and writes neural networks in a versioned binary format that is built
+ * to be loaded fast, e.g. by services that have to be ready to propagate
+ * shortly after starting. Use NeuralNetwork.exportToBinaryFile and
+ * NeuralNetwork.importFromBinaryFile instead of this class.
+ *
+ * <p>
+ * Unlike the string format of exportToString, the binary format stores the
+ * topology and the weights as raw int and double arrays in the order of the
+ * compact mirror, i.e. the predecessors of neuron 0, then those of neuron 1
+ * and so on. When loading, the file is mapped into memory and each
+ * predecessor array and weight array is filled by one bulk copy, so there is
+ * no per synapse parsing and no per synapse insertion. The successor arrays
+ * are rebuilt afterwards in O(NEURONS+SYNAPSES). The descriptor, the neuron
+ * behaviors and the Resilient Backpropagation parameters are stored as well,
+ * so the loaded network is ready to propagate. Optionally, the allocated
+ * synapse shadows are stored, so training can be continued where it stopped.
+ *
+ * <p>
+ * Only load files from trusted sources, since descriptor and neuron behaviors
+ * are read by Java serialization.
+ *
+ * <p>
+ * Layout, all numbers little endian:
+ * <ol>
+ * <li>int magic number, int format version, int flags (1 if shadows are
+ * stored)</li>
+ * <li>int length of the object block, then the object block: the descriptor,
+ * the table of distinct neuron behaviors and, if shadows are stored, the user
+ * shadow keys and slots, written by Java serialization. Neuron behaviors that
+ * need dedicated instances are stored without their per neuron state, and a
+ * dedicated instance is created for each neuron when loading.</li>
+ * <li>int number of layers, int[] neurons per layer</li>
+ * <li>int number of neurons including the bias, int number of synapses</li>
+ * <li>int[] index of the behavior of each neuron in the table, -1 for none</li>
+ * <li>int[] number of predecessors of each neuron</li>
+ * <li>int[] predecessors of all neurons, padding to 8 bytes</li>
+ * <li>double[] Resilient Backpropagation parameters DeltaZero, DeltaMax,
+ * DeltaMin, EtaMinus, EtaPlus</li>
+ * <li>double[] weights of all synapses</li>
+ * <li>if shadows are stored: int number of slots, int[] 1 for each allocated
+ * slot and 0 otherwise, padding to 8 bytes, and the values of each allocated
+ * shadow as double[], in the order of the weights</li>
+ * </ol>
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class NeuralNetworkBinaryFormat {
+
+	/**
+	 * "SNIP" in ASCII.
+	 */
+	protected static final int MAGIC = 0x534E4950;
+	protected static final int VERSION = 1;
+	protected static final int FLAG_SHADOWS = 1;
+	protected static final int NUMBER_OF_PARAMETERS = 5;
+
+	protected NeuralNetworkBinaryFormat() {
+	}
+
+	/**
+	 * Writes the given network into the given file, which is overwritten if
+	 * existent. Computational effort is O(NEURONS+SYNAPSES).
+	 *
+	 * @param net
+	 *            the network to write
+	 * @param file
+	 *            the file to write
+	 * @param includeShadows
+	 *            whether to store the allocated synapse shadows, e.g. the step
+	 *            sizes of Resilient Backpropagation
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	protected static void write(NeuralNetwork net, File file,
+			boolean includeShadows) throws IOException {
+		int neurons = net.predecessors.length;
+		int synapses = net.countSynapses();
+
+		// table of distinct behaviors, compared by their serialized form so
+		// dedicated instances with equal parameters share an entry
+		List<NeuronBehavior> behaviorTable = new ArrayList<NeuronBehavior>();
+		HashMap<ByteBuffer, Integer> indexBySerializedForm = new HashMap<ByteBuffer, Integer>();
+		IdentityHashMap<NeuronBehavior, Integer> indexByInstance = new IdentityHashMap<NeuronBehavior, Integer>();
+		int[] behaviorIndices = new int[neurons];
+		for (int i = 0; i < neurons; i++) {
+			NeuronBehavior behavior = net.neuronBehaviors[i];
+			if (behavior == null) {
+				behaviorIndices[i] = -1;
+				continue;
+			}
+			Integer index = indexByInstance.get(behavior);
+			if (index == null) {
+				if (behavior.needsDedicatedInstancePerNeuron()) {
+					// drop the per neuron state
+					behavior = behavior.getDedicatedInstance();
+				}
+				ByteBuffer serializedForm = ByteBuffer
+						.wrap(serialize(behavior));
+				index = indexBySerializedForm.get(serializedForm);
+				if (index == null) {
+					index = behaviorTable.size();
+					behaviorTable.add(behavior);
+					indexBySerializedForm.put(serializedForm, index);
+				}
+				indexByInstance.put(net.neuronBehaviors[i], index);
+			}
+			behaviorIndices[i] = index;
+		}
+
+		SynapseShadows shadows = net.shadows;
+		int allocatedShadows = 0;
+		if (includeShadows) {
+			for (int slot = 0; slot < shadows.slots.length; slot++) {
+				if (shadows.slots[slot] != null) {
+					allocatedShadows++;
+				}
+			}
+		}
+
+		byte[] objectBlock = serialize(new Object[] {
+				net.descriptor,
+				behaviorTable.toArray(new NeuronBehavior[behaviorTable.size()]),
+				includeShadows ? new TreeMap<String, Integer>(
+						shadows.userSlots) : null });
+
+		// compute the size of the file
+		long size = 4 * 4L + objectBlock.length;
+		size += 4 * (1L + net.neuronsPerLayer.length);
+		size += 4 * (2L + 2L * neurons + synapses);
+		size = align(size);
+		size += 8 * (NUMBER_OF_PARAMETERS + (long) synapses);
+		if (includeShadows) {
+			size += 4 * (1L + shadows.slots.length);
+			size = align(size);
+			size += 8L * allocatedShadows * synapses;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Neural network too large for binary format.");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(
+				ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(includeShadows ? FLAG_SHADOWS : 0);
+		buffer.putInt(objectBlock.length);
+		buffer.put(objectBlock);
+
+		buffer.putInt(net.neuronsPerLayer.length);
+		for (int l = 0; l < net.neuronsPerLayer.length; l++) {
+			buffer.putInt(net.neuronsPerLayer[l]);
+		}
+		buffer.putInt(neurons);
+		buffer.putInt(synapses);
+		for (int i = 0; i < neurons; i++) {
+			buffer.putInt(behaviorIndices[i]);
+		}
+		for (int j = 0; j < neurons; j++) {
+			buffer.putInt(net.predecessors[j].length);
+		}
+		for (int j = 0; j < neurons; j++) {
+			for (int k = 0; k < net.predecessors[j].length; k++) {
+				buffer.putInt(net.predecessors[j][k]);
+			}
+		}
+		pad(buffer);
+
+		buffer.putDouble(net.resilientBackpropagationDeltaZero);
+		buffer.putDouble(net.resilientBackpropagationDeltaMax);
+		buffer.putDouble(net.resilientBackpropagationDeltaMin);
+		buffer.putDouble(net.resilientBackpropagationEtaMinus);
+		buffer.putDouble(net.resilientBackpropagationEtaPlus);
+		putAligned(buffer, net.predecessorWeights);
+
+		if (includeShadows) {
+			buffer.putInt(shadows.slots.length);
+			for (int slot = 0; slot < shadows.slots.length; slot++) {
+				buffer.putInt(shadows.slots[slot] != null ? 1 : 0);
+			}
+			pad(buffer);
+			for (int slot = 0; slot < shadows.slots.length; slot++) {
+				if (shadows.slots[slot] != null) {
+					putAligned(buffer, shadows.slots[slot]);
+				}
+			}
+		}
+
+		buffer.flip();
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads a network written by the write method. The file is mapped into
+	 * memory, the arrays of the network are filled by bulk copies and the
+	 * successor arrays are rebuilt, so computational effort is
+	 * O(NEURONS+SYNAPSES) without any parsing of single synapses.
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the network, using the stored descriptor
+	 * @throws IOException
+	 *             if the file can not be read, is no neural network file, has
+	 *             an unsupported version or is inconsistent
+	 */
+	protected static NeuralNetwork read(File file) throws IOException {
+		ByteBuffer buffer;
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			// the mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} finally {
+			randomAccessFile.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		try {
+			return read(buffer);
+		} catch (java.nio.BufferUnderflowException e) {
+			throw new IOException("Neural network file is truncated.");
+		}
+	}
+
+	/**
+	 * Reads a network out of the given little endian buffer.
+	 */
+	protected static NeuralNetwork read(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+			throw new IOException("No neural network file.");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported neural network file version "
+					+ version + ".");
+		}
+		boolean includesShadows = (buffer.getInt() & FLAG_SHADOWS) != 0;
+
+		byte[] objectBlock = new byte[checkLength(buffer.getInt(), buffer, 1)];
+		buffer.get(objectBlock);
+		Object[] objects = (Object[]) deserialize(objectBlock);
+		NeuralNetworkDescriptor descriptor = (NeuralNetworkDescriptor) objects[0];
+		NeuronBehavior[] behaviorTable = (NeuronBehavior[]) objects[1];
+
+		int[] layers = new int[checkLength(buffer.getInt(), buffer, 4)];
+		buffer.asIntBuffer().get(layers);
+		buffer.position(buffer.position() + 4 * layers.length);
+		if (layers.length != descriptor.countLayers()
+				|| layers[0] != descriptor.countInputNeurons()
+				|| layers[layers.length - 1] != descriptor.countOutputNeurons()) {
+			throw new IOException(
+					"Layers of neural network file not consistent with its descriptor.");
+		}
+
+		NeuralNetwork net = new NeuralNetwork(descriptor, layers);
+		int neurons = buffer.getInt();
+		int synapses = buffer.getInt();
+		if (neurons != net.predecessors.length || synapses < 0) {
+			throw new IOException(
+					"Number of neurons of neural network file not consistent with its layers.");
+		}
+
+		IntBuffer ints = buffer.asIntBuffer();
+		int[] behaviorIndices = new int[neurons];
+		ints.get(behaviorIndices);
+		int[] predecessorCounts = new int[neurons];
+		ints.get(predecessorCounts);
+		long sum = 0;
+		for (int j = 0; j < neurons; j++) {
+			if (predecessorCounts[j] < 0) {
+				throw new IOException("Neural network file is inconsistent.");
+			}
+			sum += predecessorCounts[j];
+		}
+		if (sum != synapses) {
+			throw new IOException("Neural network file is inconsistent.");
+		}
+		checkLength(synapses, buffer, 4);
+		for (int j = 0; j < neurons; j++) {
+			int[] predecessors = new int[predecessorCounts[j]];
+			ints.get(predecessors);
+			for (int k = 0; k < predecessors.length; k++) {
+				if (predecessors[k] < 0 || predecessors[k] >= neurons
+						|| (k > 0 && predecessors[k] <= predecessors[k - 1])) {
+					throw new IOException(
+							"Neural network file contains invalid synapses.");
+				}
+			}
+			net.predecessors[j] = predecessors;
+		}
+		buffer.position((int) align(buffer.position() + 4L
+				* (2L * neurons + synapses)));
+
+		net.resilientBackpropagationDeltaZero = buffer.getDouble();
+		net.resilientBackpropagationDeltaMax = buffer.getDouble();
+		net.resilientBackpropagationDeltaMin = buffer.getDouble();
+		net.resilientBackpropagationEtaMinus = buffer.getDouble();
+		net.resilientBackpropagationEtaPlus = buffer.getDouble();
+		net.predecessorWeights = getAligned(buffer, predecessorCounts);
+
+		for (int i = 0; i < neurons; i++) {
+			int index = behaviorIndices[i];
+			if (index < -1 || index >= behaviorTable.length) {
+				throw new IOException(
+						"Neural network file contains invalid neuron behaviors.");
+			}
+			NeuronBehavior behavior = index == -1 ? null
+					: behaviorTable[index];
+			if (behavior != null && behavior.needsDedicatedInstancePerNeuron()) {
+				behavior = behavior.getDedicatedInstance();
+			}
+			net.neuronBehaviors[i] = behavior;
+		}
+
+		if (includesShadows) {
+			@SuppressWarnings("unchecked")
+			TreeMap<String, Integer> userSlots = (TreeMap<String, Integer>) objects[2];
+			int[] allocated = new int[checkLength(buffer.getInt(), buffer, 4)];
+			buffer.asIntBuffer().get(allocated);
+			buffer.position((int) align(buffer.position() + 4L
+					* allocated.length));
+			SynapseShadows shadows = new SynapseShadows(
+					NeuralNetwork.SHADOWSLOTS_RESERVED);
+			shadows.slots = new double[Math.max(allocated.length,
+					NeuralNetwork.SHADOWSLOTS_RESERVED)][][];
+			for (int slot = 0; slot < allocated.length; slot++) {
+				if (allocated[slot] != 0) {
+					shadows.slots[slot] = getAligned(buffer, predecessorCounts);
+				}
+			}
+			shadows.userSlots.putAll(userSlots);
+			net.shadows = shadows;
+		}
+
+		net.buildSuccessorsFromPredecessors();
+		net.invalidateCompactStructure();
+		return net;
+	}
+
+	/**
+	 * Writes the given per neuron arrays in one row, starting at the current
+	 * position of the buffer, which has to be aligned to 8 bytes.
+	 */
+	protected static void putAligned(ByteBuffer buffer, double[][] values) {
+		DoubleBuffer doubles = buffer.asDoubleBuffer();
+		for (int j = 0; j < values.length; j++) {
+			doubles.put(values[j]);
+		}
+		buffer.position(buffer.position() + 8 * doubles.position());
+	}
+
+	/**
+	 * Reads per neuron arrays of the given lengths written by putAligned by
+	 * one bulk copy per neuron.
+	 */
+	protected static double[][] getAligned(ByteBuffer buffer, int[] lengths)
+			throws IOException {
+		double[][] values = new double[lengths.length][];
+		DoubleBuffer doubles = buffer.asDoubleBuffer();
+		for (int j = 0; j < lengths.length; j++) {
+			values[j] = new double[lengths[j]];
+			doubles.get(values[j]);
+		}
+		buffer.position(buffer.position() + 8 * doubles.position());
+		return values;
+	}
+
+	/**
+	 * Checks whether the given number of elements of the given size can be
+	 * left in the buffer, so corrupt files do not cause huge allocations.
+	 *
+	 * @return the number of elements
+	 */
+	protected static int checkLength(int elements, ByteBuffer buffer,
+			int elementSize) throws IOException {
+		if (elements < 0 || (long) elements * elementSize > buffer.remaining()) {
+			throw new IOException("Neural network file is truncated.");
+		}
+		return elements;
+	}
+
+	/**
+	 * Advances the position of the buffer to the next multiple of 8 by
+	 * writing zeros.
+	 */
+	protected static void pad(ByteBuffer buffer) {
+		while (buffer.position() % 8 != 0) {
+			buffer.put((byte) 0);
+		}
+	}
+
+	/**
+	 * @return the smallest multiple of 8 not less than the given position.
+	 */
+	protected static long align(long position) {
+		return (position + 7) / 8 * 8;
+	}
+
+	protected static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream stream = new ObjectOutputStream(bytes);
+		stream.writeObject(object);
+		stream.close();
+		return bytes.toByteArray();
+	}
+
+	protected static Object deserialize(byte[] bytes) throws IOException {
+		ObjectInputStream stream = new ObjectInputStream(
+				new ByteArrayInputStream(bytes));
+		try {
+			return stream.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Neural network file contains unknown class "
+					+ e.getMessage() + ".");
+		} finally {
+			stream.close();
+		}
+	}
+}
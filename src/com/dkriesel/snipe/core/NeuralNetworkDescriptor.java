@@ -81,6 +81,10 @@ import com.dkriesel.snipe.neuronbehavior.TangensHyperbolicus;
  * The synapseInitialRange value is 0.4 by default, which means that new
  * synaptic weight values are chosen uniformly random out of [-0.4;0.4].
  * 
+ * <p>
+ * Compact synapse storage is disabled by default. Read the documentation of
+ * setCompactSynapseStorage to learn when it is worth enabling it.
+ * 
  * <h1>Changing settings in a descriptor after it has already been used to
  * create networks</h1>
  * 
@@ -117,6 +121,9 @@ public class NeuralNetworkDescriptor implements Serializable{
 	private boolean allowSelfSynapses = true;
 	private boolean allowLateralSynapses = true;
 	private double synapseInitialRange = 0.4;
+	private boolean compactSynapseStorage = false;
+	private boolean denseLayerKernels = true;
+	private boolean singlePrecisionWeights = false;
 
 	/**
 	 * The maximum absolute a synapse will be initialized with. Default is 0.4,
@@ -141,10 +148,110 @@ public class NeuralNetworkDescriptor implements Serializable{
 		this.synapseInitialRange = synapseInitialRange;
 	}
 
+	/**
+	 * @return whether networks created using this descriptor propagate and
+	 *         train on a compact mirror of their synapse data structure.
+	 */
+	public boolean isCompactSynapseStorage() {
+		return compactSynapseStorage;
+	}
+
+	/**
+	 * Defines whether networks created using this descriptor propagate and
+	 * train on a compact mirror of their synapse data structure. The mirror
+	 * stores all synapses in a compressed sparse row layout, that is, in one
+	 * flat array per kind of data plus an offset array per neuron, instead of
+	 * one sub-array per neuron. It is built the first time it is needed and
+	 * rebuilt lazily after topological changes, so it costs O(SYNAPSES)
+	 * additional memory and a rebuild in O(SYNAPSES) after each series of
+	 * topological changes.
+	 * 
+	 * <p>
+	 * Enable this for large networks whose topology rarely changes, for
+	 * example multilayer perceptrons trained by gradient descent: Propagation
+	 * and training then read memory sequentially instead of jumping between
+	 * neuron sub-arrays. Leave it disabled if you heavily mutate the topology
+	 * between propagations, for example during topology evolution. Default is
+	 * false. The setting can be changed at any time.
+	 * 
+	 * @param compactSynapseStorage
+	 *            the compactSynapseStorage to set
+	 */
+	public void setCompactSynapseStorage(boolean compactSynapseStorage) {
+		this.compactSynapseStorage = compactSynapseStorage;
+	}
+
+	/**
+	 * @return whether networks created using this descriptor use dense layer
+	 *         kernels if their topology allows it.
+	 */
+	public boolean isDenseLayerKernels() {
+		return denseLayerKernels;
+	}
+
+	/**
+	 * Defines whether networks created using this descriptor use dense layer
+	 * kernels if their topology allows it. Whenever the compact mirror (see
+	 * setCompactSynapseStorage) is built, the network checks whether each
+	 * non-input layer is connected exactly to all neurons of the layer before
+	 * (and, optionally, to the bias neuron), as in fully connected multilayer
+	 * perceptrons created with setSettingsTopologyFeedForward(). In this case,
+	 * fastprop propagation and the gradient descent methods treat the synapses
+	 * of each layer as a row-major weight matrix, which saves the index
+	 * lookups of the sparse path and processes several neurons at once. As
+	 * soon as the topology becomes irregular, for example by removing a
+	 * synapse, the sparse path is used again. The results are the same in
+	 * both cases. Default is true; this setting is only relevant if compact
+	 * synapse storage is enabled and can be changed at any time.
+	 * 
+	 * @param denseLayerKernels
+	 *            the denseLayerKernels to set
+	 */
+	public void setDenseLayerKernels(boolean denseLayerKernels) {
+		this.denseLayerKernels = denseLayerKernels;
+	}
+
+	/**
+	 * @return whether networks created using this descriptor propagate using
+	 *         single precision weights.
+	 */
+	public boolean isSinglePrecisionWeights() {
+		return singlePrecisionWeights;
+	}
+
+	/**
+	 * Defines whether networks created using this descriptor propagate using
+	 * single precision weights. If enabled, the compact mirror of the network
+	 * (see setCompactSynapseStorage) stores its weights as float instead of
+	 * double, and all propagation methods read them. This halves the memory
+	 * traffic for the weights, which dominates propagation of large networks.
+	 * Net inputs are still summed up, and activations are still stored, in
+	 * double precision, so the outputs differ from double precision
+	 * propagation only by the rounding of the weights.
+	 * 
+	 * <p>
+	 * Training methods keep working on double precision weights, which the
+	 * compact mirror holds while they run; the float weights are refreshed
+	 * the next time data is propagated after training. The main data storage
+	 * of the network, and synapse shadows like the step sizes of Resilient
+	 * Backpropagation, stay double precision, as the training methods need
+	 * them. Thus, a network that is only propagated needs 12 instead of 16
+	 * bytes per synapse for its weights, but not half of it. Default is
+	 * false; this setting is only relevant if compact synapse storage is
+	 * enabled and can be changed at any time.
+	 * 
+	 * @param singlePrecisionWeights
+	 *            the singlePrecisionWeights to set
+	 */
+	public void setSinglePrecisionWeights(boolean singlePrecisionWeights) {
+		this.singlePrecisionWeights = singlePrecisionWeights;
+	}
+
 	private NeuronBehavior inputNeuronsNeuronBehavior = new Identity();
 	private NeuronBehavior hiddenNeuronsNeuronBehavior = new TangensHyperbolicus();
 	private NeuronBehavior outputNeuronsNeuronBehavior = new TangensHyperbolicus();
 	private int frequency = 1;
+	private double recurrentTolerance = 0;
 
 	/**
 	 * Creates a new neuralNetworkDescriptor according to a neuronsPerLayer
@@ -489,6 +596,39 @@ public class NeuralNetworkDescriptor implements Serializable{
 		this.frequency = frequency;
 	}
 
+	/**
+	 * @return the tolerance below which changes of activations stop normal
+	 *         mode propagation early, or a negative value if it always takes
+	 *         frequency steps.
+	 */
+	public double getRecurrentTolerance() {
+		return recurrentTolerance;
+	}
+
+	/**
+	 * Defines when propagation in normal mode (see setFrequency) stops before
+	 * frequency steps are taken. After each step, the network determines the
+	 * largest absolute change of any activation. If it is not greater than the
+	 * tolerance, the network is considered settled and the remaining steps
+	 * are skipped, so a recurrent network that settles in 3 steps takes 3
+	 * steps instead of frequency steps. The frequency is therefore an upper
+	 * bound of the steps taken.
+	 * 
+	 * <p>
+	 * Default is 0, which only stops at exact fixed points, where further
+	 * steps would not change anything, so the results are the same as if all
+	 * steps were taken. Greater tolerances trade accuracy for speed. Negative
+	 * tolerances disable the detection, which is only needed for neuron
+	 * behaviors with internal state that do not implement
+	 * StatefulNeuronBehavior.
+	 * 
+	 * @param recurrentTolerance
+	 *            the recurrentTolerance to set
+	 */
+	public void setRecurrentTolerance(double recurrentTolerance) {
+		this.recurrentTolerance = recurrentTolerance;
+	}
+
 	/**
 	 * @return the numberOfInputNeurons
 	 */
@@ -652,17 +792,18 @@ public class NeuralNetworkDescriptor implements Serializable{
 	// initializeAllowedSynapses = false;
 	// setSettingsTopologyCompleteConnection();
 	// }
-	//
-	// /**
-	// * In order to use the maximum power of NEAT (which you may restrict later
-	// * on), the topology is set to complete connection and the init of all
-	// * allowed synapses is set to false.
-	// */
-	// public void setSettingsNEAT() {
-	// initializeAllowedSynapses = false;
-	// setSettingsTopologyCompleteConnection();
-	// }
-	//
+
+	/**
+	 * In order to use the maximum power of NEAT (which you may restrict later
+	 * on), the topology is set to complete connection and the init of all
+	 * allowed synapses is set to false, so the evolution starts with minimal
+	 * networks, e.g. using the NeuroEvolution class.
+	 */
+	public void setSettingsNEAT() {
+		initializeAllowedSynapses = false;
+		setSettingsTopologyCompleteConnection();
+	}
+
 	// /**
 	// * In order to use the maximum power of EPNet (which you may restrict
 	// later
@@ -0,0 +1,69 @@
+package com.dkriesel.snipe.core;
+
+import java.util.TreeMap;
+
+/**
+ * Holds the synaptic weights and, optionally, the synapse shadows of a
+ * NeuralNetwork at some point in time, so they can be restored later, e.g. in
+ * order to go back to the best weights found during training. Unlike a clone
+ * of the network, a snapshot contains neither the topology nor the neuron
+ * behaviors, just flat arrays in the order of copyWeightsToArray. Taking a
+ * snapshot again overwrites these arrays instead of allocating new ones, so
+ * training loops can take snapshots as often as they like without producing
+ * garbage.
+ *
+ * <p>
+ * A snapshot is created by NeuralNetwork.createSnapshot and belongs to the
+ * network it was created by. It can only be restored as long as the topology
+ * of the network has not been changed since the snapshot was taken.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class NeuralNetworkSnapshot {
+
+	protected final NeuralNetwork net;
+	protected final boolean includingShadows;
+	protected int topologyVersion;
+	protected double[] weights;
+	// one compact array per shadow slot, null for unallocated slots
+	protected double[][] shadows;
+	protected final TreeMap<String, Integer> userSlots = new TreeMap<String, Integer>();
+
+	/**
+	 * Creates an empty snapshot for the given network.
+	 *
+	 * @param net
+	 *            the network the snapshot belongs to
+	 * @param includingShadows
+	 *            whether the synapse shadows are stored as well
+	 */
+	protected NeuralNetworkSnapshot(NeuralNetwork net, boolean includingShadows) {
+		this.net = net;
+		this.includingShadows = includingShadows;
+		this.topologyVersion = -1;
+	}
+
+	/**
+	 * @return the network this snapshot belongs to
+	 */
+	public NeuralNetwork getNeuralNetwork() {
+		return net;
+	}
+
+	/**
+	 * @return whether the synapse shadows are stored as well, e.g. the step
+	 *         sizes of Resilient Backpropagation.
+	 */
+	public boolean isIncludingShadows() {
+		return includingShadows;
+	}
+
+	/**
+	 * @return whether the snapshot can be restored, i.e. it has been taken and
+	 *         the topology of the network has not changed since.
+	 */
+	public boolean isRestorable() {
+		return topologyVersion == net.topologyVersion;
+	}
+}
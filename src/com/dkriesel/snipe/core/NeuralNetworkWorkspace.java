@@ -0,0 +1,304 @@
+package com.dkriesel.snipe.core;
+
+import java.util.Arrays;
+
+/**
+ * Holds the temporary arrays a NeuralNetwork needs during propagation and
+ * training, so that they are allocated once and then filled in place by
+ * every following call instead of being allocated anew in each call or
+ * training run. This way, steady-state training loops do not produce any
+ * garbage.
+ *
+ * <p>
+ * A workspace belongs to exactly one neural network and is created by it on
+ * demand. Its arrays are sized by the network topology, so the network drops
+ * its workspace whenever the topology is changed. The arrays are allocated
+ * lazily, so only those are created that the used methods actually need. As
+ * the network state itself, a workspace must not be used by several threads
+ * at the same time.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class NeuralNetworkWorkspace {
+
+	protected final NeuralNetwork net;
+
+	// propagation
+	protected double[] output;
+	protected double[] blockNetInputs;
+	protected double[] blockActivations;
+	protected double[] recurrentActivations;
+
+	// gradient descent
+	protected double[] delta;
+	protected double[] derivatives;
+	protected double[][] gradients;
+	protected double[][] initialGradients;
+	protected double[] compactGradients;
+	protected double[] compactInitialGradients;
+	protected double[] compactLearningRates;
+	protected double[] compactStoredGradients;
+	protected double[] compactLastUpdates;
+	protected double[] compactVelocities;
+	protected double[] compactSquaredGradients;
+	protected double[][] batchInputs;
+	protected double[][] batchDesiredOutputs;
+
+	// parallel gradient descent, one entry per chunk
+	protected PropagationContext[] chunkContexts;
+	protected double[][] chunkDeltas;
+	protected double[][] chunkGradients;
+	protected double[][] chunkSquaredGradients;
+
+	/**
+	 * Creates an empty workspace for the given network.
+	 *
+	 * @param net
+	 *            the network the workspace belongs to
+	 */
+	protected NeuralNetworkWorkspace(NeuralNetwork net) {
+		this.net = net;
+	}
+
+	/**
+	 * @return an array of the length of the output vector
+	 */
+	protected double[] getOutput() {
+		if (output == null) {
+			output = new double[net.getDescriptor().countOutputNeurons()];
+		}
+		return output;
+	}
+
+	/**
+	 * @return array of length (NEURONS+1)*PROPAGATION_BLOCK_SIZE for the net
+	 *         inputs of a block of samples
+	 */
+	protected double[] getBlockNetInputs() {
+		if (blockNetInputs == null) {
+			blockNetInputs = new double[(net.countNeurons() + 1)
+					* NeuralNetwork.PROPAGATION_BLOCK_SIZE];
+		}
+		return blockNetInputs;
+	}
+
+	/**
+	 * @return array of length (NEURONS+1)*PROPAGATION_BLOCK_SIZE for the
+	 *         activations of a block of samples
+	 */
+	protected double[] getBlockActivations() {
+		if (blockActivations == null) {
+			blockActivations = new double[(net.countNeurons() + 1)
+					* NeuralNetwork.PROPAGATION_BLOCK_SIZE];
+		}
+		return blockActivations;
+	}
+
+	/**
+	 * @return array of length NEURONS+1 for the second activation buffer of
+	 *         normal mode propagation
+	 */
+	protected double[] getRecurrentActivations() {
+		if (recurrentActivations == null) {
+			recurrentActivations = new double[net.countNeurons() + 1];
+		}
+		return recurrentActivations;
+	}
+
+	/**
+	 * @return array of length NEURONS+1 for the deltas of gradient descent
+	 */
+	protected double[] getDelta() {
+		if (delta == null) {
+			delta = new double[net.countNeurons() + 1];
+		}
+		return delta;
+	}
+
+	/**
+	 * @return array of length NEURONS+1 for the derivatives of the neuron
+	 *         behaviors
+	 */
+	protected double[] getDerivatives() {
+		if (derivatives == null) {
+			derivatives = new double[net.countNeurons() + 1];
+		}
+		return derivatives;
+	}
+
+	/**
+	 * @return a shadow sized array for gradients, filled with zeros.
+	 */
+	protected double[][] getGradientsCleared() {
+		if (gradients == null) {
+			gradients = net.createShadowUnmanaged();
+		} else {
+			for (int i = 0; i < gradients.length; i++) {
+				Arrays.fill(gradients[i], 0);
+			}
+		}
+		return gradients;
+	}
+
+	/**
+	 * @return a second shadow sized array for gradients, not cleared.
+	 */
+	protected double[][] getInitialGradients() {
+		if (initialGradients == null) {
+			initialGradients = net.createShadowUnmanaged();
+		}
+		return initialGradients;
+	}
+
+	/**
+	 * @return a compact shadow sized array for gradients, filled with zeros.
+	 */
+	protected double[] getCompactGradientsCleared() {
+		if (compactGradients == null) {
+			compactGradients = net.createShadowCompactUnmanaged();
+		} else {
+			Arrays.fill(compactGradients, 0);
+		}
+		return compactGradients;
+	}
+
+	/**
+	 * @return a second compact shadow sized array for gradients, not cleared.
+	 */
+	protected double[] getCompactInitialGradients() {
+		if (compactInitialGradients == null) {
+			compactInitialGradients = net.createShadowCompactUnmanaged();
+		}
+		return compactInitialGradients;
+	}
+
+	/**
+	 * @return a compact shadow sized array for Rprop learning rates, not
+	 *         cleared.
+	 */
+	protected double[] getCompactLearningRates() {
+		if (compactLearningRates == null) {
+			compactLearningRates = net.createShadowCompactUnmanaged();
+		}
+		return compactLearningRates;
+	}
+
+	/**
+	 * @return a compact shadow sized array for stored Rprop gradients, not
+	 *         cleared.
+	 */
+	protected double[] getCompactStoredGradients() {
+		if (compactStoredGradients == null) {
+			compactStoredGradients = net.createShadowCompactUnmanaged();
+		}
+		return compactStoredGradients;
+	}
+
+	/**
+	 * @return a compact shadow sized array for last Rprop weight updates, not
+	 *         cleared.
+	 */
+	protected double[] getCompactLastUpdates() {
+		if (compactLastUpdates == null) {
+			compactLastUpdates = net.createShadowCompactUnmanaged();
+		}
+		return compactLastUpdates;
+	}
+
+	/**
+	 * @return a compact shadow sized array for momentum velocities, not
+	 *         cleared.
+	 */
+	protected double[] getCompactVelocities() {
+		if (compactVelocities == null) {
+			compactVelocities = net.createShadowCompactUnmanaged();
+		}
+		return compactVelocities;
+	}
+
+	/**
+	 * @return a compact shadow sized array for the sums of squared gradients,
+	 *         filled with zeros.
+	 */
+	protected double[] getCompactSquaredGradientsCleared() {
+		if (compactSquaredGradients == null) {
+			compactSquaredGradients = net.createShadowCompactUnmanaged();
+		} else {
+			Arrays.fill(compactSquaredGradients, 0);
+		}
+		return compactSquaredGradients;
+	}
+
+	/**
+	 * @param batchSize
+	 * @return an array for references to the inputs of a mini-batch
+	 */
+	protected double[][] getBatchInputs(int batchSize) {
+		if (batchInputs == null || batchInputs.length != batchSize) {
+			batchInputs = new double[batchSize][];
+		}
+		return batchInputs;
+	}
+
+	/**
+	 * @param batchSize
+	 * @return an array for references to the desired outputs of a mini-batch
+	 */
+	protected double[][] getBatchDesiredOutputs(int batchSize) {
+		if (batchDesiredOutputs == null
+				|| batchDesiredOutputs.length != batchSize) {
+			batchDesiredOutputs = new double[batchSize][];
+		}
+		return batchDesiredOutputs;
+	}
+
+	/**
+	 * Makes sure there are propagation contexts, delta arrays and compact
+	 * gradient arrays for the given number of chunks.
+	 *
+	 * @param chunks
+	 *            the number of chunks
+	 */
+	protected void ensureChunks(int chunks) {
+		if (chunkContexts != null && chunkContexts.length == chunks) {
+			return;
+		}
+		chunkContexts = new PropagationContext[chunks];
+		chunkDeltas = new double[chunks][];
+		chunkGradients = new double[chunks][];
+		chunkSquaredGradients = null;
+		for (int c = 0; c < chunks; c++) {
+			chunkContexts[c] = new PropagationContext(net);
+			chunkDeltas[c] = new double[net.countNeurons() + 1];
+			chunkGradients[c] = net.createShadowCompactUnmanaged();
+		}
+	}
+
+	/**
+	 * Drops the propagation contexts and arrays of the chunks, so the next
+	 * call of ensureChunks creates them anew. This is needed after neuron
+	 * behaviors of the network were changed, since each propagation context
+	 * keeps the behaviors the network had when it was created.
+	 */
+	protected void dropChunks() {
+		chunkContexts = null;
+		chunkDeltas = null;
+		chunkGradients = null;
+		chunkSquaredGradients = null;
+	}
+
+	/**
+	 * Makes sure there are compact arrays for the sums of squared gradients
+	 * for the chunks created by the last call of ensureChunks.
+	 */
+	protected void ensureChunkSquaredGradients() {
+		if (chunkSquaredGradients != null) {
+			return;
+		}
+		chunkSquaredGradients = new double[chunkContexts.length][];
+		for (int c = 0; c < chunkContexts.length; c++) {
+			chunkSquaredGradients[c] = net.createShadowCompactUnmanaged();
+		}
+	}
+}
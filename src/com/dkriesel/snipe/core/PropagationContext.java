@@ -0,0 +1,137 @@
+package com.dkriesel.snipe.core;
+
+import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
+
+/**
+ * Holds the propagation state (net inputs and activations of all neurons) of
+ * one caller of a NeuralNetwork, so that several threads can propagate data
+ * through one and the same network at the same time without locks or clones.
+ * A context is created by NeuralNetwork.createPropagationContext() and then
+ * passed to the propagate methods taking a context; those methods only read
+ * the synaptic weights and write into the context, leaving the state of the
+ * network itself untouched.
+ *
+ * <p>
+ * Each thread has to use its own context. Neuron behaviors that need a
+ * dedicated instance per neuron (like leaky integrators, which keep state)
+ * get a dedicated instance per context as well, while the state of those
+ * implementing StatefulNeuronBehavior is kept in the activations of the
+ * context. As long as any thread propagates using a context, the network
+ * must not be changed, neither its topology nor its weights; after a
+ * topology change, new contexts have to be created.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class PropagationContext {
+
+	protected final NeuralNetwork net;
+	protected final double[] activations;
+	protected final double[] netInputs;
+	protected final NeuronBehavior[] neuronBehaviors;
+
+	// block arrays for batch propagation, allocated on demand
+	protected double[] blockNetInputs;
+	protected double[] blockActivations;
+
+	// second activation buffer for normal mode propagation, allocated on
+	// demand
+	protected double[] recurrentActivations;
+
+	/**
+	 * Creates a context for the given network, with all net inputs and
+	 * activations zero.
+	 *
+	 * @param net
+	 *            the network the context belongs to
+	 */
+	protected PropagationContext(NeuralNetwork net) {
+		this.net = net;
+		this.activations = new double[net.countNeurons() + 1];
+		this.netInputs = new double[net.countNeurons() + 1];
+		this.neuronBehaviors = new NeuronBehavior[net.neuronBehaviors.length];
+		for (int i = 0; i < neuronBehaviors.length; i++) {
+			NeuronBehavior behavior = net.neuronBehaviors[i];
+			if (behavior != null && behavior.needsDedicatedInstancePerNeuron()) {
+				neuronBehaviors[i] = behavior.getDedicatedInstance();
+			} else {
+				neuronBehaviors[i] = behavior;
+			}
+		}
+	}
+
+	/**
+	 * @return the network this context belongs to
+	 */
+	public NeuralNetwork getNeuralNetwork() {
+		return net;
+	}
+
+	/**
+	 * Returns the activation of the given neuron as left by the last
+	 * propagation using this context.
+	 *
+	 * @param neuron
+	 * @return the activation of the neuron
+	 */
+	public double getActivation(int neuron) {
+		return activations[neuron];
+	}
+
+	/**
+	 * Returns the net input of the given neuron as left by the last
+	 * propagation using this context.
+	 *
+	 * @param neuron
+	 * @return the net input of the neuron
+	 */
+	public double getNetInput(int neuron) {
+		return netInputs[neuron];
+	}
+
+	/**
+	 * Sets all activations and net inputs of this context to zero, which is
+	 * only relevant for networks with recurrent synapses.
+	 */
+	public void reset() {
+		for (int i = 1; i < activations.length; i++) {
+			activations[i] = 0;
+			netInputs[i] = 0;
+		}
+	}
+
+	/**
+	 * @return array of length (NEURONS+1)*PROPAGATION_BLOCK_SIZE for the net
+	 *         inputs of a block of samples
+	 */
+	protected double[] getBlockNetInputs() {
+		if (blockNetInputs == null) {
+			blockNetInputs = new double[activations.length
+					* NeuralNetwork.PROPAGATION_BLOCK_SIZE];
+		}
+		return blockNetInputs;
+	}
+
+	/**
+	 * @return array of length (NEURONS+1)*PROPAGATION_BLOCK_SIZE for the
+	 *         activations of a block of samples
+	 */
+	protected double[] getBlockActivations() {
+		if (blockActivations == null) {
+			blockActivations = new double[activations.length
+					* NeuralNetwork.PROPAGATION_BLOCK_SIZE];
+		}
+		return blockActivations;
+	}
+
+	/**
+	 * @return array of length NEURONS+1 for the second activation buffer of
+	 *         normal mode propagation
+	 */
+	protected double[] getRecurrentActivations() {
+		if (recurrentActivations == null) {
+			recurrentActivations = new double[activations.length];
+		}
+		return recurrentActivations;
+	}
+}
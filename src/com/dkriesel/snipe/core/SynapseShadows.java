@@ -0,0 +1,333 @@
+package com.dkriesel.snipe.core;
+
+import java.io.Serializable;
+import java.util.TreeMap;
+
+/**
+ * Manages the shadows of a NeuralNetwork, i.e. the additional per synapse
+ * values learning rules store alongside the weights, like the gradients and
+ * learning rates of Resilient Backpropagation. A shadow is a double[][] array
+ * aligned with the predecessor weight arrays of the network: index [j][k] of
+ * a shadow shadows the synapse whose weight is stored at
+ * predecessorWeights[j][k].
+ *
+ * <p>
+ * Shadows are addressed by integer slots instead of names, so a learning rule
+ * gets its shadow by a single array access. The first slots are reserved for
+ * the learning rules of the network, which address them by constants, while
+ * user shadows get the next free slot when they are created. Only the name of
+ * a user shadow is looked up in a map. A shadow is allocated the first time it
+ * is needed. Until then, and after it has been removed, its slot just holds
+ * null, so unused shadows take no memory and are skipped when the topology
+ * changes. Reserving a slot for another learning rule therefore costs nothing
+ * for networks that do not use it.
+ *
+ * <p>
+ * The network tells its shadows about every topological change using the
+ * methods below, which adapt all allocated shadows the same way the weight
+ * arrays are adapted. Values of new synapses are initialized with 0.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class SynapseShadows implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected final int numberOfReservedSlots;
+	protected double[][][] slots;
+	protected TreeMap<String, Integer> userSlots = new TreeMap<String, Integer>();
+
+	/**
+	 * Creates an empty shadow registry.
+	 *
+	 * @param numberOfReservedSlots
+	 *            the number of slots reserved for the learning rules of the
+	 *            network, user shadows get slots from this number on.
+	 */
+	protected SynapseShadows(int numberOfReservedSlots) {
+		this.numberOfReservedSlots = numberOfReservedSlots;
+		slots = new double[numberOfReservedSlots][][];
+	}
+
+	/**
+	 * Returns the shadow in the given slot in O(1).
+	 *
+	 * @param slot
+	 *            the slot
+	 * @return the shadow, or null if none is allocated in the slot
+	 */
+	protected double[][] get(int slot) {
+		if (slot >= slots.length) {
+			return null;
+		}
+		return slots[slot];
+	}
+
+	/**
+	 * Puts a shadow into the given slot in O(1). If the slot is already
+	 * occupied, an IllegalArgumentException is thrown, so shadows can not be
+	 * overwritten accidentally.
+	 *
+	 * @param slot
+	 *            the slot
+	 * @param shadow
+	 *            the shadow, aligned with the predecessor weight arrays
+	 */
+	protected void put(int slot, double[][] shadow) {
+		if (get(slot) != null) {
+			throw new IllegalArgumentException("Synapse shadow slot " + slot
+					+ " is already occupied.");
+		}
+		if (slot >= slots.length) {
+			double[][][] newSlots = new double[slot + 1][][];
+			System.arraycopy(slots, 0, newSlots, 0, slots.length);
+			slots = newSlots;
+		}
+		slots[slot] = shadow;
+	}
+
+	/**
+	 * Frees the given slot in O(1). The shadow in it is no longer maintained
+	 * if topology changes.
+	 *
+	 * @param slot
+	 *            the slot
+	 */
+	protected void remove(int slot) {
+		if (slot < slots.length) {
+			slots[slot] = null;
+		}
+	}
+
+	/**
+	 * Frees all slots, including the ones of user shadows.
+	 */
+	protected void clear() {
+		slots = new double[numberOfReservedSlots][][];
+		userSlots.clear();
+	}
+
+	/**
+	 * Returns the slot of the user shadow with the given key in
+	 * O(log(NUMBEROFUSERSHADOWS)).
+	 *
+	 * @param key
+	 *            the user shadow key
+	 * @return the slot, or -1 if no user shadow with this key exists
+	 */
+	protected int getUserSlot(String key) {
+		Integer slot = userSlots.get(key);
+		if (slot == null) {
+			return -1;
+		}
+		return slot;
+	}
+
+	/**
+	 * Assigns the lowest free slot behind the reserved ones to a new user
+	 * shadow key. If the key is already assigned, an IllegalArgumentException
+	 * is thrown.
+	 *
+	 * @param key
+	 *            the user shadow key
+	 * @return the slot assigned to the key
+	 */
+	protected int addUserSlot(String key) {
+		if (userSlots.containsKey(key)) {
+			throw new IllegalArgumentException("User Synapse shadow key \""
+					+ key + "\" already exists.");
+		}
+		int slot = numberOfReservedSlots;
+		while (userSlots.containsValue(slot) || get(slot) != null) {
+			slot++;
+		}
+		userSlots.put(key, slot);
+		return slot;
+	}
+
+	/**
+	 * Frees the slot of the user shadow with the given key, if existent.
+	 *
+	 * @param key
+	 *            the user shadow key
+	 */
+	protected void removeUserSlot(String key) {
+		Integer slot = userSlots.remove(key);
+		if (slot != null) {
+			remove(slot);
+		}
+	}
+
+	/**
+	 * Adapts all shadows to a new synapse stored at the given position of the
+	 * predecessor array of neuron j, with value 0. Effort is O(J_in) per
+	 * allocated shadow.
+	 *
+	 * @param j
+	 *            the end neuron of the new synapse
+	 * @param position
+	 *            the position of the new synapse in the predecessor array
+	 */
+	protected void insertSynapse(int j, int position) {
+		for (int slot = 0; slot < slots.length; slot++) {
+			double[][] shadow = slots[slot];
+			if (shadow != null) {
+				double[] newShadowPart = new double[shadow[j].length + 1];
+				System.arraycopy(shadow[j], 0, newShadowPart, 0, position);
+				System.arraycopy(shadow[j], position, newShadowPart,
+						position + 1, shadow[j].length - position);
+				shadow[j] = newShadowPart;
+			}
+		}
+	}
+
+	/**
+	 * Adapts all shadows to the removal of the synapse stored at the given
+	 * position of the predecessor array of neuron j. Effort is O(J_in) per
+	 * allocated shadow.
+	 *
+	 * @param j
+	 *            the end neuron of the removed synapse
+	 * @param position
+	 *            the former position of the synapse in the predecessor array
+	 */
+	protected void removeSynapse(int j, int position) {
+		for (int slot = 0; slot < slots.length; slot++) {
+			double[][] shadow = slots[slot];
+			if (shadow != null) {
+				double[] newShadowPart = new double[shadow[j].length - 1];
+				System.arraycopy(shadow[j], 0, newShadowPart, 0, position);
+				System.arraycopy(shadow[j], position + 1, newShadowPart,
+						position, newShadowPart.length - position);
+				shadow[j] = newShadowPart;
+			}
+		}
+	}
+
+	/**
+	 * Adapts all shadows to a rebuilt predecessor array of neuron j. Effort
+	 * is O(length) per allocated shadow.
+	 *
+	 * @param j
+	 *            the neuron whose predecessor array was rebuilt
+	 * @param oldPositions
+	 *            for each position in the new predecessor array, the position
+	 *            of the same synapse in the old one, or -1 for new synapses
+	 * @param length
+	 *            the length of the new predecessor array
+	 */
+	protected void remapSynapses(int j, int[] oldPositions, int length) {
+		for (int slot = 0; slot < slots.length; slot++) {
+			double[][] shadow = slots[slot];
+			if (shadow != null) {
+				double[] newShadowPart = new double[length];
+				for (int idx = 0; idx < length; idx++) {
+					if (oldPositions[idx] >= 0) {
+						newShadowPart[idx] = shadow[j][oldPositions[idx]];
+					}
+				}
+				shadow[j] = newShadowPart;
+			}
+		}
+	}
+
+	/**
+	 * Adapts all shadows to a new neuron without synapses at the given
+	 * position. Effort is O(NEURONS) per allocated shadow.
+	 *
+	 * @param position
+	 *            the index of the new neuron
+	 */
+	protected void insertNeuron(int position) {
+		for (int slot = 0; slot < slots.length; slot++) {
+			double[][] shadow = slots[slot];
+			if (shadow != null) {
+				double[][] newShadow = new double[shadow.length + 1][];
+				System.arraycopy(shadow, 0, newShadow, 0, position);
+				System.arraycopy(shadow, position, newShadow, position + 1,
+						shadow.length - position);
+				newShadow[position] = new double[0];
+				slots[slot] = newShadow;
+			}
+		}
+	}
+
+	/**
+	 * Adapts all shadows to the removal of the neuron at the given position,
+	 * whose incoming synapses have to be removed from the shadows before.
+	 * Effort is O(NEURONS) per allocated shadow.
+	 *
+	 * @param position
+	 *            the former index of the neuron
+	 */
+	protected void removeNeuron(int position) {
+		for (int slot = 0; slot < slots.length; slot++) {
+			double[][] shadow = slots[slot];
+			if (shadow != null) {
+				double[][] newShadow = new double[shadow.length - 1][];
+				System.arraycopy(shadow, 0, newShadow, 0, position);
+				System.arraycopy(shadow, position + 1, newShadow, position,
+						newShadow.length - position);
+				slots[slot] = newShadow;
+			}
+		}
+	}
+
+	/**
+	 * Overwrites the given registry, which belongs to a network of the same
+	 * topology, with the shadows of this one. Shadow arrays of the target are
+	 * reused where they exist, shadows missing in this registry are removed
+	 * from the target.
+	 *
+	 * @param target
+	 *            the registry to overwrite
+	 */
+	protected void copyInto(SynapseShadows target) {
+		if (target.slots.length < slots.length) {
+			double[][][] newSlots = new double[slots.length][][];
+			System.arraycopy(target.slots, 0, newSlots, 0, target.slots.length);
+			target.slots = newSlots;
+		}
+		for (int slot = 0; slot < target.slots.length; slot++) {
+			double[][] shadow = get(slot);
+			if (shadow == null) {
+				target.slots[slot] = null;
+				continue;
+			}
+			double[][] targetShadow = target.slots[slot];
+			if (targetShadow == null) {
+				targetShadow = new double[shadow.length][];
+				for (int i = 0; i < shadow.length; i++) {
+					targetShadow[i] = new double[shadow[i].length];
+				}
+				target.slots[slot] = targetShadow;
+			}
+			for (int i = 0; i < shadow.length; i++) {
+				System.arraycopy(shadow[i], 0, targetShadow[i], 0,
+						shadow[i].length);
+			}
+		}
+		target.userSlots.clear();
+		target.userSlots.putAll(userSlots);
+	}
+
+	/**
+	 * @return a deep copy of the registry and all its shadows.
+	 */
+	protected SynapseShadows copy() {
+		SynapseShadows copy = new SynapseShadows(numberOfReservedSlots);
+		copy.slots = new double[slots.length][][];
+		for (int slot = 0; slot < slots.length; slot++) {
+			double[][] shadow = slots[slot];
+			if (shadow != null) {
+				copy.slots[slot] = new double[shadow.length][];
+				for (int i = 0; i < shadow.length; i++) {
+					copy.slots[slot][i] = shadow[i].clone();
+				}
+			}
+		}
+		copy.userSlots.putAll(userSlots);
+		return copy;
+	}
+}
@@ -0,0 +1,61 @@
+package com.dkriesel.snipe.neuronbehavior;
+
+/**
+ * Extends the neuron behavior interface by methods that evaluate the
+ * activation function or its derivative for a whole range of values at once.
+ *
+ * <p>
+ * Propagation and training methods apply the neuron behavior of a layer to all
+ * neurons of the layer, or the neuron behavior of a neuron to all samples of
+ * a block, in one go. Calling computeActivation once per value means one
+ * virtual call per value, which the virtual machine cannot inline if
+ * different behaviors are used in the same program. A bulk method is called
+ * once per range instead, and its loop only contains the function itself,
+ * which the virtual machine can inline and optimize.
+ *
+ * <p>
+ * Implementing this interface is optional. Neuron behaviors that only
+ * implement NeuronBehavior are evaluated value by value, see the static
+ * methods of NeuronBehaviors. Bulk methods must compute exactly the same
+ * values as the scalar ones, in the order of ascending indices, so that
+ * networks behave the same whichever way their behaviors are evaluated.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public interface BulkNeuronBehavior extends NeuronBehavior {
+
+	/**
+	 * Sets result[k] to computeActivation(x[k]) for all k from index from
+	 * (inclusive) to index to (exclusive). x and result may be the same
+	 * array.
+	 *
+	 * @param x
+	 *            usually the net inputs
+	 * @param result
+	 *            the array to write the activations into
+	 * @param from
+	 *            the first index
+	 * @param to
+	 *            the index after the last one
+	 */
+	public void computeActivations(double[] x, double[] result, int from,
+			int to);
+
+	/**
+	 * Sets result[k] to computeDerivative(x[k]) for all k from index from
+	 * (inclusive) to index to (exclusive). x and result may be the same
+	 * array.
+	 *
+	 * @param x
+	 *            usually the net inputs
+	 * @param result
+	 *            the array to write the derivatives into
+	 * @param from
+	 *            the first index
+	 * @param to
+	 *            the index after the last one
+	 */
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to);
+}
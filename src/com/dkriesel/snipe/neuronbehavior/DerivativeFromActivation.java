@@ -0,0 +1,52 @@
+package com.dkriesel.snipe.neuronbehavior;
+
+/**
+ * Extends the neuron behavior interface by methods that compute the first
+ * derivative of the activation function from the activation instead of the
+ * net input, like 1-a*a for the tangens hyperbolicus or a*(1-a) for the Fermi
+ * function.
+ *
+ * <p>
+ * Gradient training methods need the derivative at the net input of every
+ * neuron right after the sample was propagated, when the activation of the
+ * neuron is known anyway. For activation functions whose derivative can be
+ * written in terms of the activation, this saves evaluating the (usually
+ * transcendental) function a second time. The training methods of SNIPE use
+ * these methods whenever a neuron behavior implements this interface, see
+ * the static methods of NeuronBehaviors.
+ *
+ * <p>
+ * Implementing this interface is optional, and only sensible for neuron
+ * behaviors without internal state, since the activation must be the one
+ * computeActivation returns for the net input in question. The results must
+ * be the same as those of computeDerivative, except for rounding.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public interface DerivativeFromActivation extends NeuronBehavior {
+
+	/**
+	 * @param activation
+	 *            the activation value computeActivation returned for some x
+	 * @return the first derivative of the activation function at x.
+	 */
+	public double computeDerivativeFromActivation(double activation);
+
+	/**
+	 * Sets result[k] to computeDerivativeFromActivation(activations[k]) for
+	 * all k from index from (inclusive) to index to (exclusive). activations
+	 * and result may be the same array.
+	 *
+	 * @param activations
+	 *            the activation values
+	 * @param result
+	 *            the array to write the derivatives into
+	 * @param from
+	 *            the first index
+	 * @param to
+	 *            the index after the last one
+	 */
+	public void computeDerivativesFromActivations(double[] activations,
+			double[] result, int from, int to);
+}
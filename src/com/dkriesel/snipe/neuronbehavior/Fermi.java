@@ -9,7 +9,8 @@ package com.dkriesel.snipe.neuronbehavior;
  * @author David Kriesel / dkriesel.com
  *
  */
-public class Fermi implements NeuronBehavior{
+public class Fermi implements BulkNeuronBehavior,
+		DerivativeFromActivation{
 	
 	private static final long serialVersionUID = 1L;
 
@@ -27,6 +28,37 @@ public class Fermi implements NeuronBehavior{
 		return result;
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			result[k] = 1 / (1 + Math.pow(Math.E, (-x[k])));
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			double v = 1 / (1 + Math.pow(Math.E, (-x[k])));
+			result[k] = v * (1 - v);
+		}
+	}
+
+	@Override
+	public double computeDerivativeFromActivation(double activation) {
+		return activation * (1 - activation);
+	}
+
+	@Override
+	public void computeDerivativesFromActivations(double[] activations,
+			double[] result, int from, int to) {
+		for (int k = from; k < to; k++) {
+			double v = activations[k];
+			result[k] = v * (1 - v);
+		}
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new Fermi();
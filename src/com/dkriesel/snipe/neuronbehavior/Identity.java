@@ -1,5 +1,7 @@
 package com.dkriesel.snipe.neuronbehavior;
 
+import java.util.Arrays;
+
 /**
  * Implements the Identity Function and its derivative. Note: The
  * getAbsoluteMaximumLocationOfSecondDerivative() function just returns 1 in
@@ -8,7 +10,7 @@ package com.dkriesel.snipe.neuronbehavior;
  * @author David Kriesel / dkriesel.com
  * 
  */
-public class Identity implements NeuronBehavior{
+public class Identity implements BulkNeuronBehavior{
 	private static final long serialVersionUID = 1L;
 	
 	@Override
@@ -21,6 +23,20 @@ public class Identity implements NeuronBehavior{
 		return x;
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		if (x != result) {
+			System.arraycopy(x, from, result, from, to - from);
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		Arrays.fill(result, from, to, 1);
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new Identity();
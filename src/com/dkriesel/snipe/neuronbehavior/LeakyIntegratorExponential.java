@@ -25,7 +25,9 @@ import java.io.Serializable;
  * <p>Usually, x is chosen positive between 0 and 1.
  * 
  * <p>Since last activations are to be cached per neuron, this class needs
- * dedicated instances per neuron.
+ * dedicated instances per neuron. Neural networks propagating one sample at a
+ * time keep the cache in their activation arrays instead (see
+ * StatefulNeuronBehavior).
  * 
  * <p>The functions computeDerivative and
  * getAbsoluteMaximumLocationOfSecondDerivative return Double.NaN.
@@ -33,7 +35,8 @@ import java.io.Serializable;
  * @author David Kriesel / dkriesel.com
  * 
  */
-public class LeakyIntegratorExponential implements NeuronBehavior, Serializable {
+public class LeakyIntegratorExponential implements StatefulNeuronBehavior,
+		Serializable {
 
 
 	private static final long serialVersionUID = 1L;
@@ -63,11 +66,15 @@ public class LeakyIntegratorExponential implements NeuronBehavior, Serializable
 
 	@Override
 	public double computeActivation(double x) {
-		cache *= multiplier;
-		cache += x;
+		cache = computeActivation(x, cache);
 		return cache;
 	}
 
+	@Override
+	public double computeActivation(double x, double formerActivation) {
+		return formerActivation * multiplier + x;
+	}
+
 	@Override
 	public double computeDerivative(double x) {
 		return Double.NaN;
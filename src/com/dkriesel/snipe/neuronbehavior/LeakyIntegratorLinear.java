@@ -18,7 +18,9 @@ import java.io.Serializable;
  * is set to a negative value.
  * 
  * <p>Since last activations are to be cached per neuron, this class needs
- * dedicated instances per neuron.
+ * dedicated instances per neuron. Neural networks propagating one sample at a
+ * time keep the cache in their activation arrays instead (see
+ * StatefulNeuronBehavior).
  * 
  * <p>The functions computeDerivative and
  * getAbsoluteMaximumLocationOfSecondDerivative return Double.NaN.
@@ -26,7 +28,8 @@ import java.io.Serializable;
  * @author David Kriesel / dkriesel.com
  * 
  */
-public class LeakyIntegratorLinear implements NeuronBehavior, Serializable {
+public class LeakyIntegratorLinear implements StatefulNeuronBehavior,
+		Serializable {
 
 	private static final long serialVersionUID = 1L;
 	double cache = 0;
@@ -57,14 +60,19 @@ public class LeakyIntegratorLinear implements NeuronBehavior, Serializable {
 
 	@Override
 	public double computeActivation(double x) {
-		cache += addend;
-		if (cache < 0.0) {
-			cache = 0.0;
-		}
-		cache += x;
+		cache = computeActivation(x, cache);
 		return cache;
 	}
 
+	@Override
+	public double computeActivation(double x, double formerActivation) {
+		double result = formerActivation + addend;
+		if (result < 0.0) {
+			result = 0.0;
+		}
+		return result + x;
+	}
+
 	
 	@Override
 	public double computeDerivative(double x) {
@@ -0,0 +1,253 @@
+package com.dkriesel.snipe.neuronbehavior;
+
+/**
+ * Evaluates arbitrary neuron behaviors for whole ranges of values, using the
+ * bulk methods of those implementing BulkNeuronBehavior and evaluating the
+ * others value by value. Derivatives can also be computed from activations
+ * and net inputs together, which uses the activations for neuron behaviors
+ * implementing DerivativeFromActivation and the net inputs for all others.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class NeuronBehaviors {
+
+	/**
+	 * Computes the activation of a single neuron, passing the former
+	 * activation to neuron behaviors implementing StatefulNeuronBehavior, so
+	 * their state does not have to be kept in the behavior object.
+	 *
+	 * @param behavior
+	 *            the neuron behavior to evaluate
+	 * @param x
+	 *            usually the net input
+	 * @param formerActivation
+	 *            the former activation of the neuron
+	 * @return the activation of the neuron
+	 */
+	public static double computeActivation(NeuronBehavior behavior, double x,
+			double formerActivation) {
+		if (behavior instanceof StatefulNeuronBehavior) {
+			return ((StatefulNeuronBehavior) behavior).computeActivation(x,
+					formerActivation);
+		}
+		return behavior.computeActivation(x);
+	}
+
+	/**
+	 * Sets result[k] to behavior.computeActivation(x[k]) for all k from index
+	 * from (inclusive) to index to (exclusive), in the order of ascending
+	 * indices. x and result may be the same array.
+	 *
+	 * @param behavior
+	 *            the neuron behavior to evaluate
+	 * @param x
+	 *            usually the net inputs
+	 * @param result
+	 *            the array to write the activations into
+	 * @param from
+	 *            the first index
+	 * @param to
+	 *            the index after the last one
+	 */
+	public static void computeActivations(NeuronBehavior behavior,
+			double[] x, double[] result, int from, int to) {
+		if (behavior instanceof BulkNeuronBehavior) {
+			((BulkNeuronBehavior) behavior).computeActivations(x, result,
+					from, to);
+		} else {
+			for (int k = from; k < to; k++) {
+				result[k] = behavior.computeActivation(x[k]);
+			}
+		}
+	}
+
+	/**
+	 * Sets result[k] to behavior.computeDerivative(x[k]) for all k from index
+	 * from (inclusive) to index to (exclusive), in the order of ascending
+	 * indices. x and result may be the same array.
+	 *
+	 * @param behavior
+	 *            the neuron behavior to evaluate
+	 * @param x
+	 *            usually the net inputs
+	 * @param result
+	 *            the array to write the derivatives into
+	 * @param from
+	 *            the first index
+	 * @param to
+	 *            the index after the last one
+	 */
+	public static void computeDerivatives(NeuronBehavior behavior,
+			double[] x, double[] result, int from, int to) {
+		if (behavior instanceof BulkNeuronBehavior) {
+			((BulkNeuronBehavior) behavior).computeDerivatives(x, result,
+					from, to);
+		} else {
+			for (int k = from; k < to; k++) {
+				result[k] = behavior.computeDerivative(x[k]);
+			}
+		}
+	}
+
+	/**
+	 * Sets result[i] to behaviors[i].computeActivation(x[i]) for all neurons i
+	 * from index from (inclusive) to index to (exclusive), in the order of
+	 * ascending indices. Neighboring neurons sharing the same behavior
+	 * instance, like the neurons of a layer usually do, are evaluated in one
+	 * bulk call. Neuron behaviors implementing StatefulNeuronBehavior get
+	 * result[i] as the former activation, so result has to hold the former
+	 * activations and must not be the same array as x.
+	 *
+	 * @param behaviors
+	 *            the neuron behaviors, indexed by neuron
+	 * @param x
+	 *            usually the net inputs, indexed by neuron
+	 * @param result
+	 *            the array to write the activations into
+	 * @param from
+	 *            the first neuron
+	 * @param to
+	 *            the neuron after the last one
+	 */
+	public static void computeActivationsOfNeurons(NeuronBehavior[] behaviors,
+			double[] x, double[] result, int from, int to) {
+		int start = from;
+		while (start < to) {
+			NeuronBehavior behavior = behaviors[start];
+			int end = start + 1;
+			while (end < to && behaviors[end] == behavior) {
+				end++;
+			}
+			if (behavior instanceof StatefulNeuronBehavior) {
+				for (int i = start; i < end; i++) {
+					result[i] = ((StatefulNeuronBehavior) behavior)
+							.computeActivation(x[i], result[i]);
+				}
+			} else {
+				computeActivations(behavior, x, result, start, end);
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * Sets result[i] to behaviors[i].computeDerivative(x[i]) for all neurons i
+	 * from index from (inclusive) to index to (exclusive), in the order of
+	 * ascending indices. Neighboring neurons sharing the same behavior
+	 * instance are evaluated in one bulk call.
+	 *
+	 * @param behaviors
+	 *            the neuron behaviors, indexed by neuron
+	 * @param x
+	 *            usually the net inputs, indexed by neuron
+	 * @param result
+	 *            the array to write the derivatives into
+	 * @param from
+	 *            the first neuron
+	 * @param to
+	 *            the neuron after the last one
+	 */
+	public static void computeDerivativesOfNeurons(NeuronBehavior[] behaviors,
+			double[] x, double[] result, int from, int to) {
+		int start = from;
+		while (start < to) {
+			NeuronBehavior behavior = behaviors[start];
+			int end = start + 1;
+			while (end < to && behaviors[end] == behavior) {
+				end++;
+			}
+			computeDerivatives(behavior, x, result, start, end);
+			start = end;
+		}
+	}
+
+	/**
+	 * Computes the first derivative of the given neuron behavior at the given
+	 * net input, using the given activation if the behavior implements
+	 * DerivativeFromActivation.
+	 *
+	 * @param behavior
+	 *            the neuron behavior to evaluate
+	 * @param netInput
+	 *            the net input
+	 * @param activation
+	 *            the activation the behavior returned for the net input
+	 * @return the first derivative at the net input
+	 */
+	public static double computeDerivative(NeuronBehavior behavior,
+			double netInput, double activation) {
+		if (behavior instanceof DerivativeFromActivation) {
+			return ((DerivativeFromActivation) behavior)
+					.computeDerivativeFromActivation(activation);
+		}
+		return behavior.computeDerivative(netInput);
+	}
+
+	/**
+	 * Sets result[k] to the first derivative of the given neuron behavior at
+	 * netInputs[k] for all k from index from (inclusive) to index to
+	 * (exclusive), using activations[k] instead if the behavior implements
+	 * DerivativeFromActivation. result may be the same array as netInputs or
+	 * activations.
+	 *
+	 * @param behavior
+	 *            the neuron behavior to evaluate
+	 * @param netInputs
+	 *            the net inputs
+	 * @param activations
+	 *            the activations the behavior returned for the net inputs
+	 * @param result
+	 *            the array to write the derivatives into
+	 * @param from
+	 *            the first index
+	 * @param to
+	 *            the index after the last one
+	 */
+	public static void computeDerivatives(NeuronBehavior behavior,
+			double[] netInputs, double[] activations, double[] result,
+			int from, int to) {
+		if (behavior instanceof DerivativeFromActivation) {
+			((DerivativeFromActivation) behavior)
+					.computeDerivativesFromActivations(activations, result,
+							from, to);
+		} else {
+			computeDerivatives(behavior, netInputs, result, from, to);
+		}
+	}
+
+	/**
+	 * Does the same as computeDerivatives with net inputs and activations for
+	 * all neurons i from index from (inclusive) to index to (exclusive), each
+	 * using its own neuron behavior behaviors[i]. Neighboring neurons sharing
+	 * the same behavior instance are evaluated in one bulk call.
+	 *
+	 * @param behaviors
+	 *            the neuron behaviors, indexed by neuron
+	 * @param netInputs
+	 *            the net inputs, indexed by neuron
+	 * @param activations
+	 *            the activations, indexed by neuron
+	 * @param result
+	 *            the array to write the derivatives into
+	 * @param from
+	 *            the first neuron
+	 * @param to
+	 *            the neuron after the last one
+	 */
+	public static void computeDerivativesOfNeurons(NeuronBehavior[] behaviors,
+			double[] netInputs, double[] activations, double[] result,
+			int from, int to) {
+		int start = from;
+		while (start < to) {
+			NeuronBehavior behavior = behaviors[start];
+			int end = start + 1;
+			while (end < to && behaviors[end] == behavior) {
+				end++;
+			}
+			computeDerivatives(behavior, netInputs, activations, result,
+					start, end);
+			start = end;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.dkriesel.snipe.neuronbehavior;
+
+/**
+ * Extends the neuron behavior interface by a method that computes the
+ * activation of a neuron from its net input and its former activation, for
+ * neuron behaviors whose state is their last activation, like the leaky
+ * integrators.
+ *
+ * <p>
+ * Such behaviors usually keep their state in a field and therefore need a
+ * dedicated instance per neuron. When a NeuralNetwork propagates one sample
+ * at a time, it uses this method instead and passes the former activation of
+ * the neuron out of its own activation array. This way, the state of all
+ * neurons is kept in one flat array next to the other activations instead of
+ * being spread over the neuron behavior objects, the state of a propagation
+ * context is kept separate from the one of the network, and resetting the
+ * activations resets the state as well. The field of the behavior is neither
+ * read nor written in this case.
+ *
+ * <p>
+ * The result must be the one computeActivation(x) returns if the state of the
+ * behavior equals the given former activation.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public interface StatefulNeuronBehavior extends NeuronBehavior {
+
+	/**
+	 * @param x
+	 *            usually the net input
+	 * @param formerActivation
+	 *            the activation this behavior returned for the neuron the last
+	 *            time, or 0 initially
+	 * @return the activation value of the neuron behavior given x and the
+	 *         former activation, which is the new state of the neuron.
+	 */
+	public double computeActivation(double x, double formerActivation);
+}
@@ -7,7 +7,8 @@ package com.dkriesel.snipe.neuronbehavior;
  * @author David Kriesel / dkriesel.com
  *
  */
-public class TangensHyperbolicus implements NeuronBehavior{
+public class TangensHyperbolicus implements BulkNeuronBehavior,
+		DerivativeFromActivation{
 	private static final long serialVersionUID = 1L;
 
 	@Override
@@ -21,6 +22,37 @@ public class TangensHyperbolicus implements NeuronBehavior{
 		return Math.tanh(x);
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			result[k] = Math.tanh(x[k]);
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			double t = Math.tanh(x[k]);
+			result[k] = 1 - (t * t);
+		}
+	}
+
+	@Override
+	public double computeDerivativeFromActivation(double activation) {
+		return 1 - (activation * activation);
+	}
+
+	@Override
+	public void computeDerivativesFromActivations(double[] activations,
+			double[] result, int from, int to) {
+		for (int k = from; k < to; k++) {
+			double a = activations[k];
+			result[k] = 1 - (a * a);
+		}
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new TangensHyperbolicus();
@@ -9,7 +9,8 @@ package com.dkriesel.snipe.neuronbehavior;
  * @author David Kriesel / dkriesel.com
  * 
  */
-public class TangensHyperbolicusLeCun implements NeuronBehavior {
+public class TangensHyperbolicusLeCun implements BulkNeuronBehavior,
+		DerivativeFromActivation {
 	private static final long serialVersionUID = 1L;
 
 	@Override
@@ -33,6 +34,41 @@ public class TangensHyperbolicusLeCun implements NeuronBehavior {
 		return 1;
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			result[k] = 1.7159 * Math.tanh((2.0 / 3.0) * x[k]);
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		double prefactor = 1.7159 * (2.0 / 3.0);
+		for (int k = from; k < to; k++) {
+			double t = Math.tanh((2.0 / 3.0) * x[k]);
+			t = 1 - (t * t);
+			result[k] = t * prefactor;
+		}
+	}
+
+	@Override
+	public double computeDerivativeFromActivation(double activation) {
+		double t = activation / 1.7159;
+		return (1 - (t * t)) * (1.7159 * (2.0 / 3.0));
+	}
+
+	@Override
+	public void computeDerivativesFromActivations(double[] activations,
+			double[] result, int from, int to) {
+		double prefactor = 1.7159 * (2.0 / 3.0);
+		for (int k = from; k < to; k++) {
+			double t = activations[k] / 1.7159;
+			result[k] = (1 - (t * t)) * prefactor;
+		}
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new TangensHyperbolicusLeCun();
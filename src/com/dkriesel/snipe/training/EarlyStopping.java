@@ -0,0 +1,386 @@
+package com.dkriesel.snipe.training;
+
+import java.util.Arrays;
+
+import com.dkriesel.snipe.core.NeuralNetwork;
+import com.dkriesel.snipe.core.NeuralNetworkSnapshot;
+import com.dkriesel.snipe.util.MersenneTwisterFast;
+import com.dkriesel.snipe.util.ParallelExecution;
+
+/**
+ * Trains a network using one of the gradient descent methods of
+ * NeuralNetwork until the error on a validation lesson stops improving,
+ * instead of for a fixed number of runs. After every runsPerEvaluation
+ * training runs, the root mean square error on the validation lesson is
+ * measured in one parallel pass (see ErrorEvaluation). Whenever it improves
+ * on the best error so far by more than minImprovement, the weights are
+ * stored in a snapshot, which reuses its arrays, so no garbage is produced.
+ * After patience evaluations without improvement, training stops and the
+ * best weights are restored, as proposed by [Prechelt98].
+ *
+ * <p>
+ * To save time on large validation lessons, a fixed random subset of the
+ * validation lesson can be used instead (see setValidationSamples). The
+ * subset shares the sample rows of the validation lesson and is drawn once
+ * using the random number generator of the network, so all evaluations are
+ * comparable.
+ *
+ * <p>
+ * Only the weights are stored in the snapshot, not the caches of the training
+ * method like the step sizes of Resilient Backpropagation. The topology of
+ * the network must not be changed while early stopping is used.
+ *
+ * <p>
+ * <b>References</b><br>
+ * [Prechelt98] Lutz Prechelt. Early Stopping - But When? In: Neural Networks:
+ * Tricks of the Trade, LNCS 1524, pages 55-69, Springer, 1998.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class EarlyStopping {
+
+	/**
+	 * A gradient descent method training a network for a given number of
+	 * runs. Use the static methods of EarlyStopping to get the methods of
+	 * NeuralNetwork.
+	 */
+	public interface TrainingMethod {
+
+		/**
+		 * Trains the given network on the given lesson.
+		 *
+		 * @param net
+		 *            the network to train
+		 * @param lesson
+		 *            the lesson to train the network with
+		 * @param runs
+		 *            the number of runs
+		 */
+		public void train(NeuralNetwork net, TrainingSampleLesson lesson,
+				int runs);
+	}
+
+	protected final NeuralNetwork net;
+	protected final TrainingSampleLesson trainingLesson;
+	protected final TrainingSampleLesson validationLesson;
+	protected final TrainingMethod method;
+
+	protected int runsPerEvaluation = 10;
+	protected int patience = 5;
+	protected double minImprovement = 0;
+	protected int validationSamples = 0;
+	protected int chunks = ParallelExecution.countProcessors();
+
+	protected TrainingSampleLesson evaluationLesson;
+	protected NeuralNetworkSnapshot bestWeights;
+	protected double bestError = Double.POSITIVE_INFINITY;
+	protected double lastError = Double.NaN;
+	protected int bestRun = 0;
+	protected int runs = 0;
+	protected int evaluations = 0;
+	protected int evaluationsWithoutImprovement = 0;
+
+	/**
+	 * Creates an early stopping controller for the given network.
+	 *
+	 * @param net
+	 *            the network to train
+	 * @param trainingLesson
+	 *            the lesson to train the network with
+	 * @param validationLesson
+	 *            the lesson to measure the error on, which should not contain
+	 *            samples of the training lesson
+	 * @param method
+	 *            the training method, e.g. resilientBackpropagation(true, 1)
+	 */
+	public EarlyStopping(NeuralNetwork net,
+			TrainingSampleLesson trainingLesson,
+			TrainingSampleLesson validationLesson, TrainingMethod method) {
+		if (net == null || trainingLesson == null || validationLesson == null
+				|| method == null) {
+			throw new IllegalArgumentException(
+					"Network, lessons and training method must not be null.");
+		}
+		this.net = net;
+		this.trainingLesson = trainingLesson;
+		this.validationLesson = validationLesson;
+		this.method = method;
+	}
+
+	/**
+	 * Trains the network until the validation error did not improve for
+	 * patience evaluations, or until the given number of runs is reached, and
+	 * sets the weights to the best ones found. The validation error is
+	 * measured once before training starts. Can be called again, e.g. with a
+	 * larger number of runs or after setPatience, to continue with the best
+	 * weights.
+	 *
+	 * @param maxRuns
+	 *            the maximum number of runs of this call
+	 * @return the number of runs done in this call
+	 */
+	public int train(int maxRuns) {
+		if (evaluations == 0) {
+			evaluate();
+		}
+		int done = 0;
+		while (done < maxRuns && !isStopped()) {
+			int step = Math.min(runsPerEvaluation, maxRuns - done);
+			method.train(net, trainingLesson, step);
+			done += step;
+			runs += step;
+			evaluate();
+		}
+		if (bestWeights != null) {
+			net.restoreSnapshot(bestWeights);
+		}
+		return done;
+	}
+
+	/**
+	 * Measures the validation error and takes a snapshot of the weights if it
+	 * improved.
+	 */
+	protected void evaluate() {
+		lastError = ErrorEvaluation.evaluate(net, getEvaluationLesson(),
+				chunks).getErrorRootMeanSquareSum();
+		evaluations++;
+		if (lastError < bestError - minImprovement) {
+			bestError = lastError;
+			bestRun = runs;
+			evaluationsWithoutImprovement = 0;
+			if (bestWeights == null) {
+				bestWeights = net.createSnapshot(false);
+			} else {
+				net.takeSnapshot(bestWeights);
+			}
+		} else {
+			evaluationsWithoutImprovement++;
+		}
+	}
+
+	/**
+	 * @return the lesson the error is measured on, which is the validation
+	 *         lesson or a fixed random subset of it.
+	 */
+	protected TrainingSampleLesson getEvaluationLesson() {
+		if (evaluationLesson == null) {
+			int samples = validationLesson.countSamples();
+			if (validationSamples <= 0 || validationSamples >= samples) {
+				evaluationLesson = validationLesson;
+			} else {
+				// draw the subset by a partial Fisher-Yates shuffle of the row
+				// references
+				double[][] inputs = validationLesson.getInputs().clone();
+				double[][] desiredOutputs = validationLesson
+						.getDesiredOutputs().clone();
+				MersenneTwisterFast random = net.getRandom();
+				for (int i = 0; i < validationSamples; i++) {
+					int j = i + random.nextInt(samples - i);
+					double[] tempInput = inputs[i];
+					inputs[i] = inputs[j];
+					inputs[j] = tempInput;
+					double[] tempDesiredOutput = desiredOutputs[i];
+					desiredOutputs[i] = desiredOutputs[j];
+					desiredOutputs[j] = tempDesiredOutput;
+				}
+				evaluationLesson = TrainingSampleLesson.createSharing(
+						Arrays.copyOf(inputs, validationSamples),
+						Arrays.copyOf(desiredOutputs, validationSamples));
+			}
+		}
+		return evaluationLesson;
+	}
+
+	/**
+	 * Trains using trainResilientBackpropagation.
+	 *
+	 * @param improvedRprop
+	 *            If improved Rprop after [Igel2003] shall be used
+	 * @param chunks
+	 *            the number of chunks the gradients are computed in
+	 * @return the training method
+	 */
+	public static TrainingMethod resilientBackpropagation(
+			final boolean improvedRprop, final int chunks) {
+		return new TrainingMethod() {
+			@Override
+			public void train(NeuralNetwork net, TrainingSampleLesson lesson,
+					int runs) {
+				net.trainResilientBackpropagation(lesson, runs, improvedRprop,
+						chunks);
+			}
+		};
+	}
+
+	/**
+	 * Trains using trainBackpropagationOfError. Note that a run of this
+	 * method is a single sample, not a pass over the lesson.
+	 *
+	 * @param eta
+	 *            the learning rate
+	 * @return the training method
+	 */
+	public static TrainingMethod backpropagationOfError(final double eta) {
+		return new TrainingMethod() {
+			@Override
+			public void train(NeuralNetwork net, TrainingSampleLesson lesson,
+					int runs) {
+				net.trainBackpropagationOfError(lesson, runs, eta);
+			}
+		};
+	}
+
+	/**
+	 * Trains using trainBackpropagationOfErrorMiniBatch. Note that a run of
+	 * this method is a single mini-batch, not a pass over the lesson.
+	 *
+	 * @param batchSize
+	 *            the number of samples per mini-batch
+	 * @param eta
+	 *            the learning rate
+	 * @param momentum
+	 *            the momentum
+	 * @param nesterov
+	 *            whether Nesterov momentum shall be used
+	 * @return the training method
+	 */
+	public static TrainingMethod backpropagationOfErrorMiniBatch(
+			final int batchSize, final double eta, final double momentum,
+			final boolean nesterov) {
+		return new TrainingMethod() {
+			@Override
+			public void train(NeuralNetwork net, TrainingSampleLesson lesson,
+					int runs) {
+				net.trainBackpropagationOfErrorMiniBatch(lesson, runs,
+						batchSize, eta, momentum, nesterov);
+			}
+		};
+	}
+
+	/**
+	 * @return whether the validation error did not improve for patience
+	 *         evaluations.
+	 */
+	public boolean isStopped() {
+		return evaluationsWithoutImprovement >= patience;
+	}
+
+	/**
+	 * @return the best validation error measured so far.
+	 */
+	public double getBestError() {
+		return bestError;
+	}
+
+	/**
+	 * @return the validation error measured last, or NaN before training.
+	 */
+	public double getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return the number of runs after which the best validation error was
+	 *         measured.
+	 */
+	public int getBestRun() {
+		return bestRun;
+	}
+
+	/**
+	 * @return the number of runs done in all calls of train.
+	 */
+	public int countRuns() {
+		return runs;
+	}
+
+	/**
+	 * @return the number of validation error measurements.
+	 */
+	public int countEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Sets the number of training runs between two measurements of the
+	 * validation error. The default is 10.
+	 *
+	 * @param runsPerEvaluation
+	 *            the number of runs, at least 1
+	 */
+	public void setRunsPerEvaluation(int runsPerEvaluation) {
+		if (runsPerEvaluation < 1) {
+			throw new IllegalArgumentException(
+					"At least one run per evaluation is needed.");
+		}
+		this.runsPerEvaluation = runsPerEvaluation;
+	}
+
+	/**
+	 * Sets the number of evaluations without improvement after which training
+	 * stops. The default is 5.
+	 *
+	 * @param patience
+	 *            the number of evaluations, at least 1
+	 */
+	public void setPatience(int patience) {
+		if (patience < 1) {
+			throw new IllegalArgumentException(
+					"Patience has to be at least 1.");
+		}
+		this.patience = patience;
+	}
+
+	/**
+	 * Sets how much the validation error has to fall below the best error so
+	 * far to count as improvement. The default is 0.
+	 *
+	 * @param minImprovement
+	 *            the minimal improvement, at least 0
+	 */
+	public void setMinImprovement(double minImprovement) {
+		if (!(minImprovement >= 0)) {
+			throw new IllegalArgumentException(
+					"Minimal improvement has to be at least 0.");
+		}
+		this.minImprovement = minImprovement;
+	}
+
+	/**
+	 * Sets the number of validation samples the error is measured on, drawn
+	 * at random once. The default is 0, which means all of them. Has to be set
+	 * before training.
+	 *
+	 * @param validationSamples
+	 *            the number of samples, 0 for all
+	 */
+	public void setValidationSamples(int validationSamples) {
+		if (validationSamples < 0) {
+			throw new IllegalArgumentException(
+					"Number of validation samples must not be negative.");
+		}
+		if (evaluations > 0) {
+			throw new IllegalArgumentException(
+					"Validation samples have to be set before training.");
+		}
+		this.validationSamples = validationSamples;
+	}
+
+	/**
+	 * Sets the number of chunks the validation lesson is split into in order
+	 * to measure the error in parallel. The default is the number of available
+	 * processors.
+	 *
+	 * @param chunks
+	 *            the number of chunks, at least 1
+	 */
+	public void setChunks(int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException(
+					"At least one chunk is needed.");
+		}
+		this.chunks = chunks;
+	}
+}
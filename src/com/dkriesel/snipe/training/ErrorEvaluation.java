@@ -0,0 +1,349 @@
+package com.dkriesel.snipe.training;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.dkriesel.snipe.core.NeuralNetwork;
+import com.dkriesel.snipe.core.PropagationContext;
+import com.dkriesel.snipe.util.ParallelExecution;
+
+/**
+ * Measures all errors of ErrorMeasurement, and the classification rate, in a
+ * single pass over a training lesson: Each sample is propagated once and all
+ * errors are accumulated from the same output, whereas calling several
+ * methods of ErrorMeasurement propagates the whole lesson once per method.
+ * The result is an object of this class holding all errors.
+ *
+ * <p>
+ * The samples are propagated in blocks of BLOCK_SIZE samples using
+ * propagateBatch, and the chunks of the parallel version consist of whole
+ * blocks. The partial sums of the blocks are stored in block order and
+ * summed up pairwise at the end. Thus, the errors neither depend on the
+ * number of chunks nor on the number of threads, and the rounding error only
+ * grows logarithmically with the number of samples instead of linearly. In
+ * normal (recurrent) propagation mode, the propagation of a sample depends on
+ * the state left by the former one, so the lesson is always propagated in one
+ * chunk, using the propagation state of the network just like
+ * ErrorMeasurement does.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class ErrorEvaluation {
+
+	/**
+	 * Number of samples propagated at once and summed up to one partial sum.
+	 */
+	public static final int BLOCK_SIZE = 64;
+
+	protected final int samples;
+	protected final int dimensionalityDesiredOutputs;
+	protected final double absoluteSum;
+	protected final double squareSum;
+	protected final double minDesiredOutput;
+	protected final double maxDesiredOutput;
+	protected final int correctClassifications;
+
+	protected ErrorEvaluation(int samples, int dimensionalityDesiredOutputs,
+			double absoluteSum, double squareSum, double minDesiredOutput,
+			double maxDesiredOutput, int correctClassifications) {
+		this.samples = samples;
+		this.dimensionalityDesiredOutputs = dimensionalityDesiredOutputs;
+		this.absoluteSum = absoluteSum;
+		this.squareSum = squareSum;
+		this.minDesiredOutput = minDesiredOutput;
+		this.maxDesiredOutput = maxDesiredOutput;
+		this.correctClassifications = correctClassifications;
+	}
+
+	/**
+	 * Evaluates the given network on all samples of the given lesson, using
+	 * one chunk per available processor. If called by a worker thread of
+	 * ParallelExecution, e.g. from an ObjectiveFunction rated in parallel,
+	 * only one chunk is used, since the other workers are already busy with
+	 * other networks.
+	 *
+	 * @param net
+	 *            the network to evaluate
+	 * @param lesson
+	 *            the lesson to evaluate the network on
+	 * @return the errors of the network
+	 */
+	public static ErrorEvaluation evaluate(NeuralNetwork net,
+			TrainingSampleLesson lesson) {
+		return evaluate(net, lesson, ParallelExecution.isWorkerThread() ? 1
+				: ParallelExecution.countProcessors());
+	}
+
+	/**
+	 * Evaluates the given network on all samples of the given lesson. The
+	 * blocks of samples are split into the given number of chunks, which are
+	 * evaluated in parallel using the thread pool of ParallelExecution, each
+	 * one using its own propagation context. With one chunk, the lesson is
+	 * evaluated in the calling thread, using the propagation state of the
+	 * network. Unless the network may propagate samples in blocks, see
+	 * NeuralNetwork.isBlockPropagationUsable(), one chunk is used. The network
+	 * must not be changed during evaluation.
+	 *
+	 * @param net
+	 *            the network to evaluate
+	 * @param lesson
+	 *            the lesson to evaluate the network on
+	 * @param chunks
+	 *            the number of chunks, at least 1
+	 * @return the errors of the network
+	 */
+	public static ErrorEvaluation evaluate(final NeuralNetwork net,
+			TrainingSampleLesson lesson, int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException("At least one chunk is needed.");
+		}
+		if (lesson.getDimensionalityDesiredOutputs() != net.getDescriptor()
+				.countOutputNeurons()) {
+			throw new IllegalArgumentException(
+					"Desired outputs do not fit the output neurons.");
+		}
+		final double[][] inputs = lesson.getInputs();
+		final double[][] desiredOutputs = lesson.getDesiredOutputs();
+		int blocks = (inputs.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final BlockSums sums = new BlockSums(blocks);
+
+		if (!net.isBlockPropagationUsable()) {
+			chunks = 1;
+		}
+		chunks = Math.max(1, Math.min(chunks, blocks));
+		if (chunks == 1) {
+			sums.evaluate(net, null, inputs, desiredOutputs, 0, blocks);
+		} else {
+			int blocksPerChunk = (blocks + chunks - 1) / chunks;
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(
+					chunks);
+			for (int c = 0; c < chunks; c++) {
+				final int from = Math.min(blocks, c * blocksPerChunk);
+				final int to = Math.min(blocks, from + blocksPerChunk);
+				// also brings the compact mirror up to date
+				final PropagationContext context = net
+						.createPropagationContext();
+				futures.add(ParallelExecution.submit(
+						new Callable<Object>() {
+							@Override
+							public Object call() {
+								sums.evaluate(net, context, inputs,
+										desiredOutputs, from, to);
+								return null;
+							}
+						}));
+			}
+			for (int c = 0; c < chunks; c++) {
+				ParallelExecution.await(futures.get(c));
+			}
+		}
+
+		double minDesiredOutput = Double.MAX_VALUE;
+		double maxDesiredOutput = -Double.MAX_VALUE;
+		int correctClassifications = 0;
+		for (int b = 0; b < blocks; b++) {
+			minDesiredOutput = Math.min(minDesiredOutput,
+					sums.minDesiredOutputs[b]);
+			maxDesiredOutput = Math.max(maxDesiredOutput,
+					sums.maxDesiredOutputs[b]);
+			correctClassifications += sums.correctClassifications[b];
+		}
+		return new ErrorEvaluation(inputs.length,
+				lesson.getDimensionalityDesiredOutputs(), sumPairwise(
+						sums.absoluteSums, 0, blocks), sumPairwise(
+						sums.squareSums, 0, blocks), minDesiredOutput,
+				maxDesiredOutput, correctClassifications);
+	}
+
+	/**
+	 * Sums up the given values from index from (inclusive) to index to
+	 * (exclusive) by recursively summing up both halves, so the rounding error
+	 * grows with O(log(to-from)) instead of O(to-from).
+	 *
+	 * @param values
+	 * @param from
+	 * @param to
+	 * @return the sum
+	 */
+	protected static double sumPairwise(double[] values, int from, int to) {
+		if (to - from <= 2) {
+			double sum = 0;
+			for (int i = from; i < to; i++) {
+				sum += values[i];
+			}
+			return sum;
+		}
+		int middle = (from + to) >>> 1;
+		return sumPairwise(values, from, middle)
+				+ sumPairwise(values, middle, to);
+	}
+
+	/**
+	 * The partial sums of all blocks, each chunk writing only the entries of
+	 * its own blocks.
+	 */
+	protected static class BlockSums {
+
+		protected final double[] absoluteSums;
+		protected final double[] squareSums;
+		protected final double[] minDesiredOutputs;
+		protected final double[] maxDesiredOutputs;
+		protected final int[] correctClassifications;
+
+		protected BlockSums(int blocks) {
+			absoluteSums = new double[blocks];
+			squareSums = new double[blocks];
+			minDesiredOutputs = new double[blocks];
+			maxDesiredOutputs = new double[blocks];
+			correctClassifications = new int[blocks];
+		}
+
+		/**
+		 * Propagates the samples of the blocks from (inclusive) to to
+		 * (exclusive) and stores their partial sums.
+		 *
+		 * @param net
+		 * @param context
+		 *            the propagation context to use, or null to use the
+		 *            propagation state of the network
+		 * @param inputs
+		 * @param desiredOutputs
+		 * @param from
+		 * @param to
+		 */
+		protected void evaluate(NeuralNetwork net, PropagationContext context,
+				double[][] inputs, double[][] desiredOutputs, int from, int to) {
+			int outputNeurons = net.getDescriptor().countOutputNeurons();
+			double[][] blockInputs = new double[BLOCK_SIZE][];
+			double[][] blockOutputs = new double[BLOCK_SIZE][outputNeurons];
+			for (int b = from; b < to; b++) {
+				int first = b * BLOCK_SIZE;
+				int size = Math.min(BLOCK_SIZE, inputs.length - first);
+				if (size < BLOCK_SIZE) {
+					// last block of the lesson
+					blockInputs = new double[size][];
+					double[][] lastOutputs = new double[size][];
+					System.arraycopy(blockOutputs, 0, lastOutputs, 0, size);
+					blockOutputs = lastOutputs;
+				}
+				System.arraycopy(inputs, first, blockInputs, 0, size);
+				if (context == null) {
+					net.propagateBatch(blockInputs, blockOutputs);
+				} else {
+					net.propagateBatch(context, blockInputs, blockOutputs);
+				}
+
+				double absoluteSum = 0;
+				double squareSum = 0;
+				double minDesiredOutput = Double.MAX_VALUE;
+				double maxDesiredOutput = -Double.MAX_VALUE;
+				int correct = 0;
+				for (int s = 0; s < size; s++) {
+					double[] output = blockOutputs[s];
+					double[] desiredOutput = desiredOutputs[first + s];
+					int outputMaximum = 0;
+					int desiredMaximum = 0;
+					for (int j = 0; j < outputNeurons; j++) {
+						double difference = desiredOutput[j] - output[j];
+						absoluteSum += Math.abs(difference);
+						squareSum += difference * difference;
+						if (desiredOutput[j] < minDesiredOutput) {
+							minDesiredOutput = desiredOutput[j];
+						}
+						if (desiredOutput[j] > maxDesiredOutput) {
+							maxDesiredOutput = desiredOutput[j];
+						}
+						if (output[j] > output[outputMaximum]) {
+							outputMaximum = j;
+						}
+						if (desiredOutput[j] > desiredOutput[desiredMaximum]) {
+							desiredMaximum = j;
+						}
+					}
+					if (outputMaximum == desiredMaximum) {
+						correct++;
+					}
+				}
+				absoluteSums[b] = absoluteSum;
+				squareSums[b] = squareSum;
+				minDesiredOutputs[b] = minDesiredOutput;
+				maxDesiredOutputs[b] = maxDesiredOutput;
+				correctClassifications[b] = correct;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of samples evaluated.
+	 */
+	public int countSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return the sum of absolute errors over all samples, see
+	 *         ErrorMeasurement.getErrorAbsoluteSum.
+	 */
+	public double getErrorAbsoluteSum() {
+		return absoluteSum;
+	}
+
+	/**
+	 * @return the sum of euclidean errors over all samples, see
+	 *         ErrorMeasurement.getErrorEuclideanSum. As the euclidean error is
+	 *         computed per output, it equals the sum of absolute errors.
+	 */
+	public double getErrorEuclideanSum() {
+		return absoluteSum;
+	}
+
+	/**
+	 * @return the squared error percentage after Prechelt, see
+	 *         ErrorMeasurement.getErrorSquaredPercentagePrechelt.
+	 */
+	public double getErrorSquaredPercentagePrechelt() {
+		if (samples == 0) {
+			return 0;
+		}
+		return absoluteSum * 100.0
+				* ((maxDesiredOutput - minDesiredOutput)
+						/ (dimensionalityDesiredOutputs * samples));
+	}
+
+	/**
+	 * @return the sum of square errors over all samples, see
+	 *         ErrorMeasurement.getErrorSquareSum.
+	 */
+	public double getErrorSquareSum() {
+		return squareSum;
+	}
+
+	/**
+	 * @return the root mean square error over all samples, see
+	 *         ErrorMeasurement.getErrorRootMeanSquareSum.
+	 */
+	public double getErrorRootMeanSquareSum() {
+		return Math.sqrt(squareSum / dimensionalityDesiredOutputs);
+	}
+
+	/**
+	 * @return the fraction of samples whose largest output is the one with the
+	 *         largest desired output, which is the accuracy for classification
+	 *         lessons. Of equal outputs, the first one counts as the largest.
+	 */
+	public double getClassificationRate() {
+		return (double) correctClassifications / Math.max(1, samples);
+	}
+
+	@Override
+	public String toString() {
+		return "Absolute sum " + getErrorAbsoluteSum() + ", square sum "
+				+ getErrorSquareSum() + ", root mean square "
+				+ getErrorRootMeanSquareSum() + ", squared percentage "
+				+ getErrorSquaredPercentagePrechelt()
+				+ ", classification rate " + getClassificationRate();
+	}
+}
@@ -5,7 +5,9 @@ import com.dkriesel.snipe.core.NeuralNetwork;
 /**
  * 
  * This class contains several methods of error measurement for use in a static
- * way.
+ * way. Each method propagates the whole lesson once in the calling thread. To
+ * measure several errors at once, or to measure in parallel, use
+ * ErrorEvaluation, which propagates each sample once for all errors.
  * 
  * @author David Kriesel / dkriesel.com
  * 
@@ -23,25 +25,7 @@ public class ErrorMeasurement {
 	 */
 	public static double getErrorAbsoluteSum(NeuralNetwork net,
 			TrainingSampleLesson lesson) {
-
-		double[][] inputs = lesson.getInputs();
-		double[][] desiredOutputs = lesson.getDesiredOutputs();
-
-		double error = 0.0;
-
-		for (int i = 0; i < inputs.length; i++) {
-
-			double[] outputs = net.propagate(inputs[i]);
-
-			for (int j = 0; j < outputs.length; j++) {
-				double temp = 0.0;
-				temp = desiredOutputs[i][j] - outputs[j];
-				temp = Math.abs(temp);
-				error += temp;
-			}
-		}
-		return error;
-
+		return ErrorEvaluation.evaluate(net, lesson, 1).getErrorAbsoluteSum();
 	}
 
 	/**
@@ -55,25 +39,7 @@ public class ErrorMeasurement {
 	 */
 	public static double getErrorEuclideanSum(NeuralNetwork net,
 			TrainingSampleLesson lesson) {
-
-		double[][] inputs = lesson.getInputs();
-		double[][] desiredOutputs = lesson.getDesiredOutputs();
-
-		double error = 0.0;
-
-		for (int i = 0; i < inputs.length; i++) {
-
-			double[] outputs = net.propagate(inputs[i]);
-
-			for (int j = 0; j < outputs.length; j++) {
-				double temp = 0.0;
-				temp = desiredOutputs[i][j] - outputs[j];
-				temp = temp * temp;
-				temp = Math.sqrt(temp);
-				error += temp;
-			}
-		}
-		return error;
+		return ErrorEvaluation.evaluate(net, lesson, 1).getErrorEuclideanSum();
 	}
 
 	/**
@@ -94,38 +60,8 @@ public class ErrorMeasurement {
 	 */
 	public static double getErrorSquaredPercentagePrechelt(NeuralNetwork net,
 			TrainingSampleLesson lesson) {
-		double[][] inputs = lesson.getInputs();
-		double[][] desiredOutputs = lesson.getDesiredOutputs();
-
-		double error = 0.0;
-
-		double minValue = Double.MAX_VALUE;
-		double maxValue = Double.MIN_VALUE;
-
-		for (int i = 0; i < inputs.length; i++) {
-
-			double[] outputs = net.propagate(inputs[i]);
-
-			for (int j = 0; j < outputs.length; j++) {
-
-				if (desiredOutputs[i][j] < minValue) {
-					minValue = desiredOutputs[i][j];
-				}
-				if (desiredOutputs[i][j] > maxValue) {
-					maxValue = desiredOutputs[i][j];
-				}
-
-				double temp = 0.0;
-				temp = desiredOutputs[i][j] - outputs[j];
-				temp = temp * temp;
-				temp = Math.sqrt(temp);
-				error += temp;
-			}
-		}
-
-		error *= 100.0 * ((maxValue - minValue) / (lesson
-				.getDimensionalityDesiredOutputs() * lesson.countSamples()));
-		return error;
+		return ErrorEvaluation.evaluate(net, lesson, 1)
+				.getErrorSquaredPercentagePrechelt();
 	}
 
 	/**
@@ -139,26 +75,7 @@ public class ErrorMeasurement {
 	 */
 	public static double getErrorSquareSum(NeuralNetwork net,
 			TrainingSampleLesson lesson) {
-
-		double[][] inputs = lesson.getInputs();
-		double[][] desiredOutputs = lesson.getDesiredOutputs();
-
-		double error = 0.0;
-
-		for (int i = 0; i < inputs.length; i++) {
-
-			double[] outputs = net.propagate(inputs[i]);
-
-			for (int j = 0; j < outputs.length; j++) {
-				double temp = 0.0;
-				temp = desiredOutputs[i][j] - outputs[j];
-				temp = temp * temp;
-				error += temp;
-			}
-		}
-
-		return error;
-
+		return ErrorEvaluation.evaluate(net, lesson, 1).getErrorSquareSum();
 	}
 
 	/**
@@ -172,27 +89,8 @@ public class ErrorMeasurement {
 	 */
 	public static double getErrorRootMeanSquareSum(NeuralNetwork net,
 			TrainingSampleLesson lesson) {
-
-		double[][] inputs = lesson.getInputs();
-		double[][] desiredOutputs = lesson.getDesiredOutputs();
-
-		double error = 0.0;
-
-		for (int i = 0; i < inputs.length; i++) {
-
-			double[] outputs = net.propagate(inputs[i]);
-
-			for (int j = 0; j < outputs.length; j++) {
-				double temp = 0.0;
-				temp = desiredOutputs[i][j] - outputs[j];
-				temp = temp * temp;
-				error += temp;
-			}
-		}
-		error /= lesson.getDimensionalityDesiredOutputs();
-		error = Math.sqrt(error);
-		return error;
-
+		return ErrorEvaluation.evaluate(net, lesson, 1)
+				.getErrorRootMeanSquareSum();
 	}
 
 }
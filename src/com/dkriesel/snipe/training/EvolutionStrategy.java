@@ -0,0 +1,307 @@
+package com.dkriesel.snipe.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.dkriesel.snipe.core.NeuralNetwork;
+import com.dkriesel.snipe.util.MersenneTwisterFast;
+import com.dkriesel.snipe.util.ParallelExecution;
+import com.dkriesel.snipe.util.RandomStreams;
+import com.dkriesel.snipe.util.VectorKernels;
+
+/**
+ * Trains the synaptic weights of a neural network using a (mu/mu,lambda)
+ * evolution strategy with self-adaptive step size [Beyer02], which only needs
+ * an ObjectiveFunction to rate networks and thus also works for objectives
+ * that are not differentiable. The weights of the network are treated as one
+ * flat vector (see NeuralNetwork.copyWeightsToArray). Every generation, lambda
+ * offspring are sampled around the mean of the population, each with its own
+ * step size mutated log-normally from the step size of the population, and
+ * rated by the objective function. The mean of the mu best offspring becomes
+ * the new mean of the population, and the geometric mean of their step sizes
+ * becomes the new step size. The parents are not part of the selection.
+ *
+ * <p>
+ * Offspring are not created using the mutation operators of NeuralNetwork
+ * like mutateWeightsGaussian: Their standard deviation is fixed by the number
+ * of synapses instead of being the step size of the offspring, and they use
+ * the random number generator of the network, which is not derived from the
+ * seed given, so the results would not be reproducible. The offspring are
+ * sampled on the flat weight vector instead.
+ *
+ * <p>
+ * Sampling and rating the offspring is done in parallel using the thread pool
+ * of ParallelExecution. Each offspring is handled by a network instance of
+ * its own, which is cloned from the trained network once and then reused in
+ * every generation, only its weights are overwritten. Each offspring also has
+ * a random number generator of its own, offspring k using stream k of
+ * RandomStreams with the seed given, so the results only depend on the seed,
+ * neither on the number of chunks nor on the number of threads or on timing.
+ *
+ * <p>
+ * The best offspring found so far is remembered independently of the
+ * selection and written into the trained network at the end of each call of
+ * train. The topology of the network must not be changed while the evolution
+ * strategy is used.
+ *
+ * <p>
+ * <b>References</b><br>
+ * [Beyer02] Hans-Georg Beyer and Hans-Paul Schwefel. Evolution strategies - A
+ * comprehensive introduction. Natural Computing, 1(1):3-52, 2002.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class EvolutionStrategy {
+
+	protected final NeuralNetwork net;
+	protected final ObjectiveFunction objective;
+	protected final int parents;
+	protected final int offspring;
+	protected int chunks = ParallelExecution.countProcessors();
+
+	// population state
+	protected final int dimension;
+	protected final double learningRate;
+	protected double[] mean;
+	protected double stepSize = 0.1;
+	protected int generation = 0;
+
+	// one entry per offspring, reused every generation
+	protected final NeuralNetwork[] offspringNetworks;
+	protected final MersenneTwisterFast[] offspringRandoms;
+	protected final double[][] offspringWeights;
+	protected final double[] offspringStepSizes;
+	protected final double[] offspringErrors;
+
+	// best offspring found so far
+	protected double[] bestWeights;
+	protected double bestError = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Creates an evolution strategy that trains the weights of the given
+	 * network, starting with its current weights as mean of the population.
+	 * Clones the network once per offspring, so the memory needed is lambda
+	 * times the memory of the network.
+	 *
+	 * @param net
+	 *            the network to train
+	 * @param objective
+	 *            the objective function rating the networks
+	 * @param parents
+	 *            the number mu of offspring selected each generation
+	 * @param offspring
+	 *            the number lambda of offspring created each generation, has
+	 *            to be greater than the number of parents
+	 * @param seed
+	 *            the seed of the random number generators
+	 */
+	public EvolutionStrategy(NeuralNetwork net, ObjectiveFunction objective,
+			int parents, int offspring, long seed) {
+		if (parents < 1 || offspring <= parents) {
+			throw new IllegalArgumentException(
+					"At least one parent and more offspring than parents are needed.");
+		}
+		this.net = net;
+		this.objective = objective;
+		this.parents = parents;
+		this.offspring = offspring;
+
+		dimension = net.countSynapses();
+		learningRate = 1.0 / Math.sqrt(2 * Math.max(dimension, 1));
+		mean = net.copyWeightsToArray(new double[dimension]);
+		bestWeights = mean.clone();
+
+		RandomStreams streams = new RandomStreams(seed);
+		offspringNetworks = new NeuralNetwork[offspring];
+		offspringRandoms = new MersenneTwisterFast[offspring];
+		offspringWeights = new double[offspring][dimension];
+		offspringStepSizes = new double[offspring];
+		offspringErrors = new double[offspring];
+		for (int k = 0; k < offspring; k++) {
+			offspringNetworks[k] = net.clone();
+			offspringRandoms[k] = streams.createStream(k);
+		}
+	}
+
+	/**
+	 * Runs the given number of generations and writes the weights of the best
+	 * offspring found so far into the trained network afterwards. Can be
+	 * called again to continue the evolution.
+	 *
+	 * @param generations
+	 *            the number of generations to run
+	 * @return the error of the best offspring found so far
+	 */
+	public double train(int generations) {
+		if (net.countSynapses() != dimension) {
+			throw new IllegalArgumentException(
+					"The topology of the network has been changed.");
+		}
+		for (int g = 0; g < generations; g++) {
+			createAndRateOffspring();
+			selectAndRecombine();
+			generation++;
+		}
+		net.setWeightsFromArray(bestWeights);
+		return bestError;
+	}
+
+	/**
+	 * Samples and rates all offspring of a generation in parallel, split into
+	 * chunks of neighboring offspring.
+	 */
+	protected void createAndRateOffspring() {
+		int usedChunks = Math.max(1, Math.min(chunks, offspring));
+		int chunkSize = (offspring + usedChunks - 1) / usedChunks;
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(
+				usedChunks);
+		for (int c = 0; c < usedChunks; c++) {
+			final int from = Math.min(offspring, c * chunkSize);
+			final int to = Math.min(offspring, from + chunkSize);
+			futures.add(ParallelExecution.submit(
+					new Callable<Object>() {
+						@Override
+						public Object call() {
+							for (int k = from; k < to; k++) {
+								createAndRateOffspring(k);
+							}
+							return null;
+						}
+					}));
+		}
+		for (int c = 0; c < usedChunks; c++) {
+			ParallelExecution.await(futures.get(c));
+		}
+	}
+
+	/**
+	 * Samples offspring k around the mean of the population using its own
+	 * random number generator, and rates it using its own network.
+	 *
+	 * @param k
+	 *            the offspring
+	 */
+	protected void createAndRateOffspring(int k) {
+		MersenneTwisterFast random = offspringRandoms[k];
+		double[] weights = offspringWeights[k];
+		double offspringStepSize = stepSize
+				* Math.exp(learningRate * random.nextGaussian());
+		// like mutateWeightsGaussian, but with the self-adapted step size of
+		// this offspring, see the class documentation
+		for (int i = 0; i < dimension; i++) {
+			weights[i] = mean[i] + offspringStepSize * random.nextGaussian();
+		}
+		offspringStepSizes[k] = offspringStepSize;
+		offspringNetworks[k].setWeightsFromArray(weights);
+		offspringErrors[k] = objective.computeError(offspringNetworks[k]);
+	}
+
+	/**
+	 * Selects the best offspring, recombines them into the new mean and step
+	 * size and remembers the best offspring found so far. Offspring with equal
+	 * errors are ranked by index, offspring rated NaN are ranked last.
+	 */
+	protected void selectAndRecombine() {
+		Integer[] ranking = new Integer[offspring];
+		for (int k = 0; k < offspring; k++) {
+			ranking[k] = k;
+		}
+		// stable sort, so equal errors keep the order of the indices
+		Arrays.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(offspringErrors[a], offspringErrors[b]);
+			}
+		});
+
+		if (offspringErrors[ranking[0]] < bestError) {
+			bestError = offspringErrors[ranking[0]];
+			System.arraycopy(offspringWeights[ranking[0]], 0, bestWeights, 0,
+					dimension);
+		}
+
+		Arrays.fill(mean, 0);
+		double logStepSize = 0;
+		for (int p = 0; p < parents; p++) {
+			VectorKernels.axpy(1.0 / parents, offspringWeights[ranking[p]], 0,
+					mean, 0, dimension);
+			logStepSize += Math.log(offspringStepSizes[ranking[p]]);
+		}
+		stepSize = Math.exp(logStepSize / parents);
+	}
+
+	/**
+	 * @return the number of chunks the offspring of a generation are split
+	 *         into in order to be handled in parallel.
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * Sets the number of chunks the offspring of a generation are split into
+	 * in order to be handled in parallel. The default is the number of
+	 * available processors. Does not influence the results.
+	 *
+	 * @param chunks
+	 *            the number of chunks, at least 1
+	 */
+	public void setChunks(int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException(
+					"At least one chunk is needed.");
+		}
+		this.chunks = chunks;
+	}
+
+	/**
+	 * @return the current step size, i.e. the standard deviation the weights
+	 *         of the offspring are sampled with.
+	 */
+	public double getStepSize() {
+		return stepSize;
+	}
+
+	/**
+	 * Sets the step size, i.e. the standard deviation the weights of the
+	 * offspring are sampled with. The default initial step size is 0.1. The
+	 * step size adapts itself during the evolution.
+	 *
+	 * @param stepSize
+	 *            the step size, greater than 0
+	 */
+	public void setStepSize(double stepSize) {
+		if (!(stepSize > 0)) {
+			throw new IllegalArgumentException(
+					"Step size has to be greater than 0.");
+		}
+		this.stepSize = stepSize;
+	}
+
+	/**
+	 * @return the error of the best offspring found so far, or
+	 *         Double.POSITIVE_INFINITY if no generation has been run yet.
+	 */
+	public double getBestError() {
+		return bestError;
+	}
+
+	/**
+	 * @return the number of generations run so far.
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return a copy of the mean of the population as flat weight vector.
+	 */
+	public double[] getMean() {
+		return mean.clone();
+	}
+}
@@ -0,0 +1,907 @@
+package com.dkriesel.snipe.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.dkriesel.snipe.core.NeuralNetwork;
+import com.dkriesel.snipe.util.MersenneTwisterFast;
+import com.dkriesel.snipe.util.ParallelExecution;
+
+/**
+ * Evolves topology and synaptic weights of a neural network in the style of
+ * NEAT [Stanley02], using the structural mutation operators of NeuralNetwork.
+ * Like EvolutionStrategy, it only needs an ObjectiveFunction to rate networks.
+ * In order to search for compact networks, a complexity penalty per synapse
+ * can be added to the error of each network.
+ *
+ * <p>
+ * <b>Innovation tracking.</b> Neuron indices of SNIPE networks change when
+ * neurons are created or removed, so every neuron of every individual is
+ * additionally given an id that never changes. Neurons of the initial network
+ * get their indices as ids, neurons created by mutations get ids from an
+ * innovation registry shared by the whole population: Splitting the same
+ * synapse or the same neuron in different individuals yields neurons with the
+ * same id. The historical marking of a synapse is the pair of ids of its
+ * neurons, so equal structures evolved independently are recognized as equal.
+ *
+ * <p>
+ * <b>Speciation.</b> The individuals are divided into species using the
+ * compatibility distance of NEAT, i.e. the number of synapses not shared
+ * (relative to the size of the larger network) plus the mean weight
+ * difference of the shared synapses, each scaled by a coefficient. Fitness is
+ * shared within each species: Each species gets a number of offspring
+ * proportional to the mean linear rank fitness of its members. Its champion
+ * survives unchanged, the other offspring are mutated copies of its best
+ * members. Species that did not improve for a number of generations get no
+ * offspring, unless they contain the best individual. Reproduction is done by
+ * mutation only, there is no crossover.
+ *
+ * <p>
+ * <b>Parallelism and memory.</b> The population is held in two pools of
+ * networks that are cloned from the trained network once and then recycled:
+ * Each generation, the offspring are copied into the networks of the other
+ * pool using NeuralNetwork.copyFrom and mutated in place, then the pools are
+ * swapped. Copying and mutating is done in the calling thread, so innovations
+ * are registered in a fixed order and the results only depend on the seed.
+ * Rating the offspring, which is usually by far the most expensive part, is
+ * done in parallel chunks using the thread pool of ParallelExecution.
+ * Champions are not rated again, so the objective function should be
+ * deterministic.
+ *
+ * <p>
+ * The best individual found so far is copied into the trained network at the
+ * end of each call of train, so the topology of the trained network changes.
+ * The networks should be created using a descriptor that does not initialize
+ * all allowed synapses (see NeuralNetworkDescriptor.setSettingsNEAT), so the
+ * evolution starts with minimal networks.
+ *
+ * <p>
+ * <b>References</b><br>
+ * [Stanley02] Kenneth O. Stanley and Risto Miikkulainen. Evolving neural
+ * networks through augmenting topologies. Evolutionary Computation,
+ * 10(2):99-127, 2002.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class NeuroEvolution {
+
+	protected final NeuralNetwork net;
+	protected final ObjectiveFunction objective;
+	protected final int populationSize;
+	protected final MersenneTwisterFast random;
+	protected int chunks = ParallelExecution.countProcessors();
+
+	// mutation parameters
+	protected double weightMutationProbability = 0.8;
+	protected double weightMutationStepSize = 0.1;
+	protected double addSynapseProbability = 0.1;
+	protected double removeSynapseProbability = 0.05;
+	protected double splitSynapseProbability = 0.03;
+	protected double splitNeuronProbability = 0.01;
+	protected double removeNeuronProbability = 0.02;
+
+	// selection parameters
+	protected double complexityPenalty = 0;
+	protected double compatibilityThreshold = 1.0;
+	protected double compatibilityTopologyCoefficient = 1.0;
+	protected double compatibilityWeightCoefficient = 0.4;
+	protected double survivalThreshold = 0.2;
+	protected int stagnationLimit = 15;
+
+	// population, pooled networks are reused every generation
+	protected NeuralNetwork[] networks;
+	protected NeuralNetwork[] nextNetworks;
+	protected int[][] neuronIds;
+	protected int[][] nextNeuronIds;
+	protected final double[] errors;
+	protected final int[] parentOf;
+	protected final boolean[] champion;
+	protected boolean populationRated = false;
+	protected int generation = 0;
+
+	// historical markings of the synapses of each individual, unsorted
+	protected long[][] synapseMarkings;
+	protected double[][] synapseWeights;
+	protected final int[] synapseCounts;
+	// temporary arrays per individual to read the synapses of its network
+	protected int[][] fromNeurons;
+	protected int[][] toNeurons;
+	protected double[][] weightVectors;
+
+	// innovation registry
+	protected final HashMap<Long, Integer> splitSynapseInnovations = new HashMap<Long, Integer>();
+	protected final HashMap<Integer, Integer> splitNeuronInnovations = new HashMap<Integer, Integer>();
+	protected int nextNeuronId;
+
+	// species
+	protected final List<Species> species = new ArrayList<Species>();
+
+	// best individual found so far
+	protected final NeuralNetwork bestNetwork;
+	protected double bestError = Double.POSITIVE_INFINITY;
+
+	/**
+	 * A species of similar individuals along with its representative, which
+	 * new individuals are compared to.
+	 */
+	protected static class Species {
+		// sorted historical markings of the representative
+		protected long[] markings = new long[0];
+		protected double[] weights = new double[0];
+		protected int size;
+		protected int[] members;
+		protected double bestError = Double.POSITIVE_INFINITY;
+		protected int generationsWithoutImprovement;
+		protected int offspring;
+
+		protected Species(int populationSize) {
+			members = new int[populationSize];
+		}
+	}
+
+	/**
+	 * Creates a neuroevolution engine that evolves the given network. Clones
+	 * the network twice per individual, so the memory needed is twice the
+	 * population size times the memory of the network.
+	 *
+	 * @param net
+	 *            the network to evolve, the individuals of the initial
+	 *            population are mutated copies of it.
+	 * @param objective
+	 *            the objective function rating the networks
+	 * @param populationSize
+	 *            the number of individuals, at least 2
+	 * @param seed
+	 *            the seed of the random number generator
+	 */
+	public NeuroEvolution(NeuralNetwork net, ObjectiveFunction objective,
+			int populationSize, long seed) {
+		if (populationSize < 2) {
+			throw new IllegalArgumentException(
+					"At least two individuals are needed.");
+		}
+		this.net = net;
+		this.objective = objective;
+		this.populationSize = populationSize;
+		random = new MersenneTwisterFast(seed);
+
+		int[] initialIds = new int[net.countNeurons() + 1];
+		for (int i = 0; i < initialIds.length; i++) {
+			initialIds[i] = i;
+		}
+		nextNeuronId = initialIds.length;
+
+		networks = new NeuralNetwork[populationSize];
+		nextNetworks = new NeuralNetwork[populationSize];
+		neuronIds = new int[populationSize][];
+		nextNeuronIds = new int[populationSize][];
+		errors = new double[populationSize];
+		parentOf = new int[populationSize];
+		champion = new boolean[populationSize];
+		synapseMarkings = new long[populationSize][0];
+		synapseWeights = new double[populationSize][0];
+		synapseCounts = new int[populationSize];
+		fromNeurons = new int[populationSize][0];
+		toNeurons = new int[populationSize][0];
+		weightVectors = new double[populationSize][0];
+		for (int k = 0; k < populationSize; k++) {
+			networks[k] = net.clone();
+			nextNetworks[k] = net.clone();
+			neuronIds[k] = initialIds.clone();
+			nextNeuronIds[k] = initialIds.clone();
+		}
+		bestNetwork = net.clone();
+	}
+
+	/**
+	 * Runs the given number of generations and copies the best individual
+	 * found so far into the evolved network afterwards. Can be called again to
+	 * continue the evolution. The first call rates the initial population
+	 * before the first generation is run.
+	 *
+	 * @param generations
+	 *            the number of generations to run
+	 * @return the error of the best individual found so far, including the
+	 *         complexity penalty
+	 */
+	public double train(int generations) {
+		if (!populationRated) {
+			createInitialPopulation();
+			rate();
+			speciate();
+			populationRated = true;
+		}
+		for (int g = 0; g < generations; g++) {
+			reproduce();
+			rate();
+			speciate();
+			generation++;
+		}
+		net.copyFrom(bestNetwork);
+		return bestError;
+	}
+
+	/**
+	 * Creates the initial population: the first individual is an unchanged
+	 * copy of the evolved network, all others are mutated copies.
+	 */
+	protected void createInitialPopulation() {
+		for (int k = 0; k < populationSize; k++) {
+			networks[k].copyFrom(net);
+			champion[k] = (k == 0);
+			if (k > 0) {
+				mutate(networks[k], k, neuronIds);
+			}
+		}
+	}
+
+	/**
+	 * Chooses the parents of the next generation, copies them into the
+	 * networks of the other pool, mutates them and swaps the pools.
+	 */
+	protected void reproduce() {
+		// plan the offspring of all species
+		int k = 0;
+		for (Species s : species) {
+			int survivors = Math.max(1,
+					(int) Math.ceil(survivalThreshold * s.size));
+			for (int o = 0; o < s.offspring; o++) {
+				// members are sorted by error, so the first is the champion
+				champion[k] = (o == 0);
+				parentOf[k] = (o == 0) ? s.members[0] : s.members[random
+						.nextInt(survivors)];
+				k++;
+			}
+		}
+
+		// copy and mutate in place
+		for (k = 0; k < populationSize; k++) {
+			int parent = parentOf[k];
+			nextNetworks[k].copyFrom(networks[parent]);
+			nextNeuronIds[k] = copyReusing(neuronIds[parent], nextNeuronIds[k]);
+			if (!champion[k]) {
+				mutate(nextNetworks[k], k, nextNeuronIds);
+			}
+		}
+
+		NeuralNetwork[] swapNetworks = networks;
+		networks = nextNetworks;
+		nextNetworks = swapNetworks;
+		int[][] swapIds = neuronIds;
+		neuronIds = nextNeuronIds;
+		nextNeuronIds = swapIds;
+	}
+
+	/**
+	 * Applies the weight mutation and each structural mutation with its
+	 * probability to the given individual, updating its neuron ids.
+	 *
+	 * @param individual
+	 *            the network of the individual
+	 * @param k
+	 *            the index of the individual
+	 * @param ids
+	 *            the neuron id arrays of the pool of the individual
+	 */
+	protected void mutate(NeuralNetwork individual, int k, int[][] ids) {
+		if (random.nextDouble() < weightMutationProbability) {
+			mutateWeights(individual, k);
+		}
+		if (random.nextDouble() < addSynapseProbability) {
+			mutateAddSynapse(individual);
+		}
+		if (random.nextDouble() < removeSynapseProbability) {
+			mutateRemoveSynapse(individual, k);
+		}
+		if (random.nextDouble() < splitSynapseProbability) {
+			mutateSplitSynapse(individual, k, ids);
+		}
+		if (random.nextDouble() < splitNeuronProbability) {
+			mutateSplitNeuron(individual, k, ids);
+		}
+		if (random.nextDouble() < removeNeuronProbability) {
+			mutateRemoveNeuron(individual, k, ids);
+		}
+	}
+
+	/**
+	 * Adds a gaussian random variable to each weight.
+	 */
+	protected void mutateWeights(NeuralNetwork individual, int k) {
+		int count = individual.countSynapses();
+		if (weightVectors[k].length != count) {
+			weightVectors[k] = new double[count];
+		}
+		double[] weights = individual.copyWeightsToArray(weightVectors[k]);
+		for (int s = 0; s < count; s++) {
+			weights[s] += weightMutationStepSize * random.nextGaussian();
+		}
+		individual.setWeightsFromArray(weights);
+	}
+
+	/**
+	 * Adds a random allowed synapse that does not exist yet, giving up after
+	 * a number of unsuccessful attempts.
+	 */
+	protected void mutateAddSynapse(NeuralNetwork individual) {
+		int neurons = individual.countNeurons() + 1;
+		double range = individual.getDescriptor().getSynapseInitialRange();
+		for (int attempt = 0; attempt < 20; attempt++) {
+			int i = random.nextInt(neurons);
+			int j = random.nextInt(neurons);
+			if (individual.isSynapseAllowed(i, j)
+					&& !individual.isSynapseExistent(i, j)) {
+				individual.setSynapse(i, j, range
+						* (2 * random.nextDouble() - 1));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes a random synapse.
+	 */
+	protected void mutateRemoveSynapse(NeuralNetwork individual, int k) {
+		int count = readSynapses(individual, k);
+		if (count > 0) {
+			int s = random.nextInt(count);
+			individual.removeSynapse(fromNeurons[k][s], toNeurons[k][s]);
+		}
+	}
+
+	/**
+	 * Splits a random synapse using
+	 * NeuralNetwork.mutateTopologySplitSynapseAndAddNeuron, if the two new
+	 * synapses are allowed.
+	 */
+	protected void mutateSplitSynapse(NeuralNetwork individual, int k,
+			int[][] ids) {
+		if (individual.countLayers() <= 2) {
+			return;
+		}
+		int count = readSynapses(individual, k);
+		if (count == 0) {
+			return;
+		}
+		int s = random.nextInt(count);
+		int i = fromNeurons[k][s];
+		int j = toNeurons[k][s];
+		int fromLayer = individual.getLayerOfNeuron(i);
+		int toLayer = individual.getLayerOfNeuron(j);
+		int newLayer = individual.isNeuronOutput(j) ? toLayer - 1 : toLayer;
+		if (i == j
+				|| !individual.isSynapseAllowedBetweenLayers(fromLayer,
+						newLayer)
+				|| !individual.isSynapseAllowedBetweenLayers(newLayer, toLayer)) {
+			return;
+		}
+
+		long marking = marking(ids[k][i], ids[k][j]);
+		int id = registerInnovation(splitSynapseInnovations, marking, ids[k]);
+		int newNeuron = individual.mutateTopologySplitSynapseAndAddNeuron(i, j);
+		ids[k] = insertId(ids[k], newNeuron, id);
+	}
+
+	/**
+	 * Splits a random inner neuron using
+	 * NeuralNetwork.mutateTopologySplitNeuron.
+	 */
+	protected void mutateSplitNeuron(NeuralNetwork individual, int k,
+			int[][] ids) {
+		if (individual.countNeuronsInner() == 0) {
+			return;
+		}
+		int neuron = innerNeuron(individual, random.nextInt(individual
+				.countNeuronsInner()));
+		int id = registerInnovation(splitNeuronInnovations, ids[k][neuron],
+				ids[k]);
+		int newNeuron = individual.mutateTopologySplitNeuron(neuron,
+				random.nextDouble());
+		ids[k] = insertId(ids[k], newNeuron, id);
+	}
+
+	/**
+	 * Removes a random inner neuron along with its synapses.
+	 */
+	protected void mutateRemoveNeuron(NeuralNetwork individual, int k,
+			int[][] ids) {
+		if (individual.countNeuronsInner() == 0) {
+			return;
+		}
+		int neuron = innerNeuron(individual, random.nextInt(individual
+				.countNeuronsInner()));
+		individual.removeNeuron(neuron);
+		int[] oldIds = ids[k];
+		int[] newIds = new int[oldIds.length - 1];
+		System.arraycopy(oldIds, 0, newIds, 0, neuron);
+		System.arraycopy(oldIds, neuron + 1, newIds, neuron, newIds.length
+				- neuron);
+		ids[k] = newIds;
+	}
+
+	/**
+	 * Returns the index of the given inner neuron, inner neurons being
+	 * enumerated from 0 on.
+	 */
+	protected static int innerNeuron(NeuralNetwork individual, int number) {
+		return individual.getNeuronFirstInLayer(1) + number;
+	}
+
+	/**
+	 * Looks up the id of the neuron created by the given innovation, or
+	 * registers a new one. If the individual already contains a neuron with
+	 * this id, e.g. because it splits the same synapse a second time, a new id
+	 * is used.
+	 */
+	protected <K> int registerInnovation(HashMap<K, Integer> innovations,
+			K innovation, int[] ids) {
+		Integer id = innovations.get(innovation);
+		if (id == null) {
+			id = nextNeuronId++;
+			innovations.put(innovation, id);
+		}
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == id) {
+				return nextNeuronId++;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Rates all individuals in parallel, split into chunks of neighboring
+	 * individuals, and sorts the members of the species by their errors.
+	 */
+	protected void rate() {
+		int usedChunks = Math.max(1, Math.min(chunks, populationSize));
+		int chunkSize = (populationSize + usedChunks - 1) / usedChunks;
+		final double[] parentErrors = errors.clone();
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(
+				usedChunks);
+		for (int c = 0; c < usedChunks; c++) {
+			final int from = Math.min(populationSize, c * chunkSize);
+			final int to = Math.min(populationSize, from + chunkSize);
+			futures.add(ParallelExecution.submit(
+					new Callable<Object>() {
+						@Override
+						public Object call() {
+							for (int k = from; k < to; k++) {
+								rate(k, parentErrors);
+							}
+							return null;
+						}
+					}));
+		}
+		for (int c = 0; c < usedChunks; c++) {
+			ParallelExecution.await(futures.get(c));
+		}
+
+		int best = 0;
+		for (int k = 1; k < populationSize; k++) {
+			if (Double.compare(errors[k], errors[best]) < 0) {
+				best = k;
+			}
+		}
+		if (errors[best] < bestError) {
+			bestError = errors[best];
+			bestNetwork.copyFrom(networks[best]);
+		}
+	}
+
+	/**
+	 * Rates individual k, or takes over the error of its parent if it is an
+	 * unchanged champion, and reads its historical markings.
+	 */
+	protected void rate(int k, double[] parentErrors) {
+		NeuralNetwork individual = networks[k];
+		int count = readSynapses(individual, k);
+		if (champion[k] && populationRated) {
+			errors[k] = parentErrors[parentOf[k]];
+		} else {
+			errors[k] = objective.computeError(individual) + complexityPenalty
+					* count;
+		}
+		if (synapseMarkings[k].length < count) {
+			synapseMarkings[k] = new long[Math.max(count,
+					2 * synapseMarkings[k].length)];
+		}
+		long[] markings = synapseMarkings[k];
+		int[] ids = neuronIds[k];
+		for (int s = 0; s < count; s++) {
+			markings[s] = marking(ids[fromNeurons[k][s]], ids[toNeurons[k][s]]);
+		}
+	}
+
+	/**
+	 * Reads the synapses of individual k into its temporary arrays, growing
+	 * them if necessary.
+	 *
+	 * @return the number of synapses
+	 */
+	protected int readSynapses(NeuralNetwork individual, int k) {
+		int count = individual.countSynapses();
+		if (fromNeurons[k].length < count) {
+			int capacity = Math.max(count, 2 * fromNeurons[k].length);
+			fromNeurons[k] = new int[capacity];
+			toNeurons[k] = new int[capacity];
+			synapseWeights[k] = new double[capacity];
+		}
+		synapseCounts[k] = individual.copySynapsesToArrays(fromNeurons[k],
+				toNeurons[k], synapseWeights[k]);
+		return count;
+	}
+
+	/**
+	 * Divides the rated individuals into species in index order, updates the
+	 * representatives and stagnation counters and computes the number of
+	 * offspring of each species.
+	 */
+	protected void speciate() {
+		for (Species s : species) {
+			s.size = 0;
+		}
+		for (int k = 0; k < populationSize; k++) {
+			Species home = null;
+			for (Species s : species) {
+				if (compatibilityDistance(k, s) < compatibilityThreshold) {
+					home = s;
+					break;
+				}
+			}
+			if (home == null) {
+				home = new Species(populationSize);
+				setRepresentative(home, k);
+				species.add(home);
+			}
+			home.members[home.size++] = k;
+		}
+
+		// rank all individuals, NaN errors last
+		Integer[] ranking = new Integer[populationSize];
+		for (int k = 0; k < populationSize; k++) {
+			ranking[k] = k;
+		}
+		Arrays.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(errors[a], errors[b]);
+			}
+		});
+		int[] rank = new int[populationSize];
+		for (int r = 0; r < populationSize; r++) {
+			rank[ranking[r]] = r;
+		}
+
+		// drop empty species, sort members and share fitness
+		for (int sIdx = species.size() - 1; sIdx >= 0; sIdx--) {
+			if (species.get(sIdx).size == 0) {
+				species.remove(sIdx);
+			}
+		}
+		double totalShare = 0;
+		double[] shares = new double[species.size()];
+		for (int sIdx = 0; sIdx < species.size(); sIdx++) {
+			Species s = species.get(sIdx);
+			sortMembers(s, rank);
+			int championOfSpecies = s.members[0];
+			if (errors[championOfSpecies] < s.bestError) {
+				s.bestError = errors[championOfSpecies];
+				s.generationsWithoutImprovement = 0;
+			} else {
+				s.generationsWithoutImprovement++;
+			}
+			setRepresentative(s, championOfSpecies);
+
+			boolean containsBest = rank[championOfSpecies] == 0;
+			if (containsBest
+					|| s.generationsWithoutImprovement < stagnationLimit) {
+				double share = 0;
+				for (int m = 0; m < s.size; m++) {
+					share += populationSize - rank[s.members[m]];
+				}
+				shares[sIdx] = share / s.size;
+				totalShare += shares[sIdx];
+			}
+		}
+		allotOffspring(shares, totalShare, ranking[0]);
+	}
+
+	/**
+	 * Distributes the offspring among the species proportional to their
+	 * shares using the largest remainder method, making sure the species of
+	 * the best individual gets at least one.
+	 */
+	protected void allotOffspring(double[] shares, double totalShare,
+			int bestIndividual) {
+		int allotted = 0;
+		double[] remainders = new double[species.size()];
+		for (int sIdx = 0; sIdx < species.size(); sIdx++) {
+			double exact = populationSize * shares[sIdx] / totalShare;
+			species.get(sIdx).offspring = (int) exact;
+			remainders[sIdx] = exact - (int) exact;
+			allotted += (int) exact;
+		}
+		while (allotted < populationSize) {
+			int largest = 0;
+			for (int sIdx = 1; sIdx < species.size(); sIdx++) {
+				if (remainders[sIdx] > remainders[largest]) {
+					largest = sIdx;
+				}
+			}
+			species.get(largest).offspring++;
+			remainders[largest] = -1;
+			allotted++;
+		}
+
+		Species bestSpecies = null;
+		Species largestSpecies = species.get(0);
+		for (Species s : species) {
+			if (s.members[0] == bestIndividual) {
+				bestSpecies = s;
+			}
+			if (s.offspring > largestSpecies.offspring) {
+				largestSpecies = s;
+			}
+		}
+		if (bestSpecies.offspring == 0) {
+			bestSpecies.offspring++;
+			largestSpecies.offspring--;
+		}
+	}
+
+	/**
+	 * Sorts the members of a species by their rank using insertion sort,
+	 * species being small compared to the population.
+	 */
+	protected static void sortMembers(Species s, int[] rank) {
+		for (int m = 1; m < s.size; m++) {
+			int member = s.members[m];
+			int n = m - 1;
+			while (n >= 0 && rank[s.members[n]] > rank[member]) {
+				s.members[n + 1] = s.members[n];
+				n--;
+			}
+			s.members[n + 1] = member;
+		}
+	}
+
+	/**
+	 * Makes individual k the representative of the given species, copying its
+	 * historical markings in sorted order.
+	 */
+	protected void setRepresentative(Species s, int k) {
+		int count = synapseCounts[k];
+		if (s.markings.length != count) {
+			s.markings = new long[count];
+			s.weights = new double[count];
+		}
+		System.arraycopy(synapseMarkings[k], 0, s.markings, 0, count);
+		Arrays.sort(s.markings);
+		for (int i = 0; i < count; i++) {
+			int position = Arrays.binarySearch(s.markings,
+					synapseMarkings[k][i]);
+			s.weights[position] = synapseWeights[k][i];
+		}
+	}
+
+	/**
+	 * Computes the compatibility distance of individual k to the
+	 * representative of the given species in O(SYNAPSES*log(SYNAPSES)).
+	 */
+	protected double compatibilityDistance(int k, Species s) {
+		int count = synapseCounts[k];
+		int matching = 0;
+		double weightDifference = 0;
+		for (int i = 0; i < count; i++) {
+			int position = Arrays.binarySearch(s.markings,
+					synapseMarkings[k][i]);
+			if (position >= 0) {
+				matching++;
+				weightDifference += Math.abs(synapseWeights[k][i]
+						- s.weights[position]);
+			}
+		}
+		int mismatching = count + s.markings.length - 2 * matching;
+		int larger = Math.max(1, Math.max(count, s.markings.length));
+		return compatibilityTopologyCoefficient * mismatching / larger
+				+ compatibilityWeightCoefficient
+				* (matching > 0 ? weightDifference / matching : 0);
+	}
+
+	/**
+	 * @return the historical marking of the synapse between the neurons with
+	 *         the given ids.
+	 */
+	protected static long marking(int fromId, int toId) {
+		return ((long) fromId << 32) | (toId & 0xffffffffL);
+	}
+
+	/**
+	 * @return a copy of the given ids with the given id inserted at the given
+	 *         index.
+	 */
+	protected static int[] insertId(int[] ids, int index, int id) {
+		int[] result = new int[ids.length + 1];
+		System.arraycopy(ids, 0, result, 0, index);
+		result[index] = id;
+		System.arraycopy(ids, index, result, index + 1, ids.length - index);
+		return result;
+	}
+
+	/**
+	 * Copies the source array into the target array if their lengths match,
+	 * otherwise into a new array.
+	 */
+	protected static int[] copyReusing(int[] source, int[] target) {
+		if (target.length != source.length) {
+			return source.clone();
+		}
+		System.arraycopy(source, 0, target, 0, source.length);
+		return target;
+	}
+
+	/**
+	 * @return the number of chunks the population is split into in order to
+	 *         be rated in parallel.
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * Sets the number of chunks the population is split into in order to be
+	 * rated in parallel. The default is the number of available processors.
+	 * Does not influence the results.
+	 *
+	 * @param chunks
+	 *            the number of chunks, at least 1
+	 */
+	public void setChunks(int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException(
+					"At least one chunk is needed.");
+		}
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Sets the probability that the weights of an offspring are mutated, and
+	 * the standard deviation of the gaussian added to each weight then. The
+	 * defaults are 0.8 and 0.1.
+	 *
+	 * @param probability
+	 *            the probability of weight mutation
+	 * @param stepSize
+	 *            the standard deviation of the weight mutation
+	 */
+	public void setWeightMutation(double probability, double stepSize) {
+		this.weightMutationProbability = probability;
+		this.weightMutationStepSize = stepSize;
+	}
+
+	/**
+	 * Sets the probabilities of the structural mutations, each of which is
+	 * applied to an offspring at most once. The defaults are 0.1, 0.05, 0.03,
+	 * 0.01 and 0.02.
+	 *
+	 * @param addSynapse
+	 *            the probability to add a random allowed synapse
+	 * @param removeSynapse
+	 *            the probability to remove a random synapse
+	 * @param splitSynapse
+	 *            the probability to split a random synapse by a new neuron
+	 * @param splitNeuron
+	 *            the probability to split a random inner neuron
+	 * @param removeNeuron
+	 *            the probability to remove a random inner neuron
+	 */
+	public void setStructuralMutation(double addSynapse,
+			double removeSynapse, double splitSynapse, double splitNeuron,
+			double removeNeuron) {
+		this.addSynapseProbability = addSynapse;
+		this.removeSynapseProbability = removeSynapse;
+		this.splitSynapseProbability = splitSynapse;
+		this.splitNeuronProbability = splitNeuron;
+		this.removeNeuronProbability = removeNeuron;
+	}
+
+	/**
+	 * @return the penalty added to the error of a network per synapse.
+	 */
+	public double getComplexityPenalty() {
+		return complexityPenalty;
+	}
+
+	/**
+	 * Sets the penalty added to the error of a network per synapse, which
+	 * favors compact networks that propagate faster. The default is 0.
+	 *
+	 * @param complexityPenalty
+	 *            the penalty per synapse
+	 */
+	public void setComplexityPenalty(double complexityPenalty) {
+		this.complexityPenalty = complexityPenalty;
+	}
+
+	/**
+	 * Sets the parameters of the compatibility distance, i.e. the threshold
+	 * below which individuals belong to the same species, and the coefficients
+	 * of the topological and the weight difference. The defaults are 1.0, 1.0
+	 * and 0.4.
+	 *
+	 * @param threshold
+	 *            the compatibility threshold
+	 * @param topologyCoefficient
+	 *            the coefficient of the relative number of synapses not
+	 *            shared
+	 * @param weightCoefficient
+	 *            the coefficient of the mean weight difference of shared
+	 *            synapses
+	 */
+	public void setCompatibility(double threshold,
+			double topologyCoefficient, double weightCoefficient) {
+		this.compatibilityThreshold = threshold;
+		this.compatibilityTopologyCoefficient = topologyCoefficient;
+		this.compatibilityWeightCoefficient = weightCoefficient;
+	}
+
+	/**
+	 * Sets the fraction of the best members of each species that are chosen
+	 * as parents. The default is 0.2, at least one member is chosen.
+	 *
+	 * @param survivalThreshold
+	 *            the fraction of parents, between 0 and 1
+	 */
+	public void setSurvivalThreshold(double survivalThreshold) {
+		this.survivalThreshold = survivalThreshold;
+	}
+
+	/**
+	 * Sets the number of generations after which a species that did not
+	 * improve gets no more offspring. The default is 15.
+	 *
+	 * @param stagnationLimit
+	 *            the number of generations
+	 */
+	public void setStagnationLimit(int stagnationLimit) {
+		this.stagnationLimit = stagnationLimit;
+	}
+
+	/**
+	 * @return the error of the best individual found so far including the
+	 *         complexity penalty, or Double.POSITIVE_INFINITY if train has not
+	 *         been called yet.
+	 */
+	public double getBestError() {
+		return bestError;
+	}
+
+	/**
+	 * @return the number of generations run so far.
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return the current number of species.
+	 */
+	public int countSpecies() {
+		return species.size();
+	}
+
+	/**
+	 * @return the number of neuron ids handed out so far, i.e. the number of
+	 *         neurons of the initial network plus the number of neuron
+	 *         innovations.
+	 */
+	public int countNeuronIds() {
+		return nextNeuronId;
+	}
+}
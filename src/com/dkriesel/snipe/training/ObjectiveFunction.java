@@ -0,0 +1,38 @@
+package com.dkriesel.snipe.training;
+
+import com.dkriesel.snipe.core.NeuralNetwork;
+
+/**
+ * Rates how well a neural network solves a problem, for use with gradient free
+ * training methods like EvolutionStrategy. The objective does not need to be
+ * differentiable: It may for example count misclassified samples, or let the
+ * network control a simulation and measure the outcome. As with the error
+ * measurement methods, smaller values are better.
+ *
+ * <p>
+ * Parallel training methods evaluate several networks at the same time, so
+ * computeError may be called concurrently from several threads, each time
+ * with a different network. Implementations must therefore not change shared
+ * state without synchronization. Reading shared data like a training lesson
+ * is fine.
+ *
+ * <p>
+ * Since the parallel training methods already keep all processors busy,
+ * computeError should not fan out into parallel work of its own, like
+ * ErrorEvaluation or Resilient Backpropagation with several chunks. This
+ * does not deadlock, but only adds overhead. ErrorEvaluation.evaluate without
+ * a number of chunks uses one chunk when called this way.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public interface ObjectiveFunction {
+
+	/**
+	 * @param net
+	 *            the network to rate. The network may be propagated, but its
+	 *            synapses must not be changed.
+	 * @return the error of the network, smaller is better.
+	 */
+	public double computeError(NeuralNetwork net);
+}
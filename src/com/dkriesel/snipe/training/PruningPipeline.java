@@ -0,0 +1,266 @@
+package com.dkriesel.snipe.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.dkriesel.snipe.core.NeuralNetwork;
+import com.dkriesel.snipe.util.ParallelExecution;
+
+/**
+ * Prunes a trained feed forward network in rounds, in order to make it
+ * propagate faster: Pruned networks need time proportional to their number
+ * of synapses, since SNIPE only stores existing synapses. Each round, the
+ * importance of all synapses is computed in one parallel pass over the
+ * training lesson using the nonconvergent method of Finnoff 1993 (see
+ * NeuralNetwork.computeSynapseImportanceNonConvergentMethod), a fraction of
+ * the least important synapses is removed at once, inner neurons left
+ * without outgoing synapses are removed as well, and the network is retrained
+ * for a few runs of Resilient Backpropagation, also in parallel, starting
+ * with fresh step sizes. Before the
+ * first round and after each round, error, classification rate and
+ * propagation time are measured on the evaluation lesson, so the trade-off
+ * between size and accuracy can be seen at each sparsity level.
+ *
+ * <p>
+ * The network is pruned in place. To go back to a less sparse network, clone
+ * the network before pruning and prune the clone round by round.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class PruningPipeline {
+
+	protected final NeuralNetwork net;
+	protected final TrainingSampleLesson trainingLesson;
+	protected final TrainingSampleLesson evaluationLesson;
+	protected final int initialSynapses;
+	protected int round = 0;
+
+	protected double fractionPerRound = 0.1;
+	protected int retrainRuns = 20;
+	protected double learningRate = 0.1;
+	protected int chunks = ParallelExecution.countProcessors();
+	protected int latencyRepetitions = 10;
+
+	/**
+	 * Creates a pruning pipeline for the given trained network.
+	 *
+	 * @param net
+	 *            the network to prune, only forward and forward shortcut
+	 *            synapses may be allowed.
+	 * @param trainingLesson
+	 *            the lesson to compute the importance of the synapses and to
+	 *            retrain the network with
+	 * @param evaluationLesson
+	 *            the lesson to measure error, classification rate and
+	 *            propagation time with, may be the training lesson
+	 */
+	public PruningPipeline(NeuralNetwork net,
+			TrainingSampleLesson trainingLesson,
+			TrainingSampleLesson evaluationLesson) {
+		this.net = net;
+		this.trainingLesson = trainingLesson;
+		this.evaluationLesson = evaluationLesson;
+		initialSynapses = net.countSynapses();
+	}
+
+	/**
+	 * Runs the given number of pruning rounds, or less if no synapses are
+	 * left. Can be called again to continue pruning.
+	 *
+	 * @param rounds
+	 *            the number of rounds
+	 * @return the results, the first one describing the network before the
+	 *         first of the rounds run in this call.
+	 */
+	public List<PruningResult> prune(int rounds) {
+		List<PruningResult> results = new ArrayList<PruningResult>(rounds + 1);
+		results.add(measure());
+		for (int r = 0; r < rounds && net.countSynapses() > 0; r++) {
+			removeLeastImportantSynapses();
+			removeNeuronsWithoutSuccessors();
+			if (retrainRuns > 0 && net.countSynapses() > 0) {
+				// the step sizes of a converged network are too small to
+				// compensate the removed synapses
+				net.clearCacheResilientBackpropagation();
+				net.trainResilientBackpropagation(trainingLesson, retrainRuns,
+						false, chunks);
+			}
+			round++;
+			results.add(measure());
+		}
+		return results;
+	}
+
+	/**
+	 * Removes the given fraction of the synapses, at least one, that are least
+	 * important according to the nonconvergent method. Of synapses with equal
+	 * importance, those with smaller weights are removed first.
+	 */
+	protected void removeLeastImportantSynapses() {
+		int count = net.countSynapses();
+		final double[] importance = net
+				.computeSynapseImportanceNonConvergentMethod(trainingLesson,
+						learningRate, new double[count], chunks);
+		int[] fromNeurons = new int[count];
+		int[] toNeurons = new int[count];
+		final double[] weights = new double[count];
+		net.copySynapsesToArrays(fromNeurons, toNeurons, weights);
+
+		Integer[] ranking = new Integer[count];
+		for (int k = 0; k < count; k++) {
+			ranking[k] = k;
+		}
+		// stable sort, so equal importance and weight magnitude keeps the
+		// order of the synapses
+		Arrays.sort(ranking, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int result = Double.compare(importance[a], importance[b]);
+				if (result == 0) {
+					// e.g. saturated neurons without any gradient
+					result = Double.compare(Math.abs(weights[a]),
+							Math.abs(weights[b]));
+				}
+				return result;
+			}
+		});
+
+		int toRemove = Math.min(count,
+				Math.max(1, (int) Math.round(fractionPerRound * count)));
+		int[] removeFrom = new int[toRemove];
+		int[] removeTo = new int[toRemove];
+		for (int r = 0; r < toRemove; r++) {
+			removeFrom[r] = fromNeurons[ranking[r]];
+			removeTo[r] = toNeurons[ranking[r]];
+		}
+		net.removeSynapses(removeFrom, removeTo);
+	}
+
+	/**
+	 * Removes inner neurons that have no outgoing synapses and thus do not
+	 * influence the output, going from the last to the first neuron, so
+	 * neurons losing their last successor this way are removed as well.
+	 */
+	protected void removeNeuronsWithoutSuccessors() {
+		int firstInner = net.getNeuronFirstInLayer(1);
+		for (int neuron = firstInner + net.countNeuronsInner() - 1; neuron >= firstInner; neuron--) {
+			if (net.countSynapsesOutgoing(neuron) == 0) {
+				net.removeNeuron(neuron);
+			}
+		}
+	}
+
+	/**
+	 * Measures the current state of the network on the evaluation lesson,
+	 * error and classification rate in one parallel pass.
+	 */
+	protected PruningResult measure() {
+		double[][] inputs = evaluationLesson.getInputs();
+		double[][] outputs = new double[inputs.length][net.getDescriptor()
+				.countOutputNeurons()];
+
+		// warm up once, then take the mean time
+		net.propagateBatch(inputs, outputs);
+		long start = System.nanoTime();
+		for (int r = 0; r < latencyRepetitions; r++) {
+			net.propagateBatch(inputs, outputs);
+		}
+		long time = System.nanoTime() - start;
+		double nanosecondsPerSample = (double) time
+				/ Math.max(1, latencyRepetitions * inputs.length);
+
+		ErrorEvaluation evaluation = ErrorEvaluation.evaluate(net,
+				evaluationLesson, chunks);
+
+		return new PruningResult(round, net.countSynapses(),
+				net.countNeurons(), initialSynapses == 0 ? 0
+						: 1 - (double) net.countSynapses() / initialSynapses,
+				evaluation.getErrorRootMeanSquareSum(),
+				evaluation.getClassificationRate(), nanosecondsPerSample);
+	}
+
+	/**
+	 * @return the fraction of the synapses removed each round.
+	 */
+	public double getFractionPerRound() {
+		return fractionPerRound;
+	}
+
+	/**
+	 * Sets the fraction of the synapses left that is removed each round. At
+	 * least one synapse is removed per round. The default is 0.1.
+	 *
+	 * @param fractionPerRound
+	 *            the fraction, between 0 and 1
+	 */
+	public void setFractionPerRound(double fractionPerRound) {
+		if (fractionPerRound < 0 || fractionPerRound > 1) {
+			throw new IllegalArgumentException(
+					"Fraction has to be between 0 and 1.");
+		}
+		this.fractionPerRound = fractionPerRound;
+	}
+
+	/**
+	 * @return the number of Resilient Backpropagation runs after each round.
+	 */
+	public int getRetrainRuns() {
+		return retrainRuns;
+	}
+
+	/**
+	 * Sets the number of Resilient Backpropagation runs the network is
+	 * retrained with after each round, 0 for no retraining. The default is 20.
+	 *
+	 * @param retrainRuns
+	 *            the number of runs
+	 */
+	public void setRetrainRuns(int retrainRuns) {
+		this.retrainRuns = retrainRuns;
+	}
+
+	/**
+	 * Sets the learning rate used in the test value of the nonconvergent
+	 * method. The default is 0.1.
+	 *
+	 * @param learningRate
+	 *            the learning rate, greater than 0
+	 */
+	public void setLearningRate(double learningRate) {
+		if (!(learningRate > 0)) {
+			throw new IllegalArgumentException(
+					"Learning rate has to be greater than 0.");
+		}
+		this.learningRate = learningRate;
+	}
+
+	/**
+	 * Sets the number of chunks the training lesson is split into in order to
+	 * compute importance and gradients in parallel. The default is the number
+	 * of available processors.
+	 *
+	 * @param chunks
+	 *            the number of chunks, at least 1
+	 */
+	public void setChunks(int chunks) {
+		if (chunks < 1) {
+			throw new IllegalArgumentException(
+					"At least one chunk is needed.");
+		}
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Sets how often the evaluation lesson is propagated to measure the
+	 * propagation time. The default is 10.
+	 *
+	 * @param latencyRepetitions
+	 *            the number of repetitions
+	 */
+	public void setLatencyRepetitions(int latencyRepetitions) {
+		this.latencyRepetitions = latencyRepetitions;
+	}
+}
@@ -0,0 +1,94 @@
+package com.dkriesel.snipe.training;
+
+/**
+ * Describes the state of a network after one round of a PruningPipeline: its
+ * size, its error and classification rate on the evaluation lesson and the
+ * time it takes to propagate a sample.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class PruningResult {
+
+	protected final int round;
+	protected final int synapses;
+	protected final int neurons;
+	protected final double sparsity;
+	protected final double error;
+	protected final double classificationRate;
+	protected final double nanosecondsPerSample;
+
+	protected PruningResult(int round, int synapses, int neurons,
+			double sparsity, double error, double classificationRate,
+			double nanosecondsPerSample) {
+		this.round = round;
+		this.synapses = synapses;
+		this.neurons = neurons;
+		this.sparsity = sparsity;
+		this.error = error;
+		this.classificationRate = classificationRate;
+		this.nanosecondsPerSample = nanosecondsPerSample;
+	}
+
+	/**
+	 * @return the number of the round, 0 for the unpruned network.
+	 */
+	public int getRound() {
+		return round;
+	}
+
+	/**
+	 * @return the number of synapses left.
+	 */
+	public int getSynapses() {
+		return synapses;
+	}
+
+	/**
+	 * @return the number of neurons left, not counting the bias.
+	 */
+	public int getNeurons() {
+		return neurons;
+	}
+
+	/**
+	 * @return the fraction of the synapses of the unpruned network that have
+	 *         been removed.
+	 */
+	public double getSparsity() {
+		return sparsity;
+	}
+
+	/**
+	 * @return the root mean square error on the evaluation lesson (see
+	 *         ErrorMeasurement.getErrorRootMeanSquareSum).
+	 */
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * @return the fraction of samples of the evaluation lesson whose largest
+	 *         output is the one with the largest desired output, which is the
+	 *         accuracy for classification lessons.
+	 */
+	public double getClassificationRate() {
+		return classificationRate;
+	}
+
+	/**
+	 * @return the mean time in nanoseconds it took to propagate a sample of
+	 *         the evaluation lesson using propagateBatch.
+	 */
+	public double getNanosecondsPerSample() {
+		return nanosecondsPerSample;
+	}
+
+	@Override
+	public String toString() {
+		return "Round " + round + ": " + synapses + " synapses, " + neurons
+				+ " neurons, sparsity " + sparsity + ", error " + error
+				+ ", classification rate " + classificationRate + ", "
+				+ nanosecondsPerSample + " ns per sample";
+	}
+}
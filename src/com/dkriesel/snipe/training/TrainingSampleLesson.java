@@ -1,10 +1,11 @@
 package com.dkriesel.snipe.training;
 
 import java.io.Serializable;
-import java.util.Random;
 
 import com.dkriesel.snipe.core.NeuralNetwork;
 import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
+import com.dkriesel.snipe.util.MersenneTwisterFast;
+import com.dkriesel.snipe.util.RandomStreams;
 
 /**
  * This class represents a set of training samples in order to train a neural
@@ -29,6 +30,18 @@ import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
  * Backprop). Use the scaleDesiredOutputsForClassificationProblem method in
  * order to do this.
  * 
+ * <p>
+ * Each sample is stored as one input row and one desired output row, and the
+ * two arrays of rows define the order of the samples. Thus, shuffling the
+ * samples only permutes row references, and views, folds and shared splits
+ * (see createView, createFold and splitLessonSharingSamples) are lessons of
+ * their own order that share the rows of this lesson instead of copying them,
+ * which costs O(NUMBEROFSAMPLES) regardless of the dimensionality. Note that
+ * lessons sharing rows also share changes of their values, e.g. by the
+ * methods starting with "optimize" or "scale". Shuffling a lesson never
+ * affects the order of other lessons. For mini-batches, copySamples gathers
+ * arbitrary samples into contiguous buffers.
+ * 
  * @author David Kriesel / dkriesel.com
  */
 public class TrainingSampleLesson implements Serializable {
@@ -117,6 +130,32 @@ public class TrainingSampleLesson implements Serializable {
 
 	}
 
+	/**
+	 * Creates an empty lesson, whose rows are set by createSharing.
+	 */
+	private TrainingSampleLesson() {
+	}
+
+	/**
+	 * Creates a lesson sharing the given rows, which must already have been
+	 * checked, without cloning them. The arrays of rows become the lesson's
+	 * own.
+	 * 
+	 * @param inputs
+	 * @param desiredOutputs
+	 * @return the new lesson
+	 */
+	protected static TrainingSampleLesson createSharing(double[][] inputs,
+			double[][] desiredOutputs) {
+		if (inputs.length < 1) {
+			throw new IllegalArgumentException("0 Inputs given.");
+		}
+		TrainingSampleLesson lesson = new TrainingSampleLesson();
+		lesson.inputs = inputs;
+		lesson.desiredOutputs = desiredOutputs;
+		return lesson;
+	}
+
 	/**
 	 * Creates a training lesson for training an encoder/decoder problem, like
 	 * for example the 8-3-8 problem. To train an 8-3-8 network, first create a
@@ -206,6 +245,50 @@ public class TrainingSampleLesson implements Serializable {
 	 *         first lesson, index 1 the one of the second.
 	 */
 	public TrainingSampleLesson[] splitLesson(double ratio) {
+		return splitLesson(ratio, RandomStreams.createIndependentStream());
+	}
+
+	/**
+	 * Does the same as splitLesson(double), but draws the assignment of the
+	 * samples from the given random number generator, e.g. a stream of
+	 * RandomStreams, so the split can be reproduced.
+	 * 
+	 * @param ratio
+	 *            must be in interval ]0;1[
+	 * @param random
+	 *            the random number generator to use
+	 * @return an array of 2 TrainingSampleLessons. Index 0 is the one of the
+	 *         first lesson, index 1 the one of the second.
+	 */
+	public TrainingSampleLesson[] splitLesson(double ratio,
+			MersenneTwisterFast random) {
+		TrainingSampleLesson[] result = splitLessonSharingSamples(ratio,
+				random);
+		for (int l = 0; l < result.length; l++) {
+			double[][] lessonInputs = result[l].inputs;
+			double[][] lessonDesiredOutputs = result[l].desiredOutputs;
+			for (int i = 0; i < lessonInputs.length; i++) {
+				lessonInputs[i] = lessonInputs[i].clone();
+				lessonDesiredOutputs[i] = lessonDesiredOutputs[i].clone();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Does the same as splitLesson(double, MersenneTwisterFast), but the
+	 * resulting lessons share the sample rows of this lesson instead of
+	 * cloning them, in O(NUMBEROFSAMPLES). The samples keep their order.
+	 * 
+	 * @param ratio
+	 *            must be in interval ]0;1[
+	 * @param random
+	 *            the random number generator to use
+	 * @return an array of 2 TrainingSampleLessons. Index 0 is the one of the
+	 *         first lesson, index 1 the one of the second.
+	 */
+	public TrainingSampleLesson[] splitLessonSharingSamples(double ratio,
+			MersenneTwisterFast random) {
 		if (countSamples() < 2) {
 			throw new IllegalArgumentException(
 					"Can't split TrainingSampleLessons with less than 2 samples.");
@@ -215,8 +298,6 @@ public class TrainingSampleLesson implements Serializable {
 					"Ratio for splitting must be in the range ]0;1[.");
 		}
 
-		Random random = new Random(System.currentTimeMillis());
-
 		// form an boolean array that decides whether a sample will be assigned
 		// to the first lesson (true, probability ratio) or to the second
 		// (false, probability 1-ratio)
@@ -237,82 +318,178 @@ public class TrainingSampleLesson implements Serializable {
 			// means all assignment booleans are false
 			assignment[random.nextInt(assignment.length)] = true;
 			firstLessonCounter++;
+			secondLessonCounter--;
 		}
 		if (secondLessonCounter == 0) {
 			// means all assignment booleans are true
 			assignment[random.nextInt(assignment.length)] = false;
 			secondLessonCounter++;
+			firstLessonCounter--;
 		}
 
-		double[][] firstLessonInputs = new double[firstLessonCounter][getDimensionalityInputs()];
-		double[][] firstLessonDesiredOutputs = new double[firstLessonCounter][getDimensionalityDesiredOutputs()];
-		double[][] secondLessonInputs = new double[secondLessonCounter][getDimensionalityInputs()];
-		double[][] secondLessonDesiredOutputs = new double[secondLessonCounter][getDimensionalityDesiredOutputs()];
+		double[][] firstLessonInputs = new double[firstLessonCounter][];
+		double[][] firstLessonDesiredOutputs = new double[firstLessonCounter][];
+		double[][] secondLessonInputs = new double[secondLessonCounter][];
+		double[][] secondLessonDesiredOutputs = new double[secondLessonCounter][];
 
 		int firstRunningIndex = 0;
 		int secondRunningIndex = 0;
 		for (int i = 0; i < assignment.length; i++) {
 			if (assignment[i]) {
 				// assign sample to first lesson
-				firstLessonInputs[firstRunningIndex] = inputs[i].clone();
-				firstLessonDesiredOutputs[firstRunningIndex] = desiredOutputs[i]
-						.clone();
+				firstLessonInputs[firstRunningIndex] = inputs[i];
+				firstLessonDesiredOutputs[firstRunningIndex] = desiredOutputs[i];
 				firstRunningIndex++;
 			} else {
 				// assign sample to second lesson
-				secondLessonInputs[secondRunningIndex] = inputs[i].clone();
-				secondLessonDesiredOutputs[secondRunningIndex] = desiredOutputs[i]
-						.clone();
+				secondLessonInputs[secondRunningIndex] = inputs[i];
+				secondLessonDesiredOutputs[secondRunningIndex] = desiredOutputs[i];
 				secondRunningIndex++;
 			}
 		}
 
 		TrainingSampleLesson[] result = new TrainingSampleLesson[2];
-		result[0] = new TrainingSampleLesson(firstLessonInputs,
-				firstLessonDesiredOutputs);
-		result[1] = new TrainingSampleLesson(secondLessonInputs,
+		result[0] = createSharing(firstLessonInputs, firstLessonDesiredOutputs);
+		result[1] = createSharing(secondLessonInputs,
 				secondLessonDesiredOutputs);
 
 		return result;
 	}
 
 	/**
-	 * Permute all training samples of this lesson in O(NUMBEROFSAMPLES).
+	 * Creates a view of the samples from index from (inclusive) to index to
+	 * (exclusive) in the current order, sharing their rows with this lesson,
+	 * in O(to-from).
+	 * 
+	 * @param from
+	 *            index of the first sample
+	 * @param to
+	 *            index after the last sample, greater than from
+	 * @return the view
 	 */
-	public void shuffleSamples() {
-		int[] newOrder = new int[countSamples()];
+	public TrainingSampleLesson createView(int from, int to) {
+		if (from < 0 || to > countSamples() || from >= to) {
+			throw new IllegalArgumentException("Invalid sample range.");
+		}
+		double[][] viewInputs = new double[to - from][];
+		double[][] viewDesiredOutputs = new double[to - from][];
+		System.arraycopy(inputs, from, viewInputs, 0, to - from);
+		System.arraycopy(desiredOutputs, from, viewDesiredOutputs, 0, to
+				- from);
+		return createSharing(viewInputs, viewDesiredOutputs);
+	}
+
+	/**
+	 * Creates the training and validation lessons of the given fold of a
+	 * k-fold cross validation in O(NUMBEROFSAMPLES), both sharing their rows
+	 * with this lesson. The samples are divided into the given number of
+	 * contiguous folds in the current order, so shuffle the samples once
+	 * before creating the folds. Fold sizes differ by at most one sample.
+	 * 
+	 * @param fold
+	 *            the number of the fold, from 0 to folds-1
+	 * @param folds
+	 *            the number of folds, from 2 to the number of samples
+	 * @return an array of 2 TrainingSampleLessons. Index 0 holds the samples
+	 *         of all other folds for training, index 1 the samples of the
+	 *         given fold for validation.
+	 */
+	public TrainingSampleLesson[] createFold(int fold, int folds) {
+		if (folds < 2 || folds > countSamples()) {
+			throw new IllegalArgumentException(
+					"Number of folds must be between 2 and the number of samples.");
+		}
+		if (fold < 0 || fold >= folds) {
+			throw new IllegalArgumentException("Invalid fold.");
+		}
+		int from = (int) ((long) countSamples() * fold / folds);
+		int to = (int) ((long) countSamples() * (fold + 1) / folds);
+		int rest = countSamples() - (to - from);
 
-		Random random = new Random(System.currentTimeMillis());
+		double[][] trainingInputs = new double[rest][];
+		double[][] trainingDesiredOutputs = new double[rest][];
+		System.arraycopy(inputs, 0, trainingInputs, 0, from);
+		System.arraycopy(inputs, to, trainingInputs, from, countSamples() - to);
+		System.arraycopy(desiredOutputs, 0, trainingDesiredOutputs, 0, from);
+		System.arraycopy(desiredOutputs, to, trainingDesiredOutputs, from,
+				countSamples() - to);
 
-		// create initial ordered index array
-		for (int i = 0; i < newOrder.length; i++) {
-			newOrder[i] = i;
+		TrainingSampleLesson[] result = new TrainingSampleLesson[2];
+		result[0] = createSharing(trainingInputs, trainingDesiredOutputs);
+		result[1] = createView(from, to);
+		return result;
+	}
+
+	/**
+	 * Copies the inputs and desired outputs of the given samples into
+	 * contiguous buffers, row after row, in O(count*MAX(INPUTDIMENSIONALITY;
+	 * DESIREDOUTPUTDIMENSIONALITY)). The sample at sampleIndices[k] is written
+	 * at k*getDimensionalityInputs() and k*getDimensionalityDesiredOutputs(),
+	 * respectively.
+	 * 
+	 * @param sampleIndices
+	 *            the indices of the samples in the current order
+	 * @param count
+	 *            the number of samples to copy, starting with the first index
+	 * @param inputBuffer
+	 *            buffer of at least count*getDimensionalityInputs() values, or
+	 *            null
+	 * @param desiredOutputBuffer
+	 *            buffer of at least count*getDimensionalityDesiredOutputs()
+	 *            values, or null
+	 */
+	public void copySamples(int[] sampleIndices, int count,
+			double[] inputBuffer, double[] desiredOutputBuffer) {
+		int inputDimensionality = getDimensionalityInputs();
+		int desiredOutputDimensionality = getDimensionalityDesiredOutputs();
+		for (int k = 0; k < count; k++) {
+			int sample = sampleIndices[k];
+			if (inputBuffer != null) {
+				System.arraycopy(inputs[sample], 0, inputBuffer, k
+						* inputDimensionality, inputDimensionality);
+			}
+			if (desiredOutputBuffer != null) {
+				System.arraycopy(desiredOutputs[sample], 0,
+						desiredOutputBuffer, k * desiredOutputDimensionality,
+						desiredOutputDimensionality);
+			}
 		}
+	}
+
+	/**
+	 * Permute all training samples of this lesson in O(NUMBEROFSAMPLES).
+	 */
+	public void shuffleSamples() {
+		shuffleSamples(RandomStreams.createIndependentStream());
+	}
 
-		int permutationBorder = newOrder.length - 1;
+	/**
+	 * Permute all training samples of this lesson in O(NUMBEROFSAMPLES),
+	 * drawing the permutation from the given random number generator, e.g. a
+	 * stream of RandomStreams, so the permutation can be reproduced.
+	 * 
+	 * @param random
+	 *            the random number generator to use
+	 */
+	public void shuffleSamples(MersenneTwisterFast random) {
+		// the row references are permuted in place, so no sample data is
+		// moved and nothing is allocated
+		int permutationBorder = countSamples() - 1;
 
 		while (permutationBorder > 0) {
 
 			int nextIndexToSwap = random.nextInt(permutationBorder + 1);
 
 			// swap them
-			int tempIndex = newOrder[permutationBorder];
-			newOrder[permutationBorder] = newOrder[nextIndexToSwap];
-			newOrder[nextIndexToSwap] = tempIndex;
+			double[] tempInput = inputs[permutationBorder];
+			inputs[permutationBorder] = inputs[nextIndexToSwap];
+			inputs[nextIndexToSwap] = tempInput;
+			double[] tempDesiredOutput = desiredOutputs[permutationBorder];
+			desiredOutputs[permutationBorder] = desiredOutputs[nextIndexToSwap];
+			desiredOutputs[nextIndexToSwap] = tempDesiredOutput;
 
 			permutationBorder--;
 		}
-
-		double[][] newInputs = new double[countSamples()][getDimensionalityInputs()];
-		double[][] newDesiredOutputs = new double[countSamples()][getDimensionalityDesiredOutputs()];
-
-		for (int i = 0; i < newOrder.length; i++) {
-			newInputs[i] = inputs[newOrder[i]];
-			newDesiredOutputs[i] = desiredOutputs[newOrder[i]];
-		}
-
-		inputs = newInputs;
-		desiredOutputs = newDesiredOutputs;
 	}
 
 	/**
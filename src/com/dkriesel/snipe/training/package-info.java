@@ -1,4 +1,4 @@
 /**
- * Contains a class where to put in the training data for your neural network and one that contains several error measurement methods.
+ * Contains a class where to put in the training data for your neural network and one that contains several error measurement methods, as well as gradient free training methods rating networks by an objective function.
  */
 package com.dkriesel.snipe.training;
\ No newline at end of file
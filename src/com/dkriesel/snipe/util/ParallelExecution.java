@@ -0,0 +1,135 @@
+package com.dkriesel.snipe.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides one thread pool shared by all parallel SNIPE methods, so that
+ * networks (and even large populations of networks) do not create threads of
+ * their own. The pool is created the first time it is needed and holds one
+ * daemon thread per available processor, so it never keeps the virtual
+ * machine from exiting.
+ *
+ * <p>
+ * Parallel SNIPE methods may be nested, e.g. an ObjectiveFunction of an
+ * EvolutionStrategy may train its network using parallel Resilient
+ * Backpropagation. Tasks submitted by a worker thread of the pool are run
+ * right away in that worker instead of being queued, since the other workers
+ * are already busy with tasks of the outer method. Thus, nested calls never
+ * wait for a free thread and cannot deadlock the pool.
+ *
+ * <p>
+ * Parallel SNIPE methods split their work into a fixed number of chunks given
+ * by the caller and combine the chunk results in chunk order, so their results
+ * only depend on the number of chunks, not on the number of threads or on
+ * timing.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class ParallelExecution {
+
+	private static ExecutorService executor;
+
+	/**
+	 * Returns the shared thread pool, creating it if necessary. Use submit
+	 * and await instead of submitting tasks directly, so that nested parallel
+	 * calls work.
+	 *
+	 * @return the shared executor service
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(countProcessors(),
+					new ThreadFactory() {
+						private int count = 0;
+
+						@Override
+						public synchronized Thread newThread(Runnable r) {
+							Thread thread = new WorkerThread(r, "SNIPE-worker-"
+									+ (count++));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return executor;
+	}
+
+	/**
+	 * Submits the given task to the shared thread pool. If called by a worker
+	 * thread of the pool, the task is run in the calling thread before this
+	 * method returns.
+	 *
+	 * @param task
+	 *            the task to run
+	 * @return the future of the task, to be passed to await
+	 */
+	public static <T> Future<T> submit(Callable<T> task) {
+		if (isWorkerThread()) {
+			FutureTask<T> future = new FutureTask<T>(task);
+			future.run();
+			return future;
+		}
+		return getExecutor().submit(task);
+	}
+
+	/**
+	 * @return whether the calling thread is a worker thread of the shared
+	 *         thread pool.
+	 */
+	public static boolean isWorkerThread() {
+		return Thread.currentThread() instanceof WorkerThread;
+	}
+
+	/**
+	 * @return the number of processors available to the virtual machine,
+	 *         which is a sensible default for the number of chunks.
+	 */
+	public static int countProcessors() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Waits for the given future to finish and returns its result. If the
+	 * task threw an exception, it is thrown again here, wrapped into a
+	 * RuntimeException if necessary.
+	 *
+	 * @param future
+	 *            the future to wait for
+	 * @return the result of the future
+	 */
+	public static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for a task.",
+					e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * The threads of the shared thread pool, told apart from other threads by
+	 * their class.
+	 */
+	private static class WorkerThread extends Thread {
+
+		WorkerThread(Runnable target, String name) {
+			super(target, name);
+		}
+	}
+}
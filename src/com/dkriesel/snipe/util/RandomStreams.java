@@ -0,0 +1,180 @@
+package com.dkriesel.snipe.util;
+
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Derives any number of independent random number generators from one seed,
+ * so that parallel methods can hand a generator of its own to each chunk,
+ * worker thread or individual instead of sharing one, which would need
+ * locking and would make the results depend on the order in which threads
+ * draw their numbers.
+ *
+ * <p>
+ * Stream number i always gets the same seed, which is computed from the seed
+ * of this object and i by the mixing function of SplitMix64 (Steele, Lea,
+ * Flood 2014), so neighboring stream numbers and neighboring seeds yield
+ * unrelated streams. Thus, given a fixed seed, a parallel method drawing the
+ * random numbers of chunk i from stream i gets the same results on every run,
+ * no matter how many threads there are or how they are scheduled. Streams are
+ * MersenneTwisterFast instances seeded with all 64 bits of their seed, or
+ * java.util.Random instances for libraries expecting those. Using split, a
+ * stream family can hand independent families to sub tasks, which in turn
+ * create streams of their own.
+ *
+ * <p>
+ * Objects of this class are immutable and can be shared by all threads.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class RandomStreams implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// odd constant of SplitMix64, the fractional part of the golden ratio
+	protected static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	// distinguishes the seeds of split families from those of streams
+	protected static final long SPLIT_SALT = 0x5DEECE66DL;
+
+	// makes the seeds of independent streams differ even if created at once
+	protected static final AtomicLong independentStreamCounter = new AtomicLong();
+
+	protected final long seed;
+
+	/**
+	 * Creates a stream family with the given seed.
+	 *
+	 * @param seed
+	 *            the seed all streams are derived from
+	 */
+	public RandomStreams(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Creates a stream family with a seed taken from the system clock, for
+	 * methods that do not need to be reproducible.
+	 */
+	public RandomStreams() {
+		this(nextIndependentSeed());
+	}
+
+	/**
+	 * @return the seed all streams are derived from
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Computes the seed of the given stream in O(1).
+	 *
+	 * @param index
+	 *            the number of the stream
+	 * @return the seed of the stream
+	 */
+	public long getStreamSeed(long index) {
+		return mix(seed + GOLDEN_GAMMA * (index + 1));
+	}
+
+	/**
+	 * Creates the generator of the given stream. Calling this method twice
+	 * with the same index yields two generators producing the same numbers.
+	 *
+	 * @param index
+	 *            the number of the stream
+	 * @return a new generator
+	 */
+	public MersenneTwisterFast createStream(long index) {
+		return createStreamFromSeed(getStreamSeed(index));
+	}
+
+	/**
+	 * Creates the generators of the streams 0 to count-1, e.g. one per chunk
+	 * of a parallel method.
+	 *
+	 * @param count
+	 *            the number of streams
+	 * @return an array of new generators, index i holding stream i
+	 */
+	public MersenneTwisterFast[] createStreams(int count) {
+		MersenneTwisterFast[] streams = new MersenneTwisterFast[count];
+		for (int i = 0; i < count; i++) {
+			streams[i] = createStream(i);
+		}
+		return streams;
+	}
+
+	/**
+	 * Does the same as createStream, but returns a java.util.Random, for
+	 * libraries that expect one. Note that java.util.Random only uses 48 bits
+	 * of its seed.
+	 *
+	 * @param index
+	 *            the number of the stream
+	 * @return a new generator
+	 */
+	public Random createRandom(long index) {
+		return new Random(getStreamSeed(index));
+	}
+
+	/**
+	 * Derives an independent stream family, e.g. for a sub task that creates
+	 * streams of its own. The streams of the family are unrelated to the
+	 * streams of this one.
+	 *
+	 * @param index
+	 *            the number of the family
+	 * @return the new stream family
+	 */
+	public RandomStreams split(long index) {
+		return new RandomStreams(mix(getStreamSeed(index) ^ SPLIT_SALT));
+	}
+
+	/**
+	 * Creates a generator that is not reproducible, but independent of all
+	 * other generators created this way, even if they are created by several
+	 * threads at the same time. The MersenneTwisterFast constructor without
+	 * seed uses the current time in milliseconds instead, so networks created
+	 * within the same millisecond, e.g. by cloning, would get the same random
+	 * numbers.
+	 * 
+	 * @return a new generator
+	 */
+	public static MersenneTwisterFast createIndependentStream() {
+		return createStreamFromSeed(nextIndependentSeed());
+	}
+
+	/**
+	 * Seeds a generator with all 64 bits of the given seed. The constructor of
+	 * MersenneTwisterFast taking a long only uses the lower 32 bits.
+	 */
+	protected static MersenneTwisterFast createStreamFromSeed(long streamSeed) {
+		return new MersenneTwisterFast(new int[] { (int) streamSeed,
+				(int) (streamSeed >>> 32) });
+	}
+
+	/**
+	 * @return a seed that differs from all seeds returned before.
+	 */
+	protected static long nextIndependentSeed() {
+		return mix(System.nanoTime() + GOLDEN_GAMMA
+				* independentStreamCounter.incrementAndGet());
+	}
+
+	/**
+	 * The mixing function of SplitMix64, a bijection on the longs that maps
+	 * neighboring values to unrelated ones.
+	 *
+	 * @param z
+	 *            the value to mix
+	 * @return the mixed value
+	 */
+	public static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,72 @@
+package com.dkriesel.snipe.util;
+
+/**
+ * Provides the elementary loops the propagation and training methods of
+ * SNIPE spend most of their time in, as static methods on plain arrays.
+ * They are written in the simplest possible way on purpose: The virtual
+ * machine inlines such small static methods into their callers, and its
+ * just-in-time compiler turns element-wise loops like axpy into SIMD
+ * instructions of the processor it runs on, without any platform specific
+ * code in SNIPE.
+ *
+ * <p>
+ * Only element-wise loops are provided here, since every entry is computed
+ * independently, so the results are the same whether and how the loops are
+ * vectorized. Dot products are not: Summing them up in several partial sums,
+ * as SIMD instructions do, would change the rounding. Instead, the dense
+ * layer kernels of NeuralNetwork compute several dot products at once, which
+ * keeps the summation order.
+ *
+ * @author David Kriesel / dkriesel.com
+ *
+ */
+public class VectorKernels {
+
+	/**
+	 * Adds alpha times length entries of x, starting at xOffset, to length
+	 * entries of y, starting at yOffset. The ranges must not overlap if x and
+	 * y are the same array.
+	 *
+	 * @param alpha
+	 *            the factor
+	 * @param x
+	 *            the array to read
+	 * @param xOffset
+	 *            the first entry of x to read
+	 * @param y
+	 *            the array to add to
+	 * @param yOffset
+	 *            the first entry of y to add to
+	 * @param length
+	 *            the number of entries
+	 */
+	public static void axpy(double alpha, double[] x, int xOffset, double[] y,
+			int yOffset, int length) {
+		for (int k = 0; k < length; k++) {
+			y[yOffset + k] += alpha * x[xOffset + k];
+		}
+	}
+
+	/**
+	 * Adds length entries of x, starting at xOffset, to length entries of y,
+	 * starting at yOffset. The ranges must not overlap if x and y are the same
+	 * array.
+	 *
+	 * @param x
+	 *            the array to read
+	 * @param xOffset
+	 *            the first entry of x to read
+	 * @param y
+	 *            the array to add to
+	 * @param yOffset
+	 *            the first entry of y to add to
+	 * @param length
+	 *            the number of entries
+	 */
+	public static void add(double[] x, int xOffset, double[] y, int yOffset,
+			int length) {
+		for (int k = 0; k < length; k++) {
+			y[yOffset + k] += x[xOffset + k];
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package de.tunetown.nnpg.main;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
@@ -62,7 +63,7 @@ public class Main {
 	
 	private NetworkManager networkManager = new NetworkManager();
 	
-	private NetworkWrapper net;
+	private AtomicReference<NetworkWrapper> net = new AtomicReference<NetworkWrapper>();
 	private DataModel data;
 	private TrainingTracker tracker;
 	private ProjectLoader dataLoader;
@@ -71,8 +72,6 @@ public class Main {
 	private Menu menu;
 	private TrainingWorker trainWorker;
 	
-	private Object trainLock = new Object();
-	
 	/**
 	 * Main method
 	 *  
@@ -128,7 +127,7 @@ public class Main {
 	 * 
 	 */
 	public void initNetwork() {
-		int e = net != null ? networkManager.determineEngine(net) : 0;
+		int e = getNetwork() != null ? networkManager.determineEngine(getNetwork()) : 0;
 		initNetwork(e);
 	}
 	
@@ -140,9 +139,10 @@ public class Main {
 		// Create network instance wrapper. Here it is possible to invoke also different network implementations.
 		NetworkWrapper tmp = networkManager.getEngineInstance(engine);
 		
-		if (net != null) {
-			tmp.setParametersFrom(net);
-			tmp.createNetwork(net.getTopology());
+		NetworkWrapper former = getNetwork();
+		if (former != null) {
+			tmp.setParametersFrom(former);
+			tmp.createNetwork(former.getTopology());
 		}
 
 		setNetwork(tmp);
@@ -154,21 +154,47 @@ public class Main {
 	}
 
 	/**
-	 * Set a new network wrapper instance
+	 * Set a new network wrapper instance. If training is running, a network set here is not overwritten 
+	 * by the training worker, which stops instead (see getAndSetNetwork).
 	 * 
 	 * @param net
 	 */
 	public void setNetwork(NetworkWrapper net) {
-		this.net = net;
+		this.net.set(net);
 	}
 
 	/**
-	 * Returns the network wrapper
+	 * Returns the network wrapper. During training, this is the latest network published by 
+	 * the training worker, which will not be changed anymore by the worker. Painting routines should 
+	 * call this once and use the returned instance for the whole painting, as another call may 
+	 * already return a newer network.
 	 * 
 	 * @return
 	 */
 	public NetworkWrapper getNetwork() {
-		return net;
+		return net.get();
+	}
+	
+	/**
+	 * Atomically sets a new network wrapper instance and returns the former one. Used by the training
+	 * worker to publish a trained network, so it can detect if the UI has set another network meanwhile.
+	 * 
+	 * @param net
+	 * @return the former network
+	 */
+	public NetworkWrapper getAndSetNetwork(NetworkWrapper net) {
+		return this.net.getAndSet(net);
+	}
+	
+	/**
+	 * Atomically sets a new network wrapper instance, if the current one is the expected one.
+	 * 
+	 * @param expected
+	 * @param net
+	 * @return true if the network has been set
+	 */
+	public boolean compareAndSetNetwork(NetworkWrapper expected, NetworkWrapper net) {
+		return this.net.compareAndSet(expected, net);
 	}
 	
 	/**
@@ -238,7 +264,8 @@ public class Main {
 	 *  
 	 */
 	public void startTraining() {
-		trainWorker = new TrainingWorker(this, frame);
+		// This is called in the EDT, where the worker takes its initial copy of the network
+		trainWorker = new TrainingWorker(this, frame, getNetwork());
 		trainWorker.execute();		
 	}
 	
@@ -278,15 +305,6 @@ public class Main {
 		frame.getDataPanel().setTool(tool);
 	}
 	
-	/**
-	 * Returns the lock object used during training. This is used to protect the cloning and publishing of the training clone network instance.
-	 *  
-	 * @return
-	 */
-	public Object getNetworkLock() {
-		return trainLock;
-	}
-
 	/**
 	 * 
 	 * @param jRadioButtonMenuItem
@@ -152,6 +152,19 @@ public abstract class NetworkWrapper implements Serializable {
 	@Override
 	public abstract NetworkWrapper clone();
 
+	/**
+	 * Overwrite the weights and parameters of this network with those of the given network, 
+	 * without cloning it. This is only possible if both networks have the same topology and 
+	 * behavior, otherwise false is returned and nothing is changed, so the caller has to clone 
+	 * the network instead. Engines not supporting this always return false.
+	 * 
+	 * @param network
+	 * @return
+	 */
+	public boolean copyFrom(NetworkWrapper network) {
+		return false;
+	}
+
 	/**
 	 * Copy all parameters (not the learning stuff like weight) from a given network instance
 	 * 
@@ -130,6 +130,26 @@ public class TrainingTracker {
 		return speeds.get(speeds.size()-1);
 	}
 	
+	/**
+	 * Returns the training error of the last run, as measured by the training worker.
+	 * 
+	 * @return
+	 */
+	public double getCurrentTrainingError() {
+		if (trainingErrors.size() < 1) return 0;
+		return trainingErrors.get(trainingErrors.size()-1);
+	}
+	
+	/**
+	 * Returns the test error of the last run, as measured by the training worker.
+	 * 
+	 * @return
+	 */
+	public double getCurrentTestError() {
+		if (testErrors.size() < 1) return 0;
+		return testErrors.get(testErrors.size()-1);
+	}
+	
 	/**
 	 * Returns the current training speed in number of training runs per second of system time, measured 
 	 * using the last measurementLength runs. (Internal determination routine)
@@ -107,6 +107,16 @@ public class TanhJafama extends TransferFunction implements Serializable {
         return (1d - output * output);
     }
 
+    @Override
+    public boolean isDerivativeFromOutput() {
+        return true;
+    }
+
+    @Override
+    public double getDerivativeFromOutput(double output) {
+        return (1d - output * output);
+    }
+
     /**
      * Returns the slope parametar of this function
      *
@@ -85,6 +85,7 @@ public class SNIPENetworkWrapper extends NetworkWrapper {
 		NeuralNetworkDescriptor desc = new NeuralNetworkDescriptor(topology);
 		desc.setSettingsTopologyFeedForward();
 		desc.setSynapseInitialRange(initialRange);
+		desc.setCompactSynapseStorage(true);
 		
 		desc.setNeuronBehaviorInputNeurons(new Identity());
 		desc.setNeuronBehaviorHiddenNeurons(behaviors[behavior]);
@@ -211,6 +212,19 @@ public class SNIPENetworkWrapper extends NetworkWrapper {
 		return ret;
 	}
 
+	@Override
+	public boolean copyFrom(NetworkWrapper network) {
+		if (!(network instanceof SNIPENetworkWrapper)) return false;
+		SNIPENetworkWrapper source = (SNIPENetworkWrapper)network;
+		if (source.getBehavior() != getBehavior() || source.getInitialRange() != getInitialRange()) return false;
+		if (!source.net.hasSameTopology(net)) return false;
+		
+		// Only weights and shadows are copied, the structure is reused
+		source.net.copyWeightsInto(net, true);
+		setParametersFrom(source);
+		return true;
+	}
+
 	@Override
 	public void setBehavior(int i) {
 		if (i < 0 || i >= behaviors.length) return;
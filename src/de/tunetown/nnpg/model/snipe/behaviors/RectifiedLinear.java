@@ -1,5 +1,6 @@
 package de.tunetown.nnpg.model.snipe.behaviors;
 
+import com.dkriesel.snipe.neuronbehavior.BulkNeuronBehavior;
 import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
 
 
@@ -9,7 +10,7 @@ import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
  * @author Thomas Weber
  *
  */
-public class RectifiedLinear implements NeuronBehavior{
+public class RectifiedLinear implements BulkNeuronBehavior{
 	private static final long serialVersionUID = 1L;
 	
 	private double negativeScaling;
@@ -30,6 +31,24 @@ public class RectifiedLinear implements NeuronBehavior{
 		else return negativeScaling * x;
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			if (x[k] > 0) result[k] = x[k];
+			else result[k] = negativeScaling * x[k];
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			if (x[k] > 0) result[k] = 1;
+			else result[k] = negativeScaling;
+		}
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new RectifiedLinear(negativeScaling);
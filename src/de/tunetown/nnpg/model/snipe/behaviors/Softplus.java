@@ -2,6 +2,7 @@ package de.tunetown.nnpg.model.snipe.behaviors;
 
 import net.jafama.FastMath;
 
+import com.dkriesel.snipe.neuronbehavior.BulkNeuronBehavior;
 import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
 
 
@@ -11,7 +12,7 @@ import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
  * @author Thomas Weber
  *
  */
-public class Softplus implements NeuronBehavior {
+public class Softplus implements BulkNeuronBehavior {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
@@ -24,6 +25,22 @@ public class Softplus implements NeuronBehavior {
 		return FastMath.log(1.0 + FastMath.exp(x));
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			result[k] = FastMath.log(1.0 + FastMath.exp(x[k]));
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			result[k] = 1.0 / (1.0 + FastMath.exp(-x[k]));
+		}
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new Softplus();
@@ -2,6 +2,8 @@ package de.tunetown.nnpg.model.snipe.behaviors;
 
 import org.apache.commons.math3.util.FastMath;
 
+import com.dkriesel.snipe.neuronbehavior.BulkNeuronBehavior;
+import com.dkriesel.snipe.neuronbehavior.DerivativeFromActivation;
 import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
 
 
@@ -11,7 +13,8 @@ import com.dkriesel.snipe.neuronbehavior.NeuronBehavior;
  * @author Thomas Weber
  *
  */
-public class TangensHyperbolicusACM implements NeuronBehavior{
+public class TangensHyperbolicusACM implements BulkNeuronBehavior,
+		DerivativeFromActivation{
 	private static final long serialVersionUID = 1L;
 	
 	@Override
@@ -25,6 +28,37 @@ public class TangensHyperbolicusACM implements NeuronBehavior{
 		return FastMath.tanh(x);
 	}
 
+	@Override
+	public void computeActivations(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			result[k] = FastMath.tanh(x[k]);
+		}
+	}
+
+	@Override
+	public void computeDerivatives(double[] x, double[] result, int from,
+			int to) {
+		for (int k = from; k < to; k++) {
+			double t = FastMath.tanh(x[k]);
+			result[k] = 1 - (t * t);
+		}
+	}
+
+	@Override
+	public double computeDerivativeFromActivation(double activation) {
+		return 1 - (activation * activation);
+	}
+
+	@Override
+	public void computeDerivativesFromActivations(double[] activations,
+			double[] result, int from, int to) {
+		for (int k = from; k < to; k++) {
+			double a = activations[k];
+			result[k] = 1 - (a * a);
+		}
+	}
+
 	@Override
 	public NeuronBehavior getDedicatedInstance() {
 		return new TangensHyperbolicusACM();
@@ -1,6 +1,9 @@
 package de.tunetown.nnpg.view;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 
 import de.tunetown.nnpg.main.Main;
@@ -18,11 +21,31 @@ public class TrainingWorker extends SwingWorker {
 	private Main main;
 	private JFrame frame;
 	
-	private boolean killed;
+	private volatile boolean killed;
+	
+	// Working copy of the network, owned by this thread. It is never painted before 
+	// it has been published, and never changed afterwards.
+	private NetworkWrapper working;
+	
+	// The productive network as last published by this worker
+	private NetworkWrapper published;
 	
-	public TrainingWorker(Main main, JFrame frame) {
+	// Former productive network, handed back by the EDT when it is not painted anymore
+	private AtomicReference<NetworkWrapper> retired = new AtomicReference<NetworkWrapper>();
+	
+	/**
+	 * Has to be called in the EDT, as the initial working copy is cloned from the given productive network here. 
+	 * The EDT is the only thread changing this network, so it can not be changed while being cloned.
+	 * 
+	 * @param main
+	 * @param frame
+	 * @param network the productive network
+	 */
+	public TrainingWorker(Main main, JFrame frame, NetworkWrapper network) {
 		this.main = main;
 		this.frame = frame;
+		this.published = network;
+		this.working = network.clone();
 	}
 	
 	@Override
@@ -35,38 +58,55 @@ public class TrainingWorker extends SwingWorker {
 				// Stop training if no data is present
 				if (!main.getData().hasData()) kill();
 
-				// Create a working clone of the network for training. This is necessary 
-				// to be able to update the UI in parallel.
-				NetworkWrapper clone;
-				synchronized (main.getNetworkLock()) {
-					clone = main.getNetwork().clone();
-				}
-
-				// Train the working clone.
+				// Take over eta, batch size etc. which may have been changed in the UI
+				working.setParametersFrom(main.getNetwork());
+				
+				// Train the working copy.
 				try {
 					long start = System.nanoTime();
 					
-					clone.train(main.getData());
+					working.train(main.getData());
 					
 					main.getTracker().addRun(
-							clone.getTrainingError(main.getData()), 
-							clone.getTestError(main.getData()),
+							working.getTrainingError(main.getData()), 
+							working.getTestError(main.getData()),
 							System.nanoTime() - start,
-							clone.getOutputBatchSize());
+							working.getOutputBatchSize());
 				
-					// Set the trained clone "productive"
-					synchronized (main.getNetworkLock()) {
-						clone.setParametersFrom(main.getNetwork());
-						main.setNetwork(clone);
+					// Prepare the next working copy before publishing, so this thread never reads a 
+					// network the UI is painting. The network retired by the EDT is reused if possible, 
+					// copying the weights is much cheaper than cloning.
+					NetworkWrapper next = retired.getAndSet(null);
+					if (next == null || !next.copyFrom(working)) {
+						next = working.clone();
 					}
 					
-					// Update statistics in the UI
-					main.updateView();
+					// Publish the trained working copy by an atomic swap. No lock is needed, the UI will simply 
+					// paint the new instance from its next repaint on.
+					working.setParametersFrom(main.getNetwork());
+					final NetworkWrapper former = main.getAndSetNetwork(working);
+					
+					if (former != published) {
+						// The network has been replaced by the UI meanwhile (project loaded etc.), so give it back 
+						// unless that happened once more, and stop. The replaced network is not ours to reuse.
+						main.compareAndSetNetwork(working, former);
+						kill();
+						break;
+					}
+					published = working;
+					working = next;
 					
-					// Trigger that repainting will happen in the EDT. The repainting routines
-					// will use the new "productive" network instance, while we will continue training
-					// on the next clone here.
-					frame.repaint();
+					// Update statistics and trigger repainting in the EDT. Events are processed in order,
+					// so all paints that might have used the former network are finished when this runs, 
+					// and the former network can be retired for reuse as working copy.
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							retired.set(former);
+							main.updateView();
+							frame.repaint();
+						}
+					});
 					
 				} catch (Exception e) {
 					System.out.println("Training glitch occurred, stopped training");
@@ -12,6 +12,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import de.tunetown.nnpg.main.Main;
+import de.tunetown.nnpg.model.NetworkWrapper;
 import de.tunetown.nnpg.view.ViewProperties;
 
 /**
@@ -94,18 +95,24 @@ public class StatisticsPanel extends JPanel {
 	 * 
 	 */
 	public void update() {
-		synchronized (main.getNetworkLock()) {
-			setTopology(main.getNetwork().getTopology());
-			setEta(main.getNetwork().getEta());
-			setBatchSize(main.getNetwork().getOutputBatchSize());
-			setActivationFunction(main.getNetwork().getBehaviorDescriptions()[main.getNetwork().getBehavior()]);
-			setDataSize(main.getData().getNumOfSamples(false) + main.getData().getNumOfSamples(true));
-			setIteration(main.getTracker().getIterations());
-			setTrainingError(main.getNetwork().getTrainingError(main.getData()));
-			setTestError(main.getNetwork().getTestError(main.getData()));
-			setProcTime(main.getTracker().getCPUUsage());
-			setSpeed(main.getTracker().getCurrentSpeed());
+		NetworkWrapper net = main.getNetwork();
+		
+		setTopology(net.getTopology());
+		setEta(net.getEta());
+		setBatchSize(net.getOutputBatchSize());
+		setActivationFunction(net.getBehaviorDescriptions()[net.getBehavior()]);
+		setDataSize(main.getData().getNumOfSamples(false) + main.getData().getNumOfSamples(true));
+		setIteration(main.getTracker().getIterations());
+		if (main.getTracker().getIterations() > 0) {
+			// Errors already measured by the training worker, so the EDT doesn't run over all data again
+			setTrainingError(main.getTracker().getCurrentTrainingError());
+			setTestError(main.getTracker().getCurrentTestError());
+		} else {
+			setTrainingError(net.getTrainingError(main.getData()));
+			setTestError(net.getTestError(main.getData()));
 		}
+		setProcTime(main.getTracker().getCPUUsage());
+		setSpeed(main.getTracker().getCurrentSpeed());
 	}
 
 	private void setTopology(int[] t) {
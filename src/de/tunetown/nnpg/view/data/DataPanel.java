@@ -13,6 +13,7 @@ import javax.swing.JPanel;
 import de.tunetown.nnpg.main.Main;
 import de.tunetown.nnpg.model.DataContainer;
 import de.tunetown.nnpg.model.ModelProperties;
+import de.tunetown.nnpg.model.NetworkWrapper;
 import de.tunetown.nnpg.view.ViewProperties;
 
 /**
@@ -172,13 +173,14 @@ public class DataPanel extends JPanel {
 	private void paintGraph(Graphics g) {
 		int minDim = getDimension();
 		
-		synchronized (main.getNetworkLock()) {
-			for(int x = 0; x<minDim; x+=ViewProperties.DATAPANEL_RESOLUTION) {
-				for(int y = 0; y<minDim; y+=ViewProperties.DATAPANEL_RESOLUTION) {
-					g.setColor(getOutColor(convertToModel(x), convertToModel(y)));
-					g.fillRect(x, y, ViewProperties.DATAPANEL_RESOLUTION, ViewProperties.DATAPANEL_RESOLUTION);
-				}			
-			}
+		// Use the same network instance for the whole graph, even if training publishes a new one meanwhile
+		NetworkWrapper net = main.getNetwork();
+		
+		for(int x = 0; x<minDim; x+=ViewProperties.DATAPANEL_RESOLUTION) {
+			for(int y = 0; y<minDim; y+=ViewProperties.DATAPANEL_RESOLUTION) {
+				g.setColor(getOutColor(net, convertToModel(x), convertToModel(y)));
+				g.fillRect(x, y, ViewProperties.DATAPANEL_RESOLUTION, ViewProperties.DATAPANEL_RESOLUTION);
+			}			
 		}
 	}
 	
@@ -205,13 +207,14 @@ public class DataPanel extends JPanel {
 	/**
 	 * Returns the color in which to paint a coordinate. This calls the propagation function through the network!
 	 * 
+	 * @param net 
 	 * @param x 
 	 * @param y 
 	 * @return
 	 */
-	private Color getOutColor(double x, double y) {
+	private Color getOutColor(NetworkWrapper net, double x, double y) {
 		double[] in = {x, y};
-		double[] out = main.getNetwork().propagate(in);
+		double[] out = net.propagate(in);
 		return properties.getDataColor(out[0]);
 	}
 
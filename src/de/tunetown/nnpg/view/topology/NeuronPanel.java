@@ -3,6 +3,7 @@ package de.tunetown.nnpg.view.topology;
 import java.awt.Graphics;
 import javax.swing.JComponent;
 import de.tunetown.nnpg.main.Main;
+import de.tunetown.nnpg.model.NetworkWrapper;
 import de.tunetown.nnpg.view.ViewProperties;
 
 /**
@@ -63,20 +64,20 @@ public class NeuronPanel extends JComponent {
 	 */
 	@Override
 	public void paintComponent(Graphics g) {
-		synchronized (main.getNetworkLock()) {
-			if (main.getNetwork().getLayerOfNeuron(num) == 0) {
-				g.setColor(ViewProperties.COLOR_NEURON_INPUT); 
-			} else {
-				g.setColor(ViewProperties.COLOR_NEURON_HIDDEN); 
-			}
-			
-			g.fillOval(0, 0, ViewProperties.TOPOLOGY_NEURON_DIAMETER, ViewProperties.TOPOLOGY_NEURON_DIAMETER);
-			
-			// Bias weight
-			if (neuronBorder > 0 && !Double.isNaN(main.getNetwork().getBiasWeight(num))) { 
-				g.setColor(properties.getDataColor(main.getNetwork().getBiasWeight(num)));
-				g.fillOval(neuronBorder, neuronBorder, ViewProperties.TOPOLOGY_NEURON_DIAMETER-2*neuronBorder, ViewProperties.TOPOLOGY_NEURON_DIAMETER-2*neuronBorder);
-			}
+		NetworkWrapper net = main.getNetwork();
+		
+		if (net.getLayerOfNeuron(num) == 0) {
+			g.setColor(ViewProperties.COLOR_NEURON_INPUT); 
+		} else {
+			g.setColor(ViewProperties.COLOR_NEURON_HIDDEN); 
+		}
+		
+		g.fillOval(0, 0, ViewProperties.TOPOLOGY_NEURON_DIAMETER, ViewProperties.TOPOLOGY_NEURON_DIAMETER);
+		
+		// Bias weight
+		if (neuronBorder > 0 && !Double.isNaN(net.getBiasWeight(num))) { 
+			g.setColor(properties.getDataColor(net.getBiasWeight(num)));
+			g.fillOval(neuronBorder, neuronBorder, ViewProperties.TOPOLOGY_NEURON_DIAMETER-2*neuronBorder, ViewProperties.TOPOLOGY_NEURON_DIAMETER-2*neuronBorder);
 		}
 	}
 }
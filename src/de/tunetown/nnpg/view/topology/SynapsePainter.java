@@ -9,6 +9,7 @@ import java.awt.Stroke;
 import java.awt.geom.AffineTransform;
 
 import de.tunetown.nnpg.main.Main;
+import de.tunetown.nnpg.model.NetworkWrapper;
 import de.tunetown.nnpg.view.ViewProperties;
 
 /**
@@ -30,12 +31,13 @@ public class SynapsePainter {
 	}
 	
 	public void paint(Graphics g) {
-		synchronized (main.getNetworkLock()) {
-			for(int n = 0; n<targetPanel.getNeurons().length; n++) {
-				for(int n2 = 0; n2<targetPanel.getNeurons().length; n2++) {
-					if (n != n2 && main.getNetwork().isSynapseExistent(n, n2)) {
-						paintSynapse(g, n, n2);
-					}
+		// Use the same network instance for all synapses, even if training publishes a new one meanwhile
+		NetworkWrapper net = main.getNetwork();
+		
+		for(int n = 0; n<targetPanel.getNeurons().length; n++) {
+			for(int n2 = 0; n2<targetPanel.getNeurons().length; n2++) {
+				if (n != n2 && net.isSynapseExistent(n, n2)) {
+					paintSynapse(g, net, n, n2);
 				}
 			}
 		}
@@ -68,11 +70,12 @@ public class SynapsePainter {
 	 * Paint one synapse from neuron n1 to neuron n2.
 	 * 
 	 * @param g
+	 * @param net
 	 * @param n1
 	 * @param n2
 	 */
-	private void paintSynapse(Graphics g, int n1, int n2) {
-		double w = main.getNetwork().getWeight(n1, n2);
+	private void paintSynapse(Graphics g, NetworkWrapper net, int n1, int n2) {
+		double w = net.getWeight(n1, n2);
 		if (Double.isNaN(w)) return;
 		
 		g.setColor(properties.getDataColor(w));
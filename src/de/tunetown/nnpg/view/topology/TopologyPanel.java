@@ -6,6 +6,7 @@ import java.awt.Graphics;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import de.tunetown.nnpg.main.Main;
+import de.tunetown.nnpg.model.NetworkWrapper;
 import de.tunetown.nnpg.view.MainFrame;
 import de.tunetown.nnpg.view.ViewProperties;
 
@@ -87,9 +88,7 @@ public class TopologyPanel extends JPanel {
 		synapsePainter.paint(g);
 		
 		// Update neuron coordinates. This avoids the "loosing" of neurons on resizing.
-		synchronized (main.getNetworkLock()) {
-			for(NeuronPanel p : neurons) p.updateCoords();
-		}
+		for(NeuronPanel p : neurons) p.updateCoords();
 	}
 	
 	/**
@@ -103,14 +102,13 @@ public class TopologyPanel extends JPanel {
 			return gridSizeBuffer;
 		}
 
-		synchronized (main.getNetworkLock()) {
-			gridSizeBuffer[0] = (int)((double)getWidth() / (double)(main.getNetwork().countLayers()) / 2.0);
-			gridSizeBuffer[1] = (int)((double)(getHeight() - ViewProperties.TOPOLOGY_BUTTON_HEIGHT) / (double)(main.getNetwork().getMaxNeuronsInLayers()) / 2.0);
-			
-			widthBuffer = getWidth();
-			heightBuffer = getHeight();
-			return gridSizeBuffer;
-		}
+		NetworkWrapper net = main.getNetwork();
+		gridSizeBuffer[0] = (int)((double)getWidth() / (double)(net.countLayers()) / 2.0);
+		gridSizeBuffer[1] = (int)((double)(getHeight() - ViewProperties.TOPOLOGY_BUTTON_HEIGHT) / (double)(net.getMaxNeuronsInLayers()) / 2.0);
+		
+		widthBuffer = getWidth();
+		heightBuffer = getHeight();
+		return gridSizeBuffer;
 	}
 	
 	public void resetGridSize() {
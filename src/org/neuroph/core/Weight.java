@@ -18,6 +18,7 @@ package org.neuroph.core;
 //import java.util.Objects;
 import java.util.Random;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.neuroph.util.random.ThreadRandom;
 
 /**
  * Neuron connection weight.
@@ -52,10 +53,10 @@ public class Weight implements java.io.Serializable, Cloneable {
     // maybe store deltaWeight and weight value history in transient fields...?
     /**
      * Creates an instance of connection weight with random weight value in
-     * range [0..1]
+     * range [-0.5..0.5], drawn from the random generator of the current thread
      */
     public Weight() {
-        this.value = Math.random() - 0.5d;
+        this.value = ThreadRandom.get().nextDouble() - 0.5d;
         this.weightChange = 0;
     }
 
@@ -113,17 +114,19 @@ public class Weight implements java.io.Serializable, Cloneable {
     }
 
     /**
-     * Sets random weight value
+     * Sets random weight value, drawn from the random generator of the current
+     * thread
      */
     public void randomize() {
-        this.value = Math.random() - 0.5d;
+        this.value = ThreadRandom.get().nextDouble() - 0.5d;
     }
 
     /**
-     * Sets random weight value within specified interval
+     * Sets random weight value within specified interval, drawn from the random
+     * generator of the current thread
      */
     public void randomize(double min, double max) {
-        this.value = min + Math.random() * (max - min);
+        this.value = min + ThreadRandom.get().nextDouble() * (max - min);
     }
 
     public void randomize(Random generator) {
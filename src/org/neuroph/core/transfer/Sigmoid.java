@@ -108,4 +108,16 @@ public class Sigmoid extends TransferFunction implements Serializable {
 		return derivative;
 	}
 
+	@Override
+	public boolean isDerivativeFromOutput() {
+		return true;
+	}
+
+	@Override
+	public double getDerivativeFromOutput(double output) {
+		// +0.1 is fix for flat spot, as above
+		double derivative = this.slope * output * (1d - output) + 0.1;
+		return derivative;
+	}
+
 }
@@ -55,4 +55,33 @@ abstract public class TransferFunction implements Serializable {
 		return 1d;
 	}
 
+	/**
+	 * Returns true if this function can compute its first derivative from its
+	 * output alone, see getDerivativeFromOutput. Learning rules use this to
+	 * avoid evaluating the function a second time, and to avoid relying on
+	 * the output value cached in this instance.
+	 * 
+	 * @return true if getDerivativeFromOutput is supported
+	 */
+	public boolean isDerivativeFromOutput() {
+		return false;
+	}
+
+	/**
+	 * Returns the first derivative of this function at the input for which it
+	 * returned the given output. Only supported if isDerivativeFromOutput
+	 * returns true; otherwise the derivative has to be computed from the input
+	 * using getDerivative, since this class only caches the output, which in
+	 * general does not determine the input.
+	 * 
+	 * @param output
+	 *            output of this function for the input in question
+	 * @throws UnsupportedOperationException
+	 *             if isDerivativeFromOutput returns false
+	 */
+	public double getDerivativeFromOutput(double output) {
+		throw new UnsupportedOperationException(getClass().getName()
+				+ " can not compute its derivative from its output.");
+	}
+
 }
@@ -26,6 +26,7 @@ import org.neuroph.util.NeuralNetworkFactory;
 import org.neuroph.util.NeuralNetworkType;
 import org.neuroph.util.NeuronProperties;
 import org.neuroph.util.TransferFunctionType;
+import org.neuroph.util.random.ThreadRandom;
 
 /**
  * Perceptron neural network with some LMS based learning algorithm.
@@ -96,7 +97,7 @@ public class Perceptron extends NeuralNetwork {
 
 		NeuronProperties outputNeuronProperties = new NeuronProperties();
 		outputNeuronProperties.setProperty("neuronType", ThresholdNeuron.class);
-		outputNeuronProperties.setProperty("thresh", new Double(Math.abs(Math.random())));
+		outputNeuronProperties.setProperty("thresh", new Double(ThreadRandom.get().nextDouble()));
 		outputNeuronProperties.setProperty("transferFunction", transferFunctionType);
 		// for sigmoid and tanh transfer functions set slope propery
 		outputNeuronProperties.setProperty("transferFunction.slope", new Double(1));
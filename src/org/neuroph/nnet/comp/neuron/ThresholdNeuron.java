@@ -19,6 +19,7 @@ package org.neuroph.nnet.comp.neuron;
 import org.neuroph.core.Neuron;
 import org.neuroph.core.input.InputFunction;
 import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.util.random.ThreadRandom;
 
 /**
  * Provides behaviour for neurons with threshold.
@@ -49,7 +50,7 @@ public class ThresholdNeuron extends Neuron {
 	public ThresholdNeuron(InputFunction inputFunction, TransferFunction transferFunction) {
 		this.inputFunction = inputFunction;
 		this.transferFunction = transferFunction;
-                this.thresh = Math.random();
+                this.thresh = ThreadRandom.get().nextDouble();
 	}
 
 	/**
@@ -77,9 +77,7 @@ public class BackPropagation extends LMS {
             }
 
             // otherwise calculate and set error/delta for the current neuron
-            TransferFunction transferFunction = neuron.getTransferFunction();
-            double neuronInput = neuron.getNetInput();
-            double delta = outputError[i] * transferFunction.getDerivative(neuronInput); // delta = (d-y)*df(net)
+            double delta = outputError[i] * this.calculateDerivative(neuron); // delta = (d-y)*df(net)
             neuron.setError(delta);
 
             // and update weights of the current neuron
@@ -117,11 +115,26 @@ public class BackPropagation extends LMS {
             deltaSum += delta; // weighted delta sum from the next layer
         } // for
 
-        TransferFunction transferFunction = neuron.getTransferFunction();
-        double netInput = neuron.getNetInput(); // should we use input of this or other neuron?
-        double f1 = transferFunction.getDerivative(netInput);
+        double f1 = this.calculateDerivative(neuron);
         double neuronError = f1 * deltaSum;
         return neuronError;
     }
 
+    /**
+     * Calculates the first derivative of the neuron's transfer function at the
+     * neuron's net input. If the transfer function can compute it from its
+     * output, the neuron's output is used instead of evaluating the function
+     * again.
+     *
+     * @param neuron neuron to calculate the derivative for
+     * @return derivative of the neuron's transfer function at its net input
+     */
+    protected double calculateDerivative(Neuron neuron) {
+        TransferFunction transferFunction = neuron.getTransferFunction();
+        if (transferFunction.isDerivativeFromOutput()) {
+            return transferFunction.getDerivativeFromOutput(neuron.getOutput());
+        }
+        return transferFunction.getDerivative(neuron.getNetInput());
+    }
+
 }
@@ -1,12 +1,14 @@
 package org.neuroph.nnet.learning;
 
 import java.util.Iterator;
+import java.util.Random;
 
 import org.neuroph.core.NeuralNetwork;
 import org.neuroph.core.data.DataSet;
 import org.neuroph.core.data.DataSetRow;
 import org.neuroph.core.learning.SupervisedLearning;
 import org.neuroph.util.NeuralNetworkCODEC;
+import org.neuroph.util.random.ThreadRandom;
 
 /**
  * This class implements a simulated annealing learning rule for supervised
@@ -65,6 +67,12 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
      */
     private double[] bestWeights;
 
+    /**
+     * Random generator used to randomize the weights, null to use the random
+     * generator of the current thread (see ThreadRandom).
+     */
+    private Random randomGenerator;
+
     /**
      * Construct a simulated annleaing trainer for a feedforward neural network.
      *
@@ -103,6 +111,27 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
         return getNeuralNetwork();
     }
 
+    /**
+     * Gets random generator used to randomize the weights, which is the random
+     * generator of the current thread if none has been set
+     *
+     * @return random generator used to randomize the weights
+     */
+    public Random getRandomGenerator() {
+        return randomGenerator != null ? randomGenerator : ThreadRandom.get();
+    }
+
+    /**
+     * Sets random generator used to randomize the weights. If you use the same
+     * random generators, you'll get the same random sequences
+     *
+     * @param randomGenerator random generator to use, or null to use the random
+     * generator of the current thread
+     */
+    public void setRandomGenerator(Random randomGenerator) {
+        this.randomGenerator = randomGenerator;
+    }
+
     /**
      * Randomize the weights and thresholds. This function does most of the work
      * of the class. Each call to this class will randomize the data according
@@ -111,11 +140,12 @@ public class SimulatedAnnealingLearning extends SupervisedLearning {
      * @param randomChance 
      */
     public void randomize(double randomChance ) {
+        Random generator = getRandomGenerator();
 
         for (int i = 0; i < this.weights.length; i++)
-          if (Math.random() < randomChance)
+          if (generator.nextDouble() < randomChance)
           {
-            double add = 0.5 - (Math.random());
+            double add = 0.5 - (generator.nextDouble());
             add /= this.startTemperature;
             add *= this.temperature;
             this.weights[i] = this.weights[i] + add;
@@ -78,7 +78,7 @@ public class DistortRandomizer extends WeightsRandomizer {
      * @return distorted weight value
      */
     private double distort(double weight) {        
-        return  weight + (this.distortionFactor - (randomGenerator.nextDouble() * this.distortionFactor * 2)); 
+        return  weight + (this.distortionFactor - (getRandomGenerator().nextDouble() * this.distortionFactor * 2)); 
     }
        
 }
@@ -16,6 +16,8 @@
 
 package org.neuroph.util.random;
 
+import java.util.Random;
+
 /**
  * This class provides Gaussian randomization technique using Box Muller method.
  * Based on GaussianRandomizer from Encog
@@ -58,9 +60,10 @@ public class GaussianRandomizer extends WeightsRandomizer {
             y1 = this.y2;
             this.useLast = false;
         } else {
+            Random generator = getRandomGenerator();
             do {
-                x1 = 2.0 * randomGenerator.nextDouble() - 1.0;
-                x2 = 2.0 * randomGenerator.nextDouble() - 1.0;
+                x1 = 2.0 * generator.nextDouble() - 1.0;
+                x2 = 2.0 * generator.nextDouble() - 1.0;
                 w = x1 * x1 + x2 * x2;
             } while (w >= 1.0);
 
@@ -49,6 +49,6 @@ public class RangeRandomizer extends WeightsRandomizer {
      */
     @Override
     protected double nextRandomWeight() {
-        return min + randomGenerator.nextDouble() * (max - min);
+        return min + getRandomGenerator().nextDouble() * (max - min);
     }
 }
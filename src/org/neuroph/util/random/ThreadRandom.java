@@ -0,0 +1,72 @@
+/**
+ * Copyright 2010 Neuroph Project http://neuroph.sourceforge.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.neuroph.util.random;
+
+import java.util.Random;
+
+/**
+ * Holds one random generator per thread, used by weights, randomizers and
+ * learning rules that are not given a random generator of their own.
+ * Math.random() shares a single generator between all threads, so threads
+ * training networks in parallel would contend on it and get random numbers
+ * depending on timing. By default each thread gets a new unseeded generator.
+ * To get reproducible results, install a seeded generator on each worker
+ * thread before it creates or trains networks, e.g. one derived from a fixed
+ * seed and the number of the worker, and remove it when the worker is done.
+ */
+public final class ThreadRandom {
+
+    private static final ThreadLocal<Random> generators = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private ThreadRandom() {
+    }
+
+    /**
+     * Returns random generator of the current thread
+     *
+     * @return random generator of the current thread
+     */
+    public static Random get() {
+        return generators.get();
+    }
+
+    /**
+     * Sets random generator of the current thread. The generator must not be
+     * used by other threads.
+     *
+     * @param generator random generator to use in the current thread
+     */
+    public static void set(Random generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("Random generator must not be null!");
+        }
+        generators.set(generator);
+    }
+
+    /**
+     * Removes random generator of the current thread, so it gets a new unseeded
+     * one on next use. Should be called by pooled threads when done.
+     */
+    public static void remove() {
+        generators.remove();
+    }
+}
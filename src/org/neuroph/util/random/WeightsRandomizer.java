@@ -35,15 +35,17 @@ import org.neuroph.nnet.comp.layer.FeatureMapLayer;
 public class WeightsRandomizer {
 
     /**
-     * Random number genarator used by randomizers
+     * Random number genarator used by randomizers, null to use the random
+     * generator of the current thread (see ThreadRandom)
      */
     protected Random randomGenerator;
 
     /**
-     * Create a new instance of WeightsRandomizer
+     * Create a new instance of WeightsRandomizer, which uses the random
+     * generator of the thread randomizing the weights (see ThreadRandom)
      */
     public WeightsRandomizer() {
-        this.randomGenerator = new Random();
+        this.randomGenerator = null;
     }
 
     /**
@@ -57,14 +59,21 @@ public class WeightsRandomizer {
     }
 
     /**
-     * Gets random generator used to generate random values
+     * Gets random generator used to generate random values, which is the
+     * random generator of the current thread if none has been set
      *
      * @return random generator used to generate random values
      */
     public Random getRandomGenerator() {
-        return randomGenerator;
+        return randomGenerator != null ? randomGenerator : ThreadRandom.get();
     }
 
+    /**
+     * Sets random generator used to generate random values
+     *
+     * @param randomGenerator random generator to use, or null to use the random
+     * generator of the current thread
+     */
     public void setRandomGenerator(Random randomGenerator) {
         this.randomGenerator = randomGenerator;
     }
@@ -115,6 +124,6 @@ public class WeightsRandomizer {
      * @return next random value fro random generator
      */
     protected double nextRandomWeight() {
-        return randomGenerator.nextDouble();
+        return getRandomGenerator().nextDouble();
     }
 }